@@ -0,0 +1,98 @@
+package fastcampus.spring.batch.executor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * JDBC 호출처럼 대부분의 시간을 기다리는 작업 tasks개를 실행하는 데 걸리는 시간을 executor별로 비교한다.
+ * platform : batchTaskExecutor의 기본값 (SimpleAsyncTaskExecutor, 작업마다 platform thread 생성)
+ * platform_pool : concurrency 크기의 ThreadPoolTaskExecutor
+ * virtual : VirtualThreadTaskExecutor (Java 21에서 실행해야 함. ./gradlew jmh -Pjava21)
+ * 세 executor 모두 동시에 실행되는 작업 수는 concurrency로 제한한다. 메모리/스레드 생성 비용은 -prof gc로 같이 보면 된다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TaskExecutorBenchmark {
+
+    @Param({"platform", "platform_pool", "virtual"})
+    private String executor;
+
+    @Param({"10", "100"})
+    private int concurrency;
+
+    @Param({"1000"})
+    private int tasks;
+
+    @Param({"1"})
+    private int blockMillis;
+
+    private TaskExecutor taskExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (executor) {
+            case "platform":
+                SimpleAsyncTaskExecutor simpleAsyncTaskExecutor = new SimpleAsyncTaskExecutor("bench-");
+                simpleAsyncTaskExecutor.setConcurrencyLimit(concurrency);
+                taskExecutor = simpleAsyncTaskExecutor;
+                break;
+            case "platform_pool":
+                ThreadPoolTaskExecutor threadPoolTaskExecutor = new ThreadPoolTaskExecutor();
+                threadPoolTaskExecutor.setCorePoolSize(concurrency);
+                threadPoolTaskExecutor.setMaxPoolSize(concurrency);
+                threadPoolTaskExecutor.setThreadNamePrefix("bench-pool-");
+                threadPoolTaskExecutor.initialize();
+                taskExecutor = threadPoolTaskExecutor;
+                break;
+            case "virtual":
+                taskExecutor = new VirtualThreadTaskExecutor("bench-vt-", concurrency);   //Java 21 미만이면 여기서 실패
+                break;
+            default:
+                throw new IllegalArgumentException(executor);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (taskExecutor instanceof ThreadPoolTaskExecutor) {
+            ((ThreadPoolTaskExecutor) taskExecutor).shutdown();
+        }
+    }
+
+    @Benchmark
+    public long runBlockingTasks() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(tasks);
+        long blockNanos = TimeUnit.MILLISECONDS.toNanos(blockMillis);
+        for (int i = 0; i < tasks; i++) {
+            taskExecutor.execute(() -> {
+                LockSupport.parkNanos(blockNanos);     //커넥션/쿼리 응답을 기다리는 시간
+                done.countDown();
+            });
+        }
+        done.await();
+        return done.getCount();
+    }
+
+}
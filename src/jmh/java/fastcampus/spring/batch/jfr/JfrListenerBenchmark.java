@@ -0,0 +1,180 @@
+package fastcampus.spring.batch.jfr;
+
+import fastcampus.spring.batch.part3.DuplicateValidationProcessor;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.support.IteratorItemReader;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 10만 건을 chunk 100으로 읽고 중복 검사만 한 뒤 버리는 step을 JfrBatchListener 유무, JFR recording 유무별로 실행한다.
+ * writer가 아무것도 하지 않으므로 실제 DB 쓰기가 있는 step보다 리스너 비용의 비중이 크게 나오는 최악의 경우다.
+ * item 단위 이벤트는 기본 샘플링 간격(JfrSampler.DEFAULT_INTERVAL)으로 기록한다.
+ *
+ * runStep은 실행마다 편차가 수 % 라서 1% 미만의 차이는 구분되지 않는다.
+ * 그래서 chunkCallbacks로 chunk 하나(100건)에서 리스너가 쓰는 시간만 따로 재고, runStep(listener=none) / 1000 chunk와 비교해서 오버헤드를 계산한다.
+ * runStep의 job 메타데이터는 실행마다 새로 만드는 내장 H2에 저장한다. (DB 생성은 측정 시간에서 제외)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(2)
+public class JfrListenerBenchmark {
+
+    @Param({"none", "jfr"})
+    private String listener;
+
+    @Param({"off", "on"})
+    private String recording;
+
+    private final List<String> items = IntStream.range(0, 100_000)
+            .mapToObj(i -> "name" + (i % 50_000))
+            .collect(Collectors.toList());
+
+    private final ResourcelessTransactionManager transactionManager = new ResourcelessTransactionManager();
+    private Recording jfrRecording;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        LoggingSystem.get(getClass().getClassLoader()).setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);  //Boot 없이 실행하면 logback 기본 설정(DEBUG)으로 chunk마다 로그가 남음
+        if ("on".equals(recording)) {
+            jfrRecording = new Recording(Configuration.getConfiguration("profile"));
+            jfrRecording.enable("fastcampus.batch.*");
+            jfrRecording.setToDisk(true);
+            jfrRecording.start();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (jfrRecording != null) {
+            jfrRecording.close();
+        }
+    }
+
+    private final JfrBatchListener jfrBatchListener = new JfrBatchListener();
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    private final ChunkContext chunkContext = new ChunkContext(new StepContext(
+            new JobExecution(new JobInstance(1L, "jfrJob"), new JobParameters()).createStepExecution("jfrStep")));
+    private final List<String> chunkItems = items.subList(0, 100);
+
+    //step에서 chunk 하나를 처리할 때와 같은 순서로 리스너만 호출 (커밋 구간을 기록하도록 트랜잭션 안에서 실행). listener=none은 트랜잭션만 실행
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int chunkCallbacks() {
+        boolean enabled = "jfr".equals(listener);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (enabled) {
+                jfrBatchListener.beforeChunk(chunkContext);
+                for (String item : chunkItems) {
+                    jfrBatchListener.beforeRead();
+                    jfrBatchListener.afterRead(item);
+                }
+                for (String item : chunkItems) {
+                    jfrBatchListener.beforeProcess(item);
+                    jfrBatchListener.afterProcess(item, item);
+                }
+                jfrBatchListener.beforeWrite(chunkItems);
+                jfrBatchListener.afterWrite(chunkItems);
+            }
+        });
+        if (enabled) {
+            jfrBatchListener.afterChunk(chunkContext);
+        }
+        return chunkItems.size();
+    }
+
+    private EmbeddedDatabase dataSource;
+    private DataSourceTransactionManager stepTransactionManager;
+    private JobRepository jobRepository;
+    private SimpleJobLauncher jobLauncher;
+
+    //실행할수록 job 메타데이터가 쌓여 느려지지 않도록 매번 새로 만듦
+    @Setup(Level.Invocation)
+    public void setUpJobRepository() throws Exception {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("/org/springframework/batch/core/schema-h2.sql")
+                .build();
+        stepTransactionManager = new DataSourceTransactionManager(dataSource);
+        JobRepositoryFactoryBean jobRepositoryFactory = new JobRepositoryFactoryBean();
+        jobRepositoryFactory.setDataSource(dataSource);
+        jobRepositoryFactory.setTransactionManager(stepTransactionManager);
+        jobRepositoryFactory.afterPropertiesSet();
+        jobRepository = jobRepositoryFactory.getObject();
+        jobLauncher = new SimpleJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownJobRepository() {
+        dataSource.shutdown();
+    }
+
+    @Benchmark
+    public BatchStatus runStep() throws Exception {
+
+        DuplicateValidationProcessor<String> processor = new DuplicateValidationProcessor<>(item -> item, false);
+        processor.setSaveState(false);
+
+        StepBuilder stepBuilder = new StepBuilder("jfrStep")
+                .repository(jobRepository)
+                .transactionManager(stepTransactionManager);
+        if ("jfr".equals(listener)) {
+            stepBuilder.listener((StepExecutionListener) new JfrBatchListener());
+        }
+        SimpleStepBuilder<String, String> chunkStep = stepBuilder.<String, String>chunk(100)
+                .reader(new IteratorItemReader<>(items))
+                .processor(processor)
+                .writer(chunk -> { });
+
+        JobExecution jobExecution = jobLauncher.run(new JobBuilder("jfrJob")
+                .repository(jobRepository)
+                .start(chunkStep.build())
+                .build(), new JobParameters());
+        return jobExecution.getStatus();
+    }
+
+}
@@ -0,0 +1,59 @@
+package fastcampus.spring.batch.job;
+
+import fastcampus.spring.batch.SpringBatchExampleApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.Banner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 스케줄러가 job 하나를 실행할 때처럼 애플리케이션을 시작해서 job을 실행하고 종료하기까지의 시간을 batch.lazy-jobs 설정별로 비교한다.
+ * fork마다 한 번만 측정하므로 JVM 시작 후 클래스 로딩까지 포함한 cold start 시간이다.
+ * job=NONE은 job을 실행하지 않고 context만 띄우는 경우. 만들어진 singleton 빈 개수는 TearDown에서 출력한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class JobStartupBenchmark {
+
+    @Param({"false", "true"})
+    private String lazyJobs;
+
+    @Param({"helloJob", "NONE"})
+    private String job;
+
+    private int singletonCount;
+
+    @Benchmark
+    public int startAndRun() {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringBatchExampleApplication.class)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                .run("--job.name=" + job, "--batch.lazy-jobs=" + lazyJobs, "--logging.level.root=WARN");
+        singletonCount = context.getBeanFactory().getSingletonCount();
+        return SpringApplication.exit(context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println("singleton 빈 " + singletonCount + "개 (batch.lazy-jobs=" + lazyJobs + ", job.name=" + job + ")");
+    }
+
+}
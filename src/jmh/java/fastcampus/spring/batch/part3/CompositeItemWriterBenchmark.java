@@ -0,0 +1,81 @@
+package fastcampus.spring.batch.part3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.CompositeItemWriter;
+import org.springframework.batch.item.support.builder.CompositeItemWriterBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CompositeItemWriter로 delegate 여러 개에 chunk를 넘길 때의 오버헤드를 delegate를 직접 호출하는 경우와 비교한다.
+ * delegate는 아이템을 Blackhole에 넘기기만 한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompositeItemWriterBenchmark {
+
+    @Param({"10", "1000"})
+    private int chunkSize;
+
+    @Param({"2"})
+    private int delegateCount;
+
+    private List<Person> chunk;
+    private List<ItemWriter<? super Person>> delegates;
+    private CompositeItemWriter<Person> compositeItemWriter;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws Exception {
+        this.blackhole = blackhole;
+        chunk = new ArrayList<>(chunkSize);
+        for (int i = 0; i < chunkSize; i++) {
+            chunk.add(new Person("이름" + i, String.valueOf(20 + i % 50), "서울시 강남구"));
+        }
+
+        delegates = new ArrayList<>();
+        for (int i = 0; i < delegateCount; i++) {
+            delegates.add(items -> {
+                for (Person person : items) {
+                    this.blackhole.consume(person);
+                }
+            });
+        }
+
+        compositeItemWriter = new CompositeItemWriterBuilder<Person>()
+                .delegates(delegates)
+                .build();
+        compositeItemWriter.afterPropertiesSet();
+    }
+
+    @Benchmark
+    public void composite() throws Exception {
+        compositeItemWriter.write(chunk);
+    }
+
+    @Benchmark
+    public void direct() throws Exception {
+        for (ItemWriter<? super Person> delegate : delegates) {
+            delegate.write(chunk);
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package fastcampus.spring.batch.part3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CustomItemReader로 리스트를 끝까지 읽는 시간. 읽는 중간에 chunk마다 update(ExecutionContext)도 호출한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CustomItemReaderBenchmark {
+
+    @Param({"100000"})
+    private int size;
+
+    @Param({"10", "1000"})
+    private int chunkSize;
+
+    private List<String> items;
+
+    @Setup
+    public void setUp() {
+        items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(String.valueOf(i));
+        }
+    }
+
+    @Benchmark
+    public void readAll(Blackhole blackhole) {
+        CustomItemReader<String> itemReader = new CustomItemReader<>(items);
+        ExecutionContext executionContext = new ExecutionContext();
+        itemReader.open(executionContext);
+
+        int count = 0;
+        String item;
+        while ((item = itemReader.read()) != null) {
+            blackhole.consume(item);
+            if (++count % chunkSize == 0) {
+                itemReader.update(executionContext);
+            }
+        }
+        itemReader.close();
+    }
+
+}
@@ -0,0 +1,71 @@
+package fastcampus.spring.batch.part3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * multi-thread step처럼 여러 스레드가 DuplicateValidationProcessor 하나를 같이 쓸 때의 처리량을 잰다.
+ * 키는 keySpace개 안에서 무작위로 뽑기 때문에 처음에는 대부분 새 키이고, 점점 중복(필터링)이 많아진다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(4)
+public class DuplicateValidationProcessorBenchmark {
+
+    @Param({"memory", "bloom"})
+    private String keyStore;
+
+    @Param({"1000000"})
+    private int keySpace;
+
+    private Person[] people;
+    private DuplicateValidationProcessor<Person> processor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        people = new Person[keySpace];
+        for (int i = 0; i < keySpace; i++) {
+            people[i] = new Person("이름" + i, String.valueOf(20 + i % 50), "서울시 강남구");
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void newProcessor() throws Exception {   //iteration마다 빈 키 저장소로 시작
+        KeyStore store = "bloom".equals(keyStore)
+                ? new BloomFilterKeyStore(keySpace, BloomFilterKeyStore.DEFAULT_FPP, BloomFilterKeyStore.DEFAULT_MAX_KEYS_IN_MEMORY, Files.createTempDirectory("dedup-benchmark"))
+                : new InMemoryKeyStore();
+        processor = new DuplicateValidationProcessor<>(Person::getName, false, store);
+        processor.setSaveState(false);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeProcessor() {
+        processor.close();
+    }
+
+    @Benchmark
+    public Person process() throws Exception {
+        return processor.process(people[ThreadLocalRandom.current().nextInt(keySpace)]);
+    }
+
+}
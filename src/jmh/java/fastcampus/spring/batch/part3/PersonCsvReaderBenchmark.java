@@ -0,0 +1,102 @@
+package fastcampus.spring.batch.part3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.file.FlatFileItemReader;
+import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SavePersonConfiguration에서 쓰던 FlatFileItemReader(DefaultLineMapper + DelimitedLineTokenizer)와
+ * PersonCsvItemReader로 같은 csv 파일을 끝까지 읽는 시간을 비교한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PersonCsvReaderBenchmark {
+
+    @Param({"100000"})
+    private int rows;
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws Exception {
+        file = Files.createTempFile("person-benchmark", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("이름,나이,거주지\n");
+            for (int i = 0; i < rows; i++) {
+                writer.write("이름" + i + "," + (20 + i % 50) + ",서울시 강남구 " + (i % 100) + "번지\n");
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void flatFileItemReader(Blackhole blackhole) throws Exception {
+        DefaultLineMapper<Person> lineMapper = new DefaultLineMapper<>();
+        DelimitedLineTokenizer lineTokenizer = new DelimitedLineTokenizer();
+        lineTokenizer.setNames("name", "age", "address");
+        lineMapper.setLineTokenizer(lineTokenizer);
+        lineMapper.setFieldSetMapper(fieldSet -> new Person(
+                fieldSet.readString(0),
+                fieldSet.readString(1),
+                fieldSet.readString(2)));
+
+        FlatFileItemReader<Person> itemReader = new FlatFileItemReaderBuilder<Person>()
+                .name("flatFileItemReader")
+                .encoding("UTF-8")
+                .linesToSkip(1)
+                .resource(new FileSystemResource(file))
+                .lineMapper(lineMapper)
+                .build();
+
+        readAll(itemReader, blackhole);
+    }
+
+    @Benchmark
+    public void personCsvItemReader(Blackhole blackhole) throws Exception {
+        PersonCsvItemReader itemReader = new PersonCsvItemReader(new FileSystemResource(file), false);
+        itemReader.setLinesToSkip(1);
+
+        readAll(itemReader, blackhole);
+    }
+
+    private void readAll(ItemStreamReader<Person> itemReader, Blackhole blackhole) throws Exception {
+        itemReader.open(new ExecutionContext());
+        Person person;
+        while ((person = itemReader.read()) != null) {
+            blackhole.consume(person);
+        }
+        itemReader.close();
+    }
+
+}
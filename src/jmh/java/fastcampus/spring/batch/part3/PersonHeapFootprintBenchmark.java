@@ -0,0 +1,130 @@
+package fastcampus.spring.batch.part3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * person csv rows줄을 읽어서 모두 메모리에 들고 있을 때 heap 사용량을 비교한다. (chunk 버퍼나 dedup snapshot이 대량의 Person을 들고 있는 상황)
+ * strings : 예전 Person처럼 나이/거주지를 줄마다 새 String으로 보관
+ * plain : 나이는 int로 보관, 거주지는 줄마다 새 String (intern 안 함)
+ * interned : 나이는 int, 거주지는 ValueDictionary로 같은 String을 공유
+ * heap 사용량은 읽은 뒤 GC 후 측정해서 iteration마다 출력한다. 시간은 읽는 데 걸린 시간.
+ * 10M rows는 heap이 3GB 정도 필요하다. 빠르게 보려면 -p rows=1000000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class PersonHeapFootprintBenchmark {
+
+    @Param({"strings", "plain", "interned"})
+    private String representation;
+
+    @Param({"10000000"})
+    private int rows;
+
+    private Path file;
+    private List<Object> retained;
+    private long baselineBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = Files.createTempFile("person-footprint", ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("이름,나이,거주지\n");
+            for (int i = 0; i < rows; i++) {
+                writer.write("이름" + i + "," + (20 + i % 50) + ",서울시 강남구 " + (i % 100) + "번지\n");
+            }
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void measureBaseline() {
+        retained = null;
+        baselineBytes = usedHeap();
+    }
+
+    @TearDown(Level.Iteration)
+    public void measureRetained() {
+        long retainedBytes = usedHeap() - baselineBytes;
+        System.out.printf("%n%s : %d rows, %d MB retained, %.1f bytes/row%n",
+                representation, retained.size(), retainedBytes / (1024 * 1024), (double) retainedBytes / retained.size());
+        retained = null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public List<Object> readAll() throws Exception {
+        PersonCsvItemReader itemReader = new PersonCsvItemReader(new FileSystemResource(file), false);
+        itemReader.setLinesToSkip(1);
+        itemReader.setInternMaxEntries("interned".equals(representation) ? 1024 : 0);
+
+        List<Object> people = new ArrayList<>(rows);
+        itemReader.open(new ExecutionContext());
+        Person person;
+        while ((person = itemReader.read()) != null) {
+            if ("strings".equals(representation)) {
+                people.add(new StringPerson(person.getId(), person.getName(), new String(person.getAge()), person.getAddress()));
+            } else {
+                people.add(person);
+            }
+        }
+        itemReader.close();
+
+        retained = people;
+        return people;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    //나이를 String으로 들고 있던 예전 Person과 같은 필드 구성
+    private static class StringPerson {
+
+        private final int id;
+        private final String name;
+        private final String age;
+        private final String address;
+
+        private StringPerson(int id, String name, String age, String address) {
+            this.id = id;
+            this.name = name;
+            this.age = age;
+            this.address = address;
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+package fastcampus.spring.batch.part3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * csv 한 줄을 Person으로 바꾸는 비용(DefaultLineMapper + DelimitedLineTokenizer)만 잰다. 파일 I/O는 포함하지 않는다.
+ * quoted=true면 따옴표로 감싼 필드가 있는 줄을 사용한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PersonLineMapperBenchmark {
+
+    private static final int LINES = 1024;
+
+    @Param({"false", "true"})
+    private boolean quoted;
+
+    private String[] lines;
+    private DefaultLineMapper<Person> lineMapper;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        lines = new String[LINES];
+        for (int i = 0; i < LINES; i++) {
+            lines[i] = quoted
+                    ? "\"이름" + i + "\"," + (20 + i % 50) + ",\"서울시 강남구, " + (i % 100) + "번지\""
+                    : "이름" + i + "," + (20 + i % 50) + ",서울시 강남구 " + (i % 100) + "번지";
+        }
+
+        lineMapper = new DefaultLineMapper<>();
+        DelimitedLineTokenizer lineTokenizer = new DelimitedLineTokenizer();
+        lineTokenizer.setNames("name", "age", "address");
+        lineMapper.setLineTokenizer(lineTokenizer);
+        lineMapper.setFieldSetMapper(fieldSet -> new Person(
+                fieldSet.readString(0),
+                fieldSet.readString(1),
+                fieldSet.readString(2)));
+    }
+
+    @Benchmark
+    public void mapLine(Blackhole blackhole) throws Exception {
+        int i = index++ & (LINES - 1);
+        blackhole.consume(lineMapper.mapLine(lines[i], i + 1));
+    }
+
+}
@@ -0,0 +1,124 @@
+package fastcampus.spring.batch.part3;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.database.JdbcBatchItemWriter;
+import org.springframework.batch.item.database.builder.JdbcBatchItemWriterBuilder;
+import org.springframework.batch.item.database.builder.JpaItemWriterBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * embedded H2에 chunk 하나(chunkSize개)를 트랜잭션 하나로 저장하는 시간을 writer별로 비교한다.
+ * jpa : JpaItemWriter / jdbc_batch : JdbcBatchItemWriter / multi_row : PersonBatchInsertItemWriter
+ * step과 같이 JpaTransactionManager를 사용하므로 JDBC writer도 JPA와 같은 커넥션/트랜잭션에서 실행된다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PersonWriterBenchmark {
+
+    @Param({"jpa", "jdbc_batch", "multi_row"})
+    private String writer;
+
+    @Param({"100", "1000"})
+    private int chunkSize;
+
+    private HikariDataSource dataSource;
+    private EntityManagerFactory entityManagerFactory;
+    private TransactionTemplate transactionTemplate;
+    private ItemWriter<Person> itemWriter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:writer-benchmark;DB_CLOSE_DELAY=-1");
+
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setPackagesToScan(Person.class.getPackage().getName());
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        Properties jpaProperties = new Properties();
+        jpaProperties.setProperty("hibernate.hbm2ddl.auto", "create");
+        factoryBean.setJpaProperties(jpaProperties);
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+
+        transactionTemplate = new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+        itemWriter = itemWriter();
+    }
+
+    private ItemWriter<Person> itemWriter() throws Exception {
+        switch (writer) {
+            case "jpa":
+                return new JpaItemWriterBuilder<Person>()
+                        .entityManagerFactory(entityManagerFactory)
+                        .build();
+            case "jdbc_batch":
+                JdbcBatchItemWriter<Person> jdbcBatchItemWriter = new JdbcBatchItemWriterBuilder<Person>()
+                        .dataSource(dataSource)
+                        .sql("insert into person(name, age, address) values (:name, :age, :address)")
+                        .beanMapped()
+                        .build();
+                jdbcBatchItemWriter.afterPropertiesSet();   //named parameter 사용 여부가 여기서 결정됨
+                return jdbcBatchItemWriter;
+            case "multi_row":
+                return new PersonBatchInsertItemWriter(dataSource);
+            default:
+                throw new IllegalArgumentException("알 수 없는 writer : " + writer);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {    //iteration마다 테이블을 비워서 테이블 크기가 결과에 영향을 주지 않도록 함
+        new JdbcTemplate(dataSource).execute("truncate table person");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManagerFactory.close();
+        dataSource.close();
+    }
+
+    @Benchmark
+    public void writeChunk() {
+        List<Person> chunk = new ArrayList<>(chunkSize);
+        for (int i = 0; i < chunkSize; i++) {
+            chunk.add(new Person("이름" + i, String.valueOf(20 + i % 50), "서울시 강남구"));
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            try {
+                itemWriter.write(chunk);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,92 @@
+package fastcampus.spring.batch.repository;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.batch.core.repository.ExecutionContextSerializer;
+import org.springframework.batch.core.repository.dao.Jackson2ExecutionContextStringSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * chunk 커밋마다 저장되는 step ExecutionContext를 serializer별로 직렬화/역직렬화하는 시간을 비교한다.
+ * small : reader 위치 같은 숫자 몇 개, large : dedup checkpoint 같은 긴 문자열이 추가된 컨텍스트
+ * 저장되는 바이트 수는 setUp에서 출력한다.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExecutionContextSerializerBenchmark {
+
+    @Param({"json", "binary", "binary_compressed"})
+    private String serializer;
+
+    @Param({"small", "large"})
+    private String context;
+
+    private ExecutionContextSerializer executionContextSerializer;
+    private Map<String, Object> executionContext;
+    private byte[] serialized;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Jackson2ExecutionContextStringSerializer jsonSerializer = new Jackson2ExecutionContextStringSerializer();
+        switch (serializer) {
+            case "json":
+                executionContextSerializer = jsonSerializer;
+                break;
+            case "binary":
+                executionContextSerializer = new BinaryExecutionContextSerializer(jsonSerializer, Integer.MAX_VALUE);
+                break;
+            default:
+                executionContextSerializer = new BinaryExecutionContextSerializer(jsonSerializer, 512);
+        }
+
+        executionContext = new HashMap<>();
+        executionContext.put("CustomItemReader.read.count", 1200);
+        executionContext.put("PersonBinaryItemReader.byte.offset", 98765L);
+        executionContext.put("batch.taskletType", "org.springframework.batch.core.step.item.ChunkOrientedTasklet");
+        executionContext.put("batch.stepType", "org.springframework.batch.core.step.tasklet.TaskletStep");
+        executionContext.put("minValue", 1L);
+        executionContext.put("maxValue", 100L);
+        if ("large".equals(context)) {
+            StringBuilder names = new StringBuilder();
+            for (int i = 0; i < 1000; i++) {
+                names.append("이름").append(i).append(',');
+            }
+            executionContext.put("dedup.names", names.toString());
+        }
+
+        serialized = serialize();
+        System.out.println(serializer + "/" + context + " : " + serialized.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        executionContextSerializer.serialize(executionContext, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Map<String, Object> deserialize() throws Exception {
+        return executionContextSerializer.deserialize(new ByteArrayInputStream(serialized));
+    }
+
+}
@@ -0,0 +1,54 @@
+package fastcampus.spring.batch.executor;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * multi-thread step과 partition step의 worker를 실행할 batchTaskExecutor.
+ * batch.executor.virtual-threads=true면 virtual thread로 실행하고 (Java 21 이상, ./gradlew bootRun -Pjava21), 아니면 platform thread로 실행한다.
+ * 어느 쪽이든 동시에 실행되는 worker 수는 Hikari 커넥션 풀 크기(maximum-pool-size)로 제한해서 worker가 커넥션을 기다리며 쌓이지 않게 한다.
+ */
+@Configuration
+@Slf4j
+public class BatchTaskExecutorConfiguration {
+
+    private static final int DEFAULT_POOL_SIZE = 10;   //Hikari 기본값
+
+    @Bean
+    public TaskExecutor batchTaskExecutor(DataSource dataSource,
+                                          @Value("${batch.executor.virtual-threads:false}") boolean virtualThreads) {
+        int concurrencyLimit = connectionPoolSize(dataSource);
+
+        if (virtualThreads) {
+            if (VirtualThreadTaskExecutor.isSupported()) {
+                log.info("batch worker를 virtual thread로 실행합니다 (동시 실행 {}개)", concurrencyLimit);
+                return new VirtualThreadTaskExecutor("batch-vt-", concurrencyLimit);
+            }
+            log.warn("Java {}에서는 virtual thread를 사용할 수 없어서 platform thread로 실행합니다", System.getProperty("java.version"));
+        }
+
+        SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("batch-");
+        taskExecutor.setConcurrencyLimit(concurrencyLimit);
+        return taskExecutor;
+    }
+
+    private int connectionPoolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            log.warn("커넥션 풀 크기를 확인할 수 없습니다", e);
+        }
+        return DEFAULT_POOL_SIZE;
+    }
+
+}
@@ -0,0 +1,83 @@
+package fastcampus.spring.batch.executor;
+
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 작업마다 virtual thread를 하나씩 만들어서 실행하는 TaskExecutor.
+ * 동시에 실행되는 작업 수는 concurrencyLimit(보통 커넥션 풀 크기)으로 제한하고, 자리가 없으면 execute를 호출한 스레드가 기다린다. (SimpleAsyncTaskExecutor의 concurrencyLimit과 같은 방식)
+ * 소스는 Java 11로 컴파일하므로 Thread.ofVirtual()은 리플렉션으로 호출한다. Java 21 미만에서는 isSupported()가 false다.
+ */
+public class VirtualThreadTaskExecutor implements TaskExecutor {
+
+    private final ThreadFactory threadFactory;
+    private final Semaphore permits;
+    private final int concurrencyLimit;
+
+    public VirtualThreadTaskExecutor(String threadNamePrefix, int concurrencyLimit) {
+        this(virtualThreadFactory(threadNamePrefix), concurrencyLimit);
+    }
+
+    //Java 21 미만에서도 동시 실행 제한을 테스트할 수 있도록 ThreadFactory를 받음
+    VirtualThreadTaskExecutor(ThreadFactory threadFactory, int concurrencyLimit) {
+        if (concurrencyLimit < 1) {
+            throw new IllegalArgumentException("concurrencyLimit은 1 이상이어야 합니다 : " + concurrencyLimit);
+        }
+        this.threadFactory = threadFactory;
+        this.permits = new Semaphore(concurrencyLimit);
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    //Java 19, 20에도 Thread.ofVirtual()이 있지만 preview 기능이라 --enable-preview 없이는 호출하면 실패하므로 버전으로 판단
+    public static boolean isSupported() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    //실행 중인 작업 수
+    public int getActiveCount() {
+        return concurrencyLimit - permits.availablePermits();
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TaskRejectedException("실행 슬롯을 기다리다 인터럽트 되었습니다", e);
+        }
+
+        try {
+            threadFactory.newThread(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            }).start();
+        } catch (RuntimeException | Error e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    //Thread.ofVirtual().name(prefix, 0).factory()
+    private static ThreadFactory virtualThreadFactory(String threadNamePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("virtual thread는 Java 21 이상에서만 사용할 수 있습니다 (현재 " + System.getProperty("java.version") + ")", e);
+        }
+    }
+
+}
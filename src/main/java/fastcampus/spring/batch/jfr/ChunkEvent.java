@@ -0,0 +1,60 @@
+package fastcampus.spring.batch.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * chunk 하나의 시작(beforeChunk)부터 커밋/롤백이 끝날 때까지. read / process / write / commit 구간에 걸린 시간을 같이 기록한다.
+ */
+@Name("fastcampus.batch.Chunk")
+@Label("Chunk")
+@Category({"Spring Batch", "Chunk"})
+@Description("chunk 시작부터 커밋 또는 롤백까지")
+@StackTrace(false)
+class ChunkEvent extends jdk.jfr.Event {
+
+    @Label("Job")
+    String job;
+
+    @Label("Step")
+    String step;
+
+    @Label("Outcome")
+    @Description("committed / rolled_back")
+    String outcome;
+
+    @Label("Read Count")
+    int readCount;
+
+    @Label("Filter Count")
+    int filterCount;
+
+    @Label("Write Count")
+    int writeCount;
+
+    @Label("Read Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long readTime;
+
+    @Label("Process Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long processTime;
+
+    @Label("Write Time")
+    @Description("fault tolerant step에서 write를 여러 번 하면 합계")
+    @Timespan(Timespan.NANOSECONDS)
+    long writeTime;
+
+    @Label("Commit Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long commitTime;
+
+    @Label("Failed Phase")
+    @Description("롤백된 chunk에서 실패한 구간 (read / process / write / commit)")
+    String failedPhase;
+
+}
@@ -0,0 +1,22 @@
+package fastcampus.spring.batch.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * 트랜잭션을 시작하면서 커넥션 풀에서 커넥션을 받기까지 기다린 시간. 1ms 이상 기다린 경우만 스택과 함께 기록한다.
+ */
+@Name("fastcampus.batch.ConnectionWait")
+@Label("Connection Wait")
+@Category({"Spring Batch", "Transaction"})
+@Description("DataSource.getConnection()에서 기다린 시간")
+@Threshold("1 ms")
+class ConnectionWaitEvent extends jdk.jfr.Event {
+
+    @Label("Pool")
+    String pool;
+
+}
@@ -0,0 +1,28 @@
+package fastcampus.spring.batch.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * DuplicateValidationProcessor가 키 저장소를 확인해서 item을 필터링할지 정한 결과. 샘플링한 item만 기록한다.
+ */
+@Name("fastcampus.batch.DedupDecision")
+@Label("Dedup Decision")
+@Category({"Spring Batch", "Item"})
+@Description("중복 키 확인 시간과 필터링 여부")
+@StackTrace(false)
+public class DedupDecisionEvent extends jdk.jfr.Event {
+
+    @Label("Key Store")
+    public String keyStore;
+
+    @Label("Filtered")
+    public boolean filtered;
+
+    @Label("Sample Interval")
+    public int sampleInterval;
+
+}
@@ -0,0 +1,36 @@
+package fastcampus.spring.batch.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * item 하나의 read 또는 process. item마다 기록하면 부담이 크므로 JfrSampler로 샘플링한 item만 기록한다.
+ */
+@Name("fastcampus.batch.Item")
+@Label("Item")
+@Category({"Spring Batch", "Item"})
+@Description("샘플링한 item 하나의 read/process 시간")
+@StackTrace(false)
+class ItemEvent extends jdk.jfr.Event {
+
+    @Label("Step")
+    String step;
+
+    @Label("Phase")
+    @Description("read / process")
+    String phase;
+
+    @Label("Filtered")
+    boolean filtered;
+
+    @Label("Failed")
+    boolean failed;
+
+    @Label("Sample Interval")
+    @Description("이 이벤트 하나가 대표하는 item 수")
+    int sampleInterval;
+
+}
@@ -0,0 +1,284 @@
+package fastcampus.spring.batch.jfr;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * chunk/item 리스너로 JFR 이벤트를 기록한다.
+ * - ChunkEvent : chunk 하나 (committed / rolled_back). chunk 안의 read, process, write, commit 구간 시간도 같이 기록한다.
+ *   구간마다 이벤트를 따로 남기면 chunk마다 이벤트가 5개라 recording 중 오버헤드가 커서 필드로 합쳤다. read 구간은 첫 process(processor가 없으면 write) 전까지
+ * - ItemEvent : item 하나의 read/process. JfrSampler로 샘플링한 item만 기록하고, item마다 난수를 뽑지 않도록 chunk 안에서 다음 샘플까지 남은 개수를 센다
+ * JFR recording이 없으면 이벤트의 commit()은 아무것도 하지 않고 구간 시간도 재지 않으므로 항상 붙여 두어도 된다.
+ * BatchMetricsListener처럼 StepExecutionListener로만 등록해도 chunk/item 리스너로 같이 등록되고, chunk 진행 상태는 스레드별로 둔다.
+ */
+public class JfrBatchListener implements StepExecutionListener, ChunkListener,
+        ItemReadListener<Object>, ItemProcessListener<Object, Object>, ItemWriteListener<Object> {
+
+    private static final String READ = "read";
+    private static final String PROCESS = "process";
+    private static final String WRITE = "write";
+    private static final String COMMIT = "commit";
+
+    private final ThreadLocal<ChunkState> currentChunk = new ThreadLocal<>();
+    private ChunkState lastChunk;      //item 콜백마다 ThreadLocal을 찾지 않도록 마지막 chunk를 캐시. 다른 스레드의 chunk면 ThreadLocal에서 찾음
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        return null;
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        ChunkState chunk = new ChunkState(context.getStepContext().getJobName(), context.getStepContext().getStepName(), new ItemEvent().isEnabled());
+        chunk.event.begin();
+        chunk.startPhase(READ);
+        currentChunk.set(chunk);
+        lastChunk = chunk;
+
+        if (chunk.timed && TransactionSynchronizationManager.isSynchronizationActive()) {  //beforeChunk는 chunk 트랜잭션 안에서 호출됨
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    chunk.startPhase(COMMIT);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (chunk.phase == COMMIT) {
+                        if (status != STATUS_COMMITTED) {
+                            chunk.failedPhase = COMMIT;
+                        }
+                        chunk.endPhase();
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {     //커밋이 끝난 뒤에 호출됨
+        endChunk("committed");
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        endChunk("rolled_back");
+    }
+
+    @Override
+    public void beforeRead() {
+        ChunkState chunk = current();
+        if (chunk != null) {
+            chunk.beginItem();
+        }
+    }
+
+    @Override
+    public void afterRead(Object item) {
+        ChunkState chunk = current();
+        if (chunk != null) {
+            chunk.read++;
+            chunk.endItem(READ, false, false);
+        }
+    }
+
+    @Override
+    public void onReadError(Exception ex) {
+        ChunkState chunk = current();
+        if (chunk != null) {
+            chunk.errorPhase = READ;
+            chunk.endItem(READ, false, true);
+        }
+    }
+
+    @Override
+    public void beforeProcess(Object item) {
+        ChunkState chunk = current();
+        if (chunk != null) {
+            if (chunk.phase != PROCESS) {
+                chunk.startPhase(PROCESS);
+            }
+            chunk.beginItem();
+        }
+    }
+
+    @Override
+    public void afterProcess(Object item, Object result) {
+        ChunkState chunk = current();
+        if (chunk != null) {
+            if (result == null) {
+                chunk.filtered++;
+            }
+            chunk.endItem(PROCESS, result == null, false);
+        }
+    }
+
+    @Override
+    public void onProcessError(Object item, Exception e) {
+        ChunkState chunk = current();
+        if (chunk != null) {
+            chunk.errorPhase = PROCESS;
+            chunk.endItem(PROCESS, false, true);
+        }
+    }
+
+    @Override
+    public void beforeWrite(List<?> items) {
+        ChunkState chunk = current();
+        if (chunk != null) {
+            chunk.startPhase(WRITE);     //fault tolerant step은 chunk 하나에서 write를 여러 번 할 수 있어서 시간을 더함
+        }
+    }
+
+    @Override
+    public void afterWrite(List<?> items) {
+        ChunkState chunk = current();
+        if (chunk != null) {
+            chunk.written += items.size();
+            chunk.endPhase();
+        }
+    }
+
+    @Override
+    public void onWriteError(Exception exception, List<?> items) {
+        ChunkState chunk = current();
+        if (chunk != null) {
+            chunk.errorPhase = WRITE;
+            chunk.endPhase();
+        }
+    }
+
+    private ChunkState current() {
+        ChunkState chunk = lastChunk;
+        if (chunk != null && chunk.thread == Thread.currentThread()) {     //thread는 final이라 다른 스레드가 만든 chunk인지 안전하게 확인할 수 있음
+            return chunk;
+        }
+        return currentChunk.get();
+    }
+
+    private void endChunk(String outcome) {
+        ChunkState chunk = currentChunk.get();
+        currentChunk.remove();
+        lastChunk = null;
+        if (chunk == null) {
+            return;
+        }
+        boolean committed = "committed".equals(outcome);
+        if (!committed && chunk.failedPhase == null) {     //커밋 실패가 아니면 마지막으로 에러가 난 구간, 없으면 진행 중이던 구간
+            chunk.failedPhase = chunk.errorPhase != null ? chunk.errorPhase : chunk.phase;
+        }
+        chunk.endPhase();
+        ChunkEvent event = chunk.event;
+        event.end();
+        if (event.shouldCommit()) {
+            event.job = chunk.job;
+            event.step = chunk.step;
+            event.outcome = outcome;
+            event.readCount = chunk.read;
+            event.filterCount = chunk.filtered;
+            event.writeCount = chunk.written;
+            event.readTime = chunk.readNanos;
+            event.processTime = chunk.processNanos;
+            event.writeTime = chunk.writeNanos;
+            event.commitTime = chunk.commitNanos;
+            event.failedPhase = committed ? null : chunk.failedPhase;
+            event.commit();
+        }
+    }
+
+    private static class ChunkState {
+
+        private final Thread thread = Thread.currentThread();
+        private final String job;
+        private final String step;
+        private final ChunkEvent event = new ChunkEvent();
+        private final boolean timed;       //recording이 없으면 구간 시간을 재지 않음
+        private String phase;              //진행 중인 구간
+        private long phaseStart;
+        private long readNanos;
+        private long processNanos;
+        private long writeNanos;
+        private long commitNanos;
+        private String errorPhase;         //마지막으로 에러가 난 구간
+        private String failedPhase;
+        private ItemEvent item;            //샘플링해서 기록 중인 item
+        private int untilSample;           //다음으로 기록할 item까지 남은 개수
+        private int read;
+        private int filtered;
+        private int written;
+
+        ChunkState(String job, String step, boolean itemEventEnabled) {
+            this.job = job;
+            this.step = step;
+            this.timed = event.isEnabled();
+            this.untilSample = itemEventEnabled ? JfrSampler.nextGap() : Integer.MAX_VALUE;     //recording이 없으면 샘플링하지 않음
+        }
+
+        void startPhase(String name) {
+            endPhase();
+            phase = name;
+            if (timed) {
+                phaseStart = System.nanoTime();
+            }
+        }
+
+        void endPhase() {
+            String ended = phase;
+            phase = null;
+            if (ended == null || !timed) {
+                return;
+            }
+            long elapsed = System.nanoTime() - phaseStart;
+            if (ended == READ) {
+                readNanos += elapsed;
+            } else if (ended == PROCESS) {
+                processNanos += elapsed;
+            } else if (ended == WRITE) {
+                writeNanos += elapsed;
+            } else {
+                commitNanos += elapsed;
+            }
+        }
+
+        void beginItem() {
+            if (--untilSample == 0) {
+                untilSample = JfrSampler.nextGap();
+                item = new ItemEvent();
+                item.begin();
+            }
+        }
+
+        void endItem(String name, boolean filtered, boolean failed) {
+            ItemEvent event = item;
+            item = null;
+            if (event == null) {
+                return;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.step = step;
+                event.phase = name;
+                event.filtered = filtered;
+                event.failed = failed;
+                event.sampleInterval = JfrSampler.getInterval();
+                event.commit();
+            }
+        }
+
+    }
+
+}
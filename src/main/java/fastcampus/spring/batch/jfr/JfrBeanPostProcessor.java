@@ -0,0 +1,52 @@
+package fastcampus.spring.batch.jfr;
+
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+
+/**
+ * StepBuilderFactory가 만드는 모든 step에 JfrBatchListener를 붙이고, DataSource를 JfrDataSource로 감싼다.
+ * BatchMetricsConfiguration의 @Primary StepBuilderFactory도 그대로 감싸므로 메트릭 설정과 상관없이 동작한다.
+ */
+public class JfrBeanPostProcessor implements BeanPostProcessor {
+
+    private final JfrBatchListener listener;
+
+    public JfrBeanPostProcessor(JfrBatchListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof StepBuilderFactory && !(bean instanceof JfrStepBuilderFactory)) {
+            return new JfrStepBuilderFactory((StepBuilderFactory) bean, listener);
+        }
+        if (bean instanceof DataSource && !(bean instanceof JfrDataSource)) {
+            return new JfrDataSource((DataSource) bean, beanName);
+        }
+        return bean;
+    }
+
+    private static class JfrStepBuilderFactory extends StepBuilderFactory {
+
+        private final StepBuilderFactory delegate;
+        private final JfrBatchListener listener;
+
+        JfrStepBuilderFactory(StepBuilderFactory delegate, JfrBatchListener listener) {
+            super(null, null);      //get()을 delegate에 넘기므로 사용하지 않음
+            this.delegate = delegate;
+            this.listener = listener;
+        }
+
+        @Override
+        public StepBuilder get(String name) {
+            return delegate.get(name)
+                    .listener((StepExecutionListener) listener);    //chunk/item 리스너로도 같이 등록됨
+        }
+
+    }
+
+}
@@ -0,0 +1,27 @@
+package fastcampus.spring.batch.jfr;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * 모든 step에 JFR 이벤트(fastcampus.batch.*)를 붙인다. 이벤트는 JFR recording이 있을 때만 기록된다.
+ * <pre>
+ * java -XX:StartFlightRecording=filename=batch.jfr,settings=profile -jar ... --job.name=savePersonJob
+ * jfr print --events "fastcampus.batch.*" batch.jfr
+ * </pre>
+ * item 단위 이벤트(Item, DedupDecision)는 batch.jfr.item-sample-interval건 중 한 건만 기록한다. (기본 1000, 1이면 모두 기록)
+ * batch.jfr.enabled=false로 끌 수 있다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "batch.jfr.enabled", havingValue = "true", matchIfMissing = true)
+public class JfrConfiguration {
+
+    @Bean
+    public static JfrBeanPostProcessor jfrBeanPostProcessor(Environment environment) {     //BeanPostProcessor는 다른 빈보다 먼저 만들어져야 하므로 static
+        JfrSampler.setInterval(environment.getProperty("batch.jfr.item-sample-interval", Integer.class, JfrSampler.DEFAULT_INTERVAL));
+        return new JfrBeanPostProcessor(new JfrBatchListener());
+    }
+
+}
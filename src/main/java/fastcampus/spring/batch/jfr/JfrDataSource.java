@@ -0,0 +1,52 @@
+package fastcampus.spring.batch.jfr;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 커넥션을 받기까지 기다린 시간을 ConnectionWaitEvent로 기록하는 DataSource.
+ * 트랜잭션 매니저는 chunk 트랜잭션을 시작할 때 커넥션을 받으므로, 풀이 모자라서 chunk가 기다린 시간이 여기에 잡힌다.
+ */
+public class JfrDataSource extends DelegatingDataSource {
+
+    private final String pool;
+
+    public JfrDataSource(DataSource targetDataSource, String pool) {
+        super(targetDataSource);
+        this.pool = pool;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        ConnectionWaitEvent event = new ConnectionWaitEvent();
+        event.begin();
+        try {
+            return super.getConnection();
+        } finally {
+            commit(event);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        ConnectionWaitEvent event = new ConnectionWaitEvent();
+        event.begin();
+        try {
+            return super.getConnection(username, password);
+        } finally {
+            commit(event);
+        }
+    }
+
+    private void commit(ConnectionWaitEvent event) {
+        event.end();
+        if (event.shouldCommit()) {     //recording이 없거나 threshold보다 짧으면 기록하지 않음
+            event.pool = pool;
+            event.commit();
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package fastcampus.spring.batch.jfr;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * item 단위 JFR 이벤트를 몇 건 중 한 건꼴로 기록할지 정한다.
+ * item마다 이벤트를 남기면 item 처리 시간이 짧은 step에서는 기록 비용이 처리 시간과 비슷해지므로, 무작위로 고른 item만 기록한다.
+ * 샘플링하지 않은 item은 난수 하나만 뽑고 끝난다. processor처럼 설정 코드에서 직접 만드는 객체에서도 쓸 수 있도록 전역 설정으로 둔다.
+ */
+public final class JfrSampler {
+
+    public static final int DEFAULT_INTERVAL = 1000;
+
+    private static volatile int interval = DEFAULT_INTERVAL;
+
+    private JfrSampler() {
+    }
+
+    /**
+     * @param interval 1이면 모든 item을 기록, 0 이하면 item 단위 이벤트를 기록하지 않음
+     */
+    public static void setInterval(int interval) {
+        JfrSampler.interval = interval;
+    }
+
+    public static int getInterval() {
+        return interval;
+    }
+
+    public static boolean sample() {
+        int current = interval;
+        return current == 1 || (current > 1 && ThreadLocalRandom.current().nextInt(current) == 0);
+    }
+
+    /**
+     * 다음으로 기록할 item까지 남은 개수. item마다 sample()로 난수를 뽑는 대신 이 값을 세어 내려간다.
+     * 기하분포로 뽑으므로 chunk마다 새로 뽑아도 interval건 중 한 건 비율은 같다.
+     * @return 1이면 바로 다음 item을 기록, item 단위 이벤트를 기록하지 않으면 Integer.MAX_VALUE
+     */
+    public static int nextGap() {
+        int current = interval;
+        if (current <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        if (current == 1) {
+            return 1;
+        }
+        double u = 1.0 - ThreadLocalRandom.current().nextDouble();     //(0, 1]
+        double gap = Math.floor(Math.log(u) / Math.log(1.0 - 1.0 / current)) + 1;
+        return gap >= Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) gap;
+    }
+
+}
@@ -0,0 +1,211 @@
+package fastcampus.spring.batch.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionException;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.UnexpectedJobExecutionException;
+import org.springframework.batch.core.job.AbstractJob;
+import org.springframework.batch.core.scope.context.JobSynchronizationManager;
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
+
+/**
+ * step 사이의 의존 관계(DAG)대로 실행하는 job. 의존하는 step이 모두 COMPLETED가 되면 바로 taskExecutor에서 실행하므로 서로 관계없는 step은 동시에 실행된다.
+ * 동시에 실행되는 step은 maxConcurrentSteps개로 제한한다.
+ * step이 하나라도 COMPLETED가 아니면 새 step은 시작하지 않고, 실행 중인 step이 끝나기를 기다린 뒤 가장 나쁜 상태로 job을 끝낸다.
+ * 재시작하면 SimpleJob과 같이 COMPLETED인 step은 건너뛴다.
+ * 끝나면 전체 실행 시간, step 실행 시간 합계와 critical path(가장 오래 걸린 의존 경로)를 로그로 남기고 job ExecutionContext에 저장한다.
+ */
+@Slf4j
+public class DagJob extends AbstractJob {
+
+    public static final String CRITICAL_PATH_KEY = "dag.critical.path";
+    public static final String CRITICAL_PATH_MILLIS_KEY = "dag.critical.path.millis";
+
+    private final Map<Step, List<Step>> dependencies;     //추가한 순서 = 위상 정렬 순서
+    private final TaskExecutor taskExecutor;
+    private final int maxConcurrentSteps;
+
+    DagJob(String name, Map<Step, List<Step>> dependencies, TaskExecutor taskExecutor, int maxConcurrentSteps) {
+        super(name);
+        this.dependencies = dependencies;
+        this.taskExecutor = taskExecutor;
+        this.maxConcurrentSteps = maxConcurrentSteps;
+    }
+
+    @Override
+    public Step getStep(String stepName) {
+        return dependencies.keySet().stream()
+                .filter(step -> step.getName().equals(stepName))
+                .findFirst()
+                .orElse(null);
+    }
+
+    @Override
+    public Collection<String> getStepNames() {
+        return dependencies.keySet().stream().map(Step::getName).collect(Collectors.toList());
+    }
+
+    @Override
+    protected void doExecute(JobExecution execution) throws JobExecutionException {
+        long startNanos = System.nanoTime();
+        List<Step> pending = new LinkedList<>(dependencies.keySet());
+        Map<Step, StepExecution> finished = new HashMap<>();
+        BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+        int running = 0;
+        StepExecution failed = null;
+        Throwable error = null;
+
+        while (true) {
+            if (failed == null && error == null) {
+                for (Iterator<Step> iterator = pending.iterator(); iterator.hasNext() && running < maxConcurrentSteps; ) {
+                    Step step = iterator.next();
+                    if (finished.keySet().containsAll(dependencies.get(step))) {
+                        iterator.remove();
+                        running++;
+                        taskExecutor.execute(() -> results.add(run(step, execution)));
+                    }
+                }
+            }
+            if (running == 0) {
+                break;
+            }
+
+            Result result;
+            try {
+                result = results.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UnexpectedJobExecutionException("step 완료를 기다리다 중단되었습니다", e);
+            }
+            running--;
+
+            if (result.error != null) {
+                error = error == null ? result.error : error;
+            } else if (result.stepExecution.getStatus() != BatchStatus.COMPLETED) {
+                failed = worse(failed, result.stepExecution);
+            } else {
+                finished.put(result.step, result.stepExecution);
+            }
+        }
+
+        if (error != null) {
+            if (error instanceof JobExecutionException) {
+                throw (JobExecutionException) error;
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            throw new UnexpectedJobExecutionException("step 실행 실패", error);
+        }
+
+        if (failed != null) {
+            execution.upgradeStatus(failed.getStatus());
+            execution.setExitStatus(failed.getExitStatus());
+        } else if (!finished.isEmpty()) {
+            execution.upgradeStatus(BatchStatus.COMPLETED);
+            execution.setExitStatus(ExitStatus.COMPLETED);
+        }
+        report(execution, finished, System.nanoTime() - startNanos);
+    }
+
+    private Result run(Step step, JobExecution execution) {
+        JobSynchronizationManager.register(execution);     //@JobScope step을 다른 스레드에서 실행하므로 job scope를 등록
+        try {
+            return new Result(step, handleStep(step, execution), null);
+        } catch (Throwable e) {
+            return new Result(step, null, e);
+        } finally {
+            JobSynchronizationManager.release();
+        }
+    }
+
+    private StepExecution worse(StepExecution current, StepExecution candidate) {
+        if (current == null || candidate.getStatus().isGreaterThan(current.getStatus())) {
+            return candidate;
+        }
+        return current;
+    }
+
+    //끝난 step마다 (의존 step 중 가장 늦은 경로 + 자기 실행 시간)을 계산해서 가장 긴 경로를 찾음
+    private void report(JobExecution execution, Map<Step, StepExecution> finished, long elapsedNanos) {
+        Map<Step, Long> pathMillis = new HashMap<>();
+        Map<Step, Step> previous = new HashMap<>();
+        Step last = null;
+        long totalMillis = 0;
+        for (Map.Entry<Step, List<Step>> entry : dependencies.entrySet()) {
+            Step step = entry.getKey();
+            if (!finished.containsKey(step)) {
+                continue;
+            }
+            long duration = durationMillis(finished.get(step));
+            totalMillis += duration;
+
+            long before = 0;
+            for (Step dependency : entry.getValue()) {
+                long dependencyMillis = pathMillis.getOrDefault(dependency, 0L);
+                if (dependencyMillis > before) {
+                    before = dependencyMillis;
+                    previous.put(step, dependency);
+                }
+            }
+            pathMillis.put(step, before + duration);
+            if (last == null || pathMillis.get(step) > pathMillis.get(last)) {
+                last = step;
+            }
+        }
+        if (last == null) {
+            return;
+        }
+
+        List<String> criticalPath = new ArrayList<>();
+        for (Step step = last; step != null; step = previous.get(step)) {
+            criticalPath.add(step.getName());
+        }
+        Collections.reverse(criticalPath);
+        String path = String.join(" -> ", criticalPath);
+
+        log.info("{} 실행 시간 {}ms, step 실행 시간 합계 {}ms, critical path {}ms : {}",
+                getName(), elapsedNanos / 1_000_000, totalMillis, pathMillis.get(last), path);
+        execution.getExecutionContext().putString(CRITICAL_PATH_KEY, path);
+        execution.getExecutionContext().putLong(CRITICAL_PATH_MILLIS_KEY, pathMillis.get(last));
+        getJobRepository().updateExecutionContext(execution);
+    }
+
+    private long durationMillis(StepExecution stepExecution) {
+        if (stepExecution.getStartTime() == null || stepExecution.getEndTime() == null) {
+            return 0;
+        }
+        return stepExecution.getEndTime().getTime() - stepExecution.getStartTime().getTime();
+    }
+
+    private static class Result {
+
+        private final Step step;
+        private final StepExecution stepExecution;
+        private final Throwable error;
+
+        private Result(Step step, StepExecution stepExecution, Throwable error) {
+            this.step = step;
+            this.stepExecution = stepExecution;
+            this.error = error;
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package fastcampus.spring.batch.job;
+
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.job.builder.JobBuilderHelper;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DagJob을 만드는 builder. jobBuilderFactory.get(...)으로 만든 builder의 repository, incrementer, listener 설정을 그대로 이어받는다.
+ * <pre>
+ * new DagJobBuilder(jobBuilderFactory.get("job").incrementer(new RunIdIncrementer()))
+ *         .step(a)
+ *         .step(b)
+ *         .step(c, a, b)    //c는 a, b가 끝난 뒤 실행
+ *         .taskExecutor(taskExecutor)
+ *         .build();
+ * </pre>
+ * 의존하는 step은 먼저 추가되어 있어야 하므로 순환이 생기지 않는다.
+ */
+public class DagJobBuilder extends JobBuilderHelper<DagJobBuilder> {
+
+    private final Map<Step, List<Step>> dependencies = new LinkedHashMap<>();
+    private TaskExecutor taskExecutor;
+    private int maxConcurrentSteps = 4;
+
+    public DagJobBuilder(JobBuilderHelper<?> parent) {
+        super(parent);
+    }
+
+    public DagJobBuilder step(Step step, Step... dependsOn) {
+        if (dependencies.containsKey(step)) {
+            throw new IllegalArgumentException("이미 추가된 step입니다 : " + step.getName());
+        }
+        for (Step dependency : dependsOn) {
+            if (!dependencies.containsKey(dependency)) {
+                throw new IllegalArgumentException(step.getName() + "이 의존하는 " + dependency.getName() + "을 먼저 추가해야 합니다");
+            }
+        }
+        dependencies.put(step, Arrays.asList(dependsOn));
+        return this;
+    }
+
+    /**
+     * step을 실행할 executor. 지정하지 않으면 SimpleAsyncTaskExecutor
+     */
+    public DagJobBuilder taskExecutor(TaskExecutor taskExecutor) {
+        this.taskExecutor = taskExecutor;
+        return this;
+    }
+
+    public DagJobBuilder maxConcurrentSteps(int maxConcurrentSteps) {
+        if (maxConcurrentSteps < 1) {
+            throw new IllegalArgumentException("maxConcurrentSteps는 1 이상이어야 합니다 : " + maxConcurrentSteps);
+        }
+        this.maxConcurrentSteps = maxConcurrentSteps;
+        return this;
+    }
+
+    public Job build() {
+        if (dependencies.isEmpty()) {
+            throw new IllegalStateException("step이 없습니다");
+        }
+        DagJob job = new DagJob(getName(), new LinkedHashMap<>(dependencies),
+                taskExecutor != null ? taskExecutor : new SimpleAsyncTaskExecutor(getName() + "-"), maxConcurrentSteps);
+        enhance(job);   //repository, incrementer, listener 설정
+        return job;
+    }
+
+}
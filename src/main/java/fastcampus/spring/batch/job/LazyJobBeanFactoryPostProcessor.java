@@ -0,0 +1,62 @@
+package fastcampus.spring.batch.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.util.PatternMatchUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Job, Step, Tasklet, reader/processor/writer 빈을 lazy로 바꾸고, 실행할 job이 아닌 Job 빈은 다른 빈에 주입되지 않게 하는 BeanFactoryPostProcessor.
+ * JobLauncherApplicationRunner는 모든 Job 빈을 주입받기 때문에 lazy만으로는 부족하고, 주입 후보에서도 빼야 선택한 job의 step/reader/writer만 만들어진다.
+ * 실행할 job은 빈 이름으로 고르므로 Job 빈 이름과 job 이름(jobBuilderFactory.get(...))이 같아야 한다.
+ * jobNames가 비어 있으면(모든 job 실행) 주입 후보는 그대로 두고 lazy만 적용한다.
+ */
+@Slf4j
+public class LazyJobBeanFactoryPostProcessor implements BeanFactoryPostProcessor {
+
+    private static final Class<?>[] LAZY_TYPES = {Job.class, Step.class, Tasklet.class, ItemReader.class, ItemProcessor.class, ItemWriter.class};
+
+    private final String[] jobNames;
+
+    /**
+     * @param jobNames 실행할 job 이름. JobLauncherApplicationRunner와 같이 "savePerson*" 같은 패턴도 사용할 수 있다
+     */
+    public LazyJobBeanFactoryPostProcessor(String... jobNames) {
+        this.jobNames = jobNames;
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        Set<String> lazyBeans = new HashSet<>();
+        for (Class<?> type : LAZY_TYPES) {
+            for (String beanName : beanFactory.getBeanNamesForType(type, true, false)) {    //빈을 만들지 않고 bean definition의 타입으로만 찾음
+                if (beanFactory.containsBeanDefinition(beanName)) {     //registerSingleton으로 등록한 빈은 이미 만들어져 있음
+                    beanFactory.getBeanDefinition(beanName).setLazyInit(true);
+                    lazyBeans.add(beanName);
+                }
+            }
+        }
+
+        int skippedJobs = 0;
+        if (jobNames.length > 0) {
+            for (String beanName : beanFactory.getBeanNamesForType(Job.class, true, false)) {
+                if (beanFactory.containsBeanDefinition(beanName) && !PatternMatchUtils.simpleMatch(jobNames, beanName)) {
+                    beanFactory.getBeanDefinition(beanName).setAutowireCandidate(false);
+                    skippedJobs++;
+                }
+            }
+        }
+        log.info("job 관련 빈 {}개를 lazy로 등록했습니다. 실행하지 않는 job {}개는 만들지 않습니다", lazyBeans.size(), skippedJobs);
+    }
+
+}
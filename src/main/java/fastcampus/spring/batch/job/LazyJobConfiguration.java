@@ -0,0 +1,22 @@
+package fastcampus.spring.batch.job;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+/**
+ * batch.lazy-jobs=true면 spring.batch.job.names(job.name)로 고른 job의 빈만 만든다. (LazyJobBeanFactoryPostProcessor 참고)
+ * job 하나만 실행하고 끝나는 CLI 실행에서 다른 job의 step, reader, writer를 만드는 시간을 줄인다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "batch.lazy-jobs", havingValue = "true")
+public class LazyJobConfiguration {
+
+    @Bean
+    public static LazyJobBeanFactoryPostProcessor lazyJobBeanFactoryPostProcessor(Environment environment) {    //BeanFactoryPostProcessor는 다른 빈보다 먼저 만들어져야 하므로 static
+        return new LazyJobBeanFactoryPostProcessor(StringUtils.tokenizeToStringArray(environment.getProperty("spring.batch.job.names", ""), ","));
+    }
+
+}
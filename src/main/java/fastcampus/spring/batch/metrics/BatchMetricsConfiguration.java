@@ -0,0 +1,102 @@
+package fastcampus.spring.batch.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Paths;
+
+/**
+ * 모든 job/step에 BatchMetricsListener를 붙이고, 메트릭을 Prometheus registry로 모은다.
+ * JobBuilderFactory/StepBuilderFactory를 @Primary로 다시 등록해서 기존 설정 코드를 고치지 않아도 리스너가 붙는다.
+ * registry는 Metrics.globalRegistry에도 추가되므로 Spring Batch가 기록하는 spring.batch.* 메트릭도 같이 나간다.
+ * batch.metrics.enabled=false로 끌 수 있고, 파일 위치는 batch.metrics.export-dir (기본 output/metrics).
+ */
+@Configuration
+@ConditionalOnProperty(name = "batch.metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class BatchMetricsConfiguration implements DisposableBean {
+
+    private final PrometheusMeterRegistry prometheusMeterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    public BatchMetricsConfiguration() {
+        prometheusMeterRegistry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (id.getName().startsWith("batch.") || id.getName().startsWith("spring.batch.")) {   //latency 분포를 볼 수 있도록 histogram bucket 추가
+                    return DistributionStatisticConfig.builder()
+                            .percentilesHistogram(true)
+                            .build()
+                            .merge(config);
+                }
+                return config;
+            }
+        });
+        Metrics.addRegistry(prometheusMeterRegistry);
+    }
+
+    @Bean
+    public PrometheusMeterRegistry prometheusMeterRegistry() {
+        return prometheusMeterRegistry;
+    }
+
+    @Bean
+    public BatchMetricsListener batchMetricsListener() {
+        return new BatchMetricsListener(Metrics.globalRegistry);
+    }
+
+    @Bean
+    public PrometheusFileExporter prometheusFileExporter(@Value("${batch.metrics.export-dir:output/metrics}") String exportDir) {
+        return new PrometheusFileExporter(prometheusMeterRegistry, Paths.get(exportDir));
+    }
+
+    @Bean
+    @Primary
+    public JobBuilderFactory meteredJobBuilderFactory(JobRepository jobRepository, PrometheusFileExporter prometheusFileExporter) {
+        BatchMetricsListener metricsListener = batchMetricsListener();
+        return new JobBuilderFactory(jobRepository) {
+            @Override
+            public JobBuilder get(String name) {
+                return super.get(name)
+                        .listener((JobExecutionListener) prometheusFileExporter)
+                        .listener((JobExecutionListener) metricsListener);     //afterJob은 역순으로 호출되므로 메트릭을 기록한 뒤에 파일로 내보냄
+            }
+        };
+    }
+
+    @Bean
+    @Primary
+    public StepBuilderFactory meteredStepBuilderFactory(JobRepository jobRepository, PlatformTransactionManager transactionManager) {
+        BatchMetricsListener metricsListener = batchMetricsListener();
+        return new StepBuilderFactory(jobRepository, transactionManager) {
+            @Override
+            public StepBuilder get(String name) {
+                return super.get(name)
+                        .listener((StepExecutionListener) metricsListener);    //chunk/item 리스너로도 같이 등록됨
+            }
+        };
+    }
+
+    @Override
+    public void destroy() {
+        Metrics.removeRegistry(prometheusMeterRegistry);
+        prometheusMeterRegistry.close();
+    }
+
+}
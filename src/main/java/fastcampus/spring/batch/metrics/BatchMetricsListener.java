@@ -0,0 +1,279 @@
+package fastcampus.spring.batch.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * job/step/chunk/item 리스너로 배치 메트릭을 Micrometer에 기록한다. 모든 메트릭에 job, step 태그가 붙는다.
+ * - batch.job, batch.step : 실행 시간 (status 태그)
+ * - batch.item.read, batch.item.process, batch.chunk.write, batch.chunk.commit, batch.chunk : 구간별 시간
+ * - batch.items.read/written/filtered/skipped, batch.chunk.rollbacks : 커밋된 StepExecution 카운트의 증가분
+ * StepExecutionListener로만 등록해도 step builder가 chunk/item 리스너로 같이 등록해준다.
+ * 인스턴스 하나를 모든 step이 같이 쓰므로 chunk 진행 상태는 스레드별로 둔다.
+ */
+@Slf4j
+public class BatchMetricsListener implements JobExecutionListener, StepExecutionListener, ChunkListener,
+        ItemReadListener<Object>, ItemProcessListener<Object, Object>, ItemWriteListener<Object> {
+
+    private final MeterRegistry registry;
+    private final Map<String, StepMeters> stepMeters = new ConcurrentHashMap<>();
+    private final Map<Long, StepCounts> stepCounts = new ConcurrentHashMap<>();     //StepExecution id별 마지막으로 반영한 카운트
+    private final ThreadLocal<ChunkState> currentChunk = new ThreadLocal<>();
+
+    public BatchMetricsListener(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        Timer.builder("batch.job")
+                .tags("job", jobExecution.getJobInstance().getJobName(), "status", jobExecution.getStatus().name())
+                .register(registry)
+                .record(elapsedMillis(jobExecution.getStartTime()), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        stepCounts.put(stepExecution.getId(), new StepCounts());
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        StepMeters meters = meters(stepExecution.getJobExecution().getJobInstance().getJobName(), stepExecution.getStepName());
+        StepCounts counts = stepCounts.remove(stepExecution.getId());
+        if (counts != null) {
+            counts.publish(stepExecution, meters);      //마지막 chunk 이후 바뀐 카운트(skip 등) 반영
+        }
+
+        long elapsed = elapsedMillis(stepExecution.getStartTime());
+        Timer.builder("batch.step")
+                .tags(meters.tags.and("status", stepExecution.getStatus().name()))
+                .register(registry)
+                .record(elapsed, TimeUnit.MILLISECONDS);
+
+        log.info("[{}] read {}, write {}, filter {}, skip {} ({} items/sec)", stepExecution.getStepName(),
+                stepExecution.getReadCount(), stepExecution.getWriteCount(), stepExecution.getFilterCount(), stepExecution.getSkipCount(),
+                elapsed > 0 ? stepExecution.getWriteCount() * 1000L / elapsed : stepExecution.getWriteCount());
+        return null;
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        StepMeters meters = meters(context.getStepContext().getJobName(), context.getStepContext().getStepName());
+        ChunkState chunk = new ChunkState(meters);
+        currentChunk.set(chunk);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {  //beforeChunk는 chunk 트랜잭션 안에서 호출됨
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    chunk.commitStart = System.nanoTime();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED && chunk.commitStart > 0) {
+                        meters.commit.record(System.nanoTime() - chunk.commitStart, TimeUnit.NANOSECONDS);
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {     //커밋이 끝난 뒤에 호출됨
+        ChunkState chunk = endChunk();
+        if (chunk != null) {
+            chunk.meters.chunkCommitted.record(System.nanoTime() - chunk.start, TimeUnit.NANOSECONDS);
+            publishCounts(context.getStepContext().getStepExecution(), chunk.meters);
+        }
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        ChunkState chunk = endChunk();
+        if (chunk != null) {
+            chunk.meters.chunkRolledBack.record(System.nanoTime() - chunk.start, TimeUnit.NANOSECONDS);
+            publishCounts(context.getStepContext().getStepExecution(), chunk.meters);
+        }
+    }
+
+    @Override
+    public void beforeRead() {
+        ChunkState chunk = currentChunk.get();
+        if (chunk != null) {
+            chunk.itemStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterRead(Object item) {
+        ChunkState chunk = currentChunk.get();
+        if (chunk != null) {
+            chunk.meters.read.record(System.nanoTime() - chunk.itemStart, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void onReadError(Exception ex) {
+    }
+
+    @Override
+    public void beforeProcess(Object item) {
+        ChunkState chunk = currentChunk.get();
+        if (chunk != null) {
+            chunk.itemStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterProcess(Object item, Object result) {
+        ChunkState chunk = currentChunk.get();
+        if (chunk != null) {
+            chunk.meters.process.record(System.nanoTime() - chunk.itemStart, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void onProcessError(Object item, Exception e) {
+    }
+
+    @Override
+    public void beforeWrite(List<?> items) {
+        ChunkState chunk = currentChunk.get();
+        if (chunk != null) {
+            chunk.itemStart = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void afterWrite(List<?> items) {
+        ChunkState chunk = currentChunk.get();
+        if (chunk != null) {
+            chunk.meters.write.record(System.nanoTime() - chunk.itemStart, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void onWriteError(Exception exception, List<?> items) {
+    }
+
+    private ChunkState endChunk() {
+        ChunkState chunk = currentChunk.get();
+        currentChunk.remove();
+        return chunk;
+    }
+
+    private void publishCounts(StepExecution stepExecution, StepMeters meters) {
+        StepCounts counts = stepCounts.get(stepExecution.getId());
+        if (counts != null) {
+            counts.publish(stepExecution, meters);
+        }
+    }
+
+    private StepMeters meters(String jobName, String stepName) {
+        String step = stepName.contains(":") ? stepName.substring(0, stepName.indexOf(':')) : stepName;     //파티션 step(worker:partition0)은 worker 이름으로 묶음
+        return stepMeters.computeIfAbsent(jobName + "/" + step, key -> new StepMeters(registry, Tags.of("job", jobName, "step", step)));
+    }
+
+    private static long elapsedMillis(java.util.Date startTime) {
+        return startTime != null ? Math.max(0, System.currentTimeMillis() - startTime.getTime()) : 0;
+    }
+
+    private static class StepMeters {
+
+        private final Tags tags;
+        private final Timer read;
+        private final Timer process;
+        private final Timer write;
+        private final Timer commit;
+        private final Timer chunkCommitted;
+        private final Timer chunkRolledBack;
+        private final Counter itemsRead;
+        private final Counter itemsWritten;
+        private final Counter itemsFiltered;
+        private final Counter itemsSkipped;
+        private final Counter rollbacks;
+
+        StepMeters(MeterRegistry registry, Tags tags) {
+            this.tags = tags;
+            this.read = registry.timer("batch.item.read", tags);
+            this.process = registry.timer("batch.item.process", tags);
+            this.write = registry.timer("batch.chunk.write", tags);
+            this.commit = registry.timer("batch.chunk.commit", tags);
+            this.chunkCommitted = registry.timer("batch.chunk", tags.and("outcome", "committed"));
+            this.chunkRolledBack = registry.timer("batch.chunk", tags.and("outcome", "rolled_back"));
+            this.itemsRead = registry.counter("batch.items.read", tags);
+            this.itemsWritten = registry.counter("batch.items.written", tags);
+            this.itemsFiltered = registry.counter("batch.items.filtered", tags);
+            this.itemsSkipped = registry.counter("batch.items.skipped", tags);
+            this.rollbacks = registry.counter("batch.chunk.rollbacks", tags);
+        }
+
+    }
+
+    private static class StepCounts {
+
+        private long read;
+        private long written;
+        private long filtered;
+        private long skipped;
+        private long rollbacks;
+
+        //multi-thread step이면 여러 스레드가 동시에 호출하므로 동기화
+        synchronized void publish(StepExecution stepExecution, StepMeters meters) {
+            read = increment(meters.itemsRead, read, stepExecution.getReadCount());
+            written = increment(meters.itemsWritten, written, stepExecution.getWriteCount());
+            filtered = increment(meters.itemsFiltered, filtered, stepExecution.getFilterCount());
+            skipped = increment(meters.itemsSkipped, skipped, stepExecution.getSkipCount());
+            rollbacks = increment(meters.rollbacks, rollbacks, stepExecution.getRollbackCount());
+        }
+
+        private static long increment(Counter counter, long previous, long current) {
+            if (current > previous) {
+                counter.increment(current - previous);
+                return current;
+            }
+            return previous;
+        }
+
+    }
+
+    private static class ChunkState {
+
+        private final StepMeters meters;
+        private final long start = System.nanoTime();
+        private long itemStart;
+        private volatile long commitStart;
+
+        ChunkState(StepMeters meters) {
+            this.meters = meters;
+        }
+
+    }
+
+}
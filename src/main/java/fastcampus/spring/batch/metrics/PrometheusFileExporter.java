@@ -0,0 +1,47 @@
+package fastcampus.spring.batch.metrics;
+
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * job이 끝날 때마다 registry 내용을 Prometheus text 형식으로 {directory}/{jobName}.prom 파일에 쓴다.
+ * node_exporter textfile collector 등으로 수집할 수 있도록 임시 파일에 쓴 뒤 교체한다.
+ * 파일 쓰기에 실패해도 job 결과에는 영향을 주지 않는다.
+ */
+@Slf4j
+public class PrometheusFileExporter implements JobExecutionListener {
+
+    private final PrometheusMeterRegistry registry;
+    private final Path directory;
+
+    public PrometheusFileExporter(PrometheusMeterRegistry registry, Path directory) {
+        this.registry = registry;
+        this.directory = directory;
+    }
+
+    @Override
+    public void beforeJob(JobExecution jobExecution) {
+    }
+
+    @Override
+    public void afterJob(JobExecution jobExecution) {
+        Path file = directory.resolve(jobExecution.getJobInstance().getJobName() + ".prom");
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, ".metrics-", ".tmp");
+            Files.write(temp, registry.scrape().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("메트릭 파일 저장 실패 : {}", file, e);
+        }
+    }
+
+}
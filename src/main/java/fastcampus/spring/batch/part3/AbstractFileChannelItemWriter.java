@@ -0,0 +1,249 @@
+package fastcampus.spring.batch.part3;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.support.AbstractItemStreamItemWriter;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * 아이템을 direct buffer에 모았다가 chunk 커밋 직전(update)에 한 번만 파일에 쓰고 force 하는 writer의 공통 부분. (group commit)
+ * chunk가 롤백되면 마지막 커밋 위치로 파일을 잘라내고, 재시작하면 ExecutionContext에 저장된 위치로 잘라낸 뒤 이어서 쓴다.
+ * 하위 클래스는 writeItem에서 buffer()에 아이템을 인코딩한다.
+ */
+public abstract class AbstractFileChannelItemWriter<T> extends AbstractItemStreamItemWriter<T> {
+
+    private static final String CURRENT_POSITION = "current.position";
+    private static final String WRITTEN = "written";
+
+    private final Path file;
+    private int bufferSize = 1024 * 1024;
+    private boolean append = false;
+    private boolean saveState = true;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+
+    private long committedPosition;     //커밋된 파일 길이. 롤백되면 여기까지 잘라냄
+    private long committedWritten;
+    private long written;
+    private boolean synchronizationRegistered;
+
+    protected AbstractFileChannelItemWriter(Path file) {
+        this.file = file;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public void setAppend(boolean append) {
+        this.append = append;
+    }
+
+    public void setSaveState(boolean saveState) {
+        this.saveState = saveState;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * 새로 쓰기 시작할 때(재시작이 아닐 때) 호출된다. empty면 파일이 비어있으므로 header를 쓰면 된다.
+     */
+    protected void openFile(boolean empty) throws IOException {
+    }
+
+    /**
+     * close 직전에 호출된다. footer를 쓰면 된다.
+     */
+    protected void closeFile() throws IOException {
+    }
+
+    protected abstract void writeItem(T item) throws IOException;
+
+    /**
+     * buffer에 모인 바이트를 파일로 내보낸다. 압축 등이 필요하면 재정의한다.
+     */
+    protected void writeBuffer(ByteBuffer bytes) throws IOException {
+        writeFully(bytes);
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        super.open(executionContext);
+        boolean restarted = saveState && executionContext.containsKey(getExecutionContextKey(CURRENT_POSITION));
+
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            channel = restarted || append
+                    ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)
+                    : FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+            if (restarted) {    //마지막 커밋 이후에 쓴 내용(롤백된 chunk, footer)은 버림
+                committedPosition = executionContext.getLong(getExecutionContextKey(CURRENT_POSITION));
+                committedWritten = executionContext.getLong(getExecutionContextKey(WRITTEN), 0);
+                channel.truncate(committedPosition);
+            } else {
+                committedPosition = channel.size();
+                committedWritten = 0;
+            }
+            channel.position(committedPosition);
+            written = committedWritten;
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+
+            if (!restarted) {
+                openFile(committedPosition == 0);
+                flush();
+                markCommitted();    //첫 chunk가 롤백되어도 header는 남김
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("출력 파일을 열 수 없습니다 : " + file, e);
+        }
+    }
+
+    @Override
+    public void write(List<? extends T> items) throws Exception {
+        registerSynchronization();
+        for (T item : items) {
+            writeItem(item);
+        }
+        written += items.size();
+    }
+
+    //chunk 트랜잭션이 커밋되기 직전에 호출됨. 버퍼를 한 번에 쓰고 force 한 뒤 그 위치를 저장
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        super.update(executionContext);
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            flush();
+            channel.force(false);
+        } catch (IOException e) {
+            throw new ItemStreamException("출력 파일 저장 실패 : " + file, e);
+        }
+
+        if (!synchronizationRegistered) {   //트랜잭션 밖이면 바로 커밋된 것으로 봄
+            markCommitted();
+        }
+        if (saveState) {
+            executionContext.putLong(getExecutionContextKey(CURRENT_POSITION), position());
+            executionContext.putLong(getExecutionContextKey(WRITTEN), written);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        super.close();
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            closeFile();
+            flush();
+            channel.force(false);
+        } catch (IOException e) {
+            throw new ItemStreamException("출력 파일 저장 실패 : " + file, e);
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+            buffer = null;
+        }
+    }
+
+    /**
+     * 최소 required 바이트를 쓸 수 있는 buffer. 자리가 없으면 먼저 파일로 내보낸다. (커밋 전이므로 롤백되면 잘라냄)
+     */
+    protected ByteBuffer buffer(int required) throws IOException {
+        if (buffer.remaining() < required) {
+            flush();
+            if (buffer.capacity() < required) {     //아이템 하나가 버퍼보다 크면 버퍼를 늘림
+                buffer = ByteBuffer.allocateDirect(Math.max(required, buffer.capacity() * 2));
+            }
+        }
+        return buffer;
+    }
+
+    protected ByteBuffer buffer() {
+        return buffer;
+    }
+
+    protected void flush() throws IOException {
+        buffer.flip();
+        if (buffer.hasRemaining()) {
+            writeBuffer(buffer);
+        }
+        buffer.clear();
+    }
+
+    protected void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private void registerSynchronization() {
+        if (synchronizationRegistered || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                synchronizationRegistered = false;
+                if (status == STATUS_COMMITTED) {
+                    markCommitted();
+                } else {
+                    rollback();
+                }
+            }
+        });
+        synchronizationRegistered = true;
+    }
+
+    private void markCommitted() {
+        committedPosition = position();
+        committedWritten = written;
+    }
+
+    //커밋되지 않은 내용은 버퍼와 파일에서 모두 버림
+    private void rollback() {
+        if (channel == null) {
+            return;
+        }
+        buffer.clear();
+        written = committedWritten;
+        try {
+            channel.truncate(committedPosition);
+            channel.position(committedPosition);
+        } catch (IOException e) {
+            throw new ItemStreamException("롤백된 chunk를 파일에서 잘라낼 수 없습니다 : " + file, e);
+        }
+    }
+
+    private long position() {
+        try {
+            return channel.position();
+        } catch (IOException e) {
+            throw new ItemStreamException("출력 파일 위치를 확인할 수 없습니다 : " + file, e);
+        }
+    }
+
+}
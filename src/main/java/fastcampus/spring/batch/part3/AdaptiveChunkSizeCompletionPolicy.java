@@ -0,0 +1,259 @@
+package fastcampus.spring.batch.part3;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemProcessListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.repeat.RepeatContext;
+import org.springframework.batch.repeat.context.RepeatContextSupport;
+import org.springframework.batch.repeat.policy.CompletionPolicySupport;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * chunk 하나를 읽기/처리/쓰기/커밋하는 데 걸린 시간을 재서, 목표 커밋 시간(targetCommitMillis)에 맞도록 다음 chunk 크기를 늘리거나 줄이는 CompletionPolicy.
+ * 읽기/처리/쓰기 시간은 아이템 수에 비례하고, 나머지(커밋, ExecutionContext 저장)는 chunk마다 고정으로 드는 시간으로 보고
+ * (목표 - 고정 시간) / 아이템당 시간 을 다음 chunk 크기의 목표로 삼는다. 단계별 시간을 재지 못하면 전체 시간을 아이템 수로 나눠서 판단한다.
+ * chunk 크기는 [minChunkSize, maxChunkSize] 안에서만 움직이고, 한 번에 최대 2배까지만 바뀐다. 롤백되면 절반으로 줄인다.
+ * ChunkListener로도 등록해야 시간을 잴 수 있다. (stepBuilder.chunk(policy) ... .listener((ChunkListener) policy), step builder가 item 리스너로도 같이 등록해줌)
+ * 선택된 chunk 크기는 batch.chunk.size 게이지와 batch.chunk.size.chosen 분포로 step 이름별로 내보낸다.
+ */
+@Slf4j
+public class AdaptiveChunkSizeCompletionPolicy extends CompletionPolicySupport
+        implements ChunkListener, ItemReadListener<Object>, ItemProcessListener<Object, Object>, ItemWriteListener<Object> {
+
+    private static final double SMOOTHING = 0.5;
+
+    private final String stepName;
+    private final long targetNanos;
+    private final int minChunkSize;
+    private final int maxChunkSize;
+
+    private final AtomicInteger chunkSize;
+    private final DistributionSummary chosenChunkSizes;
+
+    private final ThreadLocal<SizeContext> currentChunk = new ThreadLocal<>();
+    private final ThreadLocal<ChunkTimes> chunkTimes = new ThreadLocal<>();
+    private final LongSupplier nanoTime;
+
+    public AdaptiveChunkSizeCompletionPolicy(String stepName, int initialChunkSize, long targetCommitMillis, int minChunkSize, int maxChunkSize,
+                                             MeterRegistry registry) {
+        this(stepName, initialChunkSize, targetCommitMillis, minChunkSize, maxChunkSize, registry, System::nanoTime);
+    }
+
+    //테스트에서 chunk 시간을 정할 수 있도록 시계를 받음
+    AdaptiveChunkSizeCompletionPolicy(String stepName, int initialChunkSize, long targetCommitMillis, int minChunkSize, int maxChunkSize,
+                                      MeterRegistry registry, LongSupplier nanoTime) {
+        if (minChunkSize < 1 || minChunkSize > maxChunkSize) {
+            throw new IllegalArgumentException("chunk 크기 범위가 잘못되었습니다 : [" + minChunkSize + ", " + maxChunkSize + "]");
+        }
+        this.stepName = stepName;
+        this.targetNanos = targetCommitMillis * 1_000_000L;
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.nanoTime = nanoTime;
+        this.chunkSize = new AtomicInteger(clamp(initialChunkSize));
+
+        //job을 다시 실행하면 step(@JobScope)마다 policy를 새로 만드므로, 이전 policy의 게이지를 지우고 새로 등록
+        Gauge previous = registry.find("batch.chunk.size").tag("step", stepName).gauge();
+        if (previous != null) {
+            registry.remove(previous);
+        }
+        Gauge.builder("batch.chunk.size", chunkSize, AtomicInteger::get)
+                .tag("step", stepName)
+                .strongReference(true)
+                .register(registry);
+        this.chosenChunkSizes = DistributionSummary.builder("batch.chunk.size.chosen")
+                .tag("step", stepName)
+                .register(registry);
+    }
+
+    public int getChunkSize() {
+        return chunkSize.get();
+    }
+
+    @Override
+    public RepeatContext start(RepeatContext parent) {
+        SizeContext context = new SizeContext(parent, chunkSize.get());
+        currentChunk.set(context);
+        return context;
+    }
+
+    @Override
+    public void update(RepeatContext context) {
+        ((SizeContext) context).count++;
+    }
+
+    @Override
+    public boolean isComplete(RepeatContext context) {
+        SizeContext sizeContext = (SizeContext) context;
+        return sizeContext.count >= sizeContext.size;
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        chunkTimes.set(new ChunkTimes(nanoTime.getAsLong()));
+    }
+
+    @Override
+    public void beforeRead() {
+        startPhase();
+    }
+
+    @Override
+    public void afterRead(Object item) {
+        ChunkTimes times = chunkTimes.get();
+        if (times != null) {
+            times.read += times.endPhase(nanoTime.getAsLong());
+        }
+    }
+
+    @Override
+    public void onReadError(Exception ex) {
+        afterRead(null);
+    }
+
+    @Override
+    public void beforeProcess(Object item) {
+        startPhase();
+    }
+
+    @Override
+    public void afterProcess(Object item, Object result) {
+        ChunkTimes times = chunkTimes.get();
+        if (times != null) {
+            times.process += times.endPhase(nanoTime.getAsLong());
+        }
+    }
+
+    @Override
+    public void onProcessError(Object item, Exception e) {
+        afterProcess(item, null);
+    }
+
+    @Override
+    public void beforeWrite(List<?> items) {
+        startPhase();
+    }
+
+    @Override
+    public void afterWrite(List<?> items) {
+        ChunkTimes times = chunkTimes.get();
+        if (times != null) {
+            times.write += times.endPhase(nanoTime.getAsLong());
+        }
+    }
+
+    @Override
+    public void onWriteError(Exception exception, List<?> items) {
+        afterWrite(items);
+    }
+
+    private void startPhase() {
+        ChunkTimes times = chunkTimes.get();
+        if (times != null) {
+            times.phaseStart = nanoTime.getAsLong();
+        }
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {  //커밋이 끝난 뒤에 호출됨
+        ChunkTimes times = chunkTimes.get();
+        SizeContext chunk = currentChunk.get();
+        clear();
+        if (times == null || chunk == null || chunk.count == 0) {
+            return;
+        }
+
+        long elapsed = Math.max(1, nanoTime.getAsLong() - times.start);
+        int current = chunkSize.get();
+        if (chunk.count < chunk.size && elapsed < targetNanos) {    //입력이 끝나서 덜 찬 마지막 chunk는 크기를 키우는 근거로 쓰지 않음
+            return;
+        }
+
+        long itemNanos = times.read + times.process + times.write;
+        if (itemNanos <= 0 || itemNanos > elapsed) {    //item 리스너로 등록되지 않아 단계별 시간이 없으면 전체를 아이템 수에 비례하는 시간으로 봄
+            itemNanos = elapsed;
+        }
+        double nanosPerItem = Math.max(1.0, (double) itemNanos / chunk.count);
+        double ideal = Math.max(0, targetNanos - (elapsed - itemNanos)) / nanosPerItem;
+        double smoothed = current + (ideal - current) * SMOOTHING;
+        int next = clamp((int) Math.round(Math.max(current / 2.0, Math.min(current * 2.0, smoothed))));
+
+        resize(current, next, times, elapsed);
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        clear();
+        int current = chunkSize.get();
+        resize(current, clamp(current / 2), null, -1);
+    }
+
+    private void resize(int current, int next, ChunkTimes times, long elapsedNanos) {
+        chosenChunkSizes.record(next);
+        if (next == current || !chunkSize.compareAndSet(current, next)) {
+            return;
+        }
+        if (times == null) {
+            log.info("[{}] chunk 롤백으로 chunk size {} -> {}", stepName, current, next);
+        } else {
+            log.info("[{}] chunk {}ms (read {}ms, process {}ms, write {}ms, commit {}ms / 목표 {}ms), chunk size {} -> {}", stepName,
+                    elapsedNanos / 1_000_000, times.read / 1_000_000, times.process / 1_000_000, times.write / 1_000_000,
+                    (elapsedNanos - times.read - times.process - times.write) / 1_000_000, targetNanos / 1_000_000, current, next);
+        }
+    }
+
+    private void clear() {
+        currentChunk.remove();
+        chunkTimes.remove();
+    }
+
+    private int clamp(int size) {
+        return Math.max(minChunkSize, Math.min(maxChunkSize, size));
+    }
+
+    //chunk 하나에서 단계별로 걸린 시간 (나노초)
+    private static class ChunkTimes {
+
+        private final long start;
+        private long phaseStart = -1;
+        private long read;
+        private long process;
+        private long write;
+
+        ChunkTimes(long start) {
+            this.start = start;
+        }
+
+        long endPhase(long now) {
+            if (phaseStart < 0) {
+                return 0;
+            }
+            long elapsed = now - phaseStart;
+            phaseStart = -1;
+            return elapsed;
+        }
+
+    }
+
+    private static class SizeContext extends RepeatContextSupport {
+
+        private final int size;
+        private int count;
+
+        SizeContext(RepeatContext parent, int size) {
+            super(parent);
+            this.size = size;
+        }
+
+    }
+
+}
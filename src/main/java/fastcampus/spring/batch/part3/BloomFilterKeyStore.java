@@ -0,0 +1,60 @@
+package fastcampus.spring.batch.part3;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 블룸 필터를 앞단에 두고, 블룸 필터가 "있을 수도 있다"고 답한 키만 디스크로 내려쓰는 정확한 키 집합에서 확인한다.
+ * 메모리에는 블룸 필터, 최대 maxKeysInMemory개의 키, run 파일의 희소 인덱스(내려쓴 키 64개당 1개)만 둔다.
+ * 희소 인덱스는 키 수에 비례해서 늘어나므로 메모리 사용량이 고정되지는 않지만, 전체 키를 메모리에 두는 것보다 훨씬 작다.
+ * 오탐으로 인해 아이템이 잘못 필터링되는 일은 없다.
+ */
+public class BloomFilterKeyStore implements KeyStore {
+
+    public static final double DEFAULT_FPP = 0.01;
+    public static final int DEFAULT_MAX_KEYS_IN_MEMORY = 100_000;
+    public static final int DEFAULT_MERGE_FACTOR = 8;
+
+    private final BloomFilter bloomFilter;
+    private final SortedRunKeySet exactKeys;
+    private final Path directory;
+
+    public BloomFilterKeyStore(long expectedKeys) throws IOException {
+        this(expectedKeys, DEFAULT_FPP, DEFAULT_MAX_KEYS_IN_MEMORY, Files.createTempDirectory("dedup-keys"));
+    }
+
+    public BloomFilterKeyStore(long expectedKeys, double fpp, int maxKeysInMemory, Path directory) {
+        this.bloomFilter = new BloomFilter(expectedKeys, fpp);
+        this.exactKeys = new SortedRunKeySet(directory, maxKeysInMemory, DEFAULT_MERGE_FACTOR);
+        this.directory = directory;
+    }
+
+    @Override
+    public synchronized boolean add(String key) {
+        if (bloomFilter.mightContain(key) && exactKeys.contains(key)) {  //블룸 필터가 false면 디스크 조회 없이 새로운 키
+            return false;
+        }
+
+        bloomFilter.put(key);
+        exactKeys.add(key);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean contains(String key) {
+        return bloomFilter.mightContain(key) && exactKeys.contains(key);
+    }
+
+    @Override
+    public synchronized long size() {
+        return exactKeys.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        exactKeys.close();
+        Files.deleteIfExists(directory);
+    }
+
+}
@@ -0,0 +1,103 @@
+package fastcampus.spring.batch.part3;
+
+import org.springframework.batch.item.file.LineMapper;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 파일의 [startByte, endByte) 구간만 줄 단위로 읽는 reader. ByteRangePartitioner가 나눈 파티션 하나를 담당한다.
+ * 읽은 개수는 파티션(worker step)별 ExecutionContext에 저장되어 파티션 단위로 재시작된다.
+ */
+public class ByteRangeItemReader<T> extends AbstractItemCountingItemStreamItemReader<T> {
+
+    private final Path file;
+    private final long startByte;
+    private final long endByte;
+    private final LineMapper<T> lineMapper;
+    private final Charset charset;
+
+    private BufferedReader reader;
+    private int lineNumber;
+
+    public ByteRangeItemReader(Path file, long startByte, long endByte, LineMapper<T> lineMapper, Charset charset) {
+        this.file = file;
+        this.startByte = startByte;
+        this.endByte = endByte;
+        this.lineMapper = lineMapper;
+        this.charset = charset;
+        setName(ByteRangeItemReader.class.getSimpleName());
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(startByte);
+        InputStream range = new RangeInputStream(Channels.newInputStream(channel), endByte - startByte);
+        reader = new BufferedReader(new InputStreamReader(range, charset), 1 << 16);
+        lineNumber = 0;
+    }
+
+    @Override
+    protected T doRead() throws Exception {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        return lineMapper.mapLine(line, ++lineNumber);
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+    }
+
+    //남은 바이트 수만큼만 읽히는 InputStream
+    private static class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+package fastcampus.spring.batch.part3;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.core.io.Resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 파일을 gridSize개의 바이트 구간으로 나누는 Partitioner. 구간 경계는 항상 줄의 시작(개행 다음)에 맞춘다.
+ * 경계 근처만 memory-mapped로 읽어서 개행을 찾으므로 파일 크기와 상관없이 빠르게 나눌 수 있다.
+ * 각 파티션의 ExecutionContext에는 file, startByte, endByte가 들어간다.
+ * 파일 시스템의 파일만 나눌 수 있다. (jar 안의 classpath 리소스는 사용할 수 없음)
+ */
+public class ByteRangePartitioner implements Partitioner {
+
+    public static final String FILE = "file";
+    public static final String START_BYTE = "startByte";
+    public static final String END_BYTE = "endByte";
+
+    private static final int SCAN_WINDOW = 64 * 1024;
+
+    private final Resource resource;
+    private final int linesToSkip;
+
+    public ByteRangePartitioner(Resource resource, int linesToSkip) {
+        if (!resource.isFile()) {
+            throw new IllegalArgumentException("파일 시스템의 파일만 파티션으로 나눌 수 있습니다. input_file 파라미터로 파일 경로를 지정하세요 : " + resource.getDescription());
+        }
+        this.resource = resource;
+        this.linesToSkip = linesToSkip;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        try {
+            File file = resource.getFile();
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long size = channel.size();
+
+                long dataStart = 0;
+                for (int i = 0; i < linesToSkip; i++) {     //헤더는 첫번째 파티션에서도 건너뜀
+                    dataStart = nextLineStart(channel, dataStart, size);
+                }
+
+                List<Long> boundaries = new ArrayList<>();
+                boundaries.add(dataStart);
+                for (int i = 1; i < gridSize; i++) {
+                    long nominal = dataStart + (size - dataStart) * i / gridSize;
+                    long boundary = nominal > 0 ? nextLineStart(channel, nominal - 1, size) : 0;
+                    if (boundary > boundaries.get(boundaries.size() - 1) && boundary < size) {  //작은 파일이면 같은 줄에 경계가 몰리니 빈 구간은 버림
+                        boundaries.add(boundary);
+                    }
+                }
+                boundaries.add(size);
+
+                Map<String, ExecutionContext> partitions = new HashMap<>();
+                for (int i = 0; i < boundaries.size() - 1; i++) {
+                    ExecutionContext executionContext = new ExecutionContext();
+                    executionContext.putString(FILE, file.getAbsolutePath());
+                    executionContext.putLong(START_BYTE, boundaries.get(i));
+                    executionContext.putLong(END_BYTE, boundaries.get(i + 1));
+                    partitions.put("partition" + i, executionContext);
+                }
+                return partitions;
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("파티션을 나눌 수 없습니다 : " + resource, e);
+        }
+    }
+
+    //from 위치부터 처음 나오는 개행 다음 위치. 개행이 없으면 파일 끝
+    private long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        long position = from;
+        while (position < size) {
+            long length = Math.min(SCAN_WINDOW, size - position);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            for (int i = 0; i < length; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += length;
+        }
+        return size;
+    }
+
+}
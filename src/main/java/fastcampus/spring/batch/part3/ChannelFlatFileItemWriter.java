@@ -0,0 +1,191 @@
+package fastcampus.spring.batch.part3;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.file.FlatFileFooterCallback;
+import org.springframework.batch.item.file.FlatFileHeaderCallback;
+import org.springframework.batch.item.file.transform.LineAggregator;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * FlatFileItemWriter 대신 쓰는 FileChannel 기반 writer.
+ * 줄을 큰 direct buffer에 바로 인코딩해 두었다가 chunk 커밋 직전(update)에 한 번만 쓰고 force 한다. (group commit)
+ * gzip=true면 flush할 때마다 완전한 gzip member 하나로 압축해서 이어 붙인다. 여러 member가 이어진 파일도 gzip/GZIPInputStream으로 그대로 읽을 수 있고, member 경계에서 잘라도 파일이 깨지지 않는다.
+ * header/footer callback은 FlatFileItemWriter와 같은 방식으로 동작한다.
+ */
+public class ChannelFlatFileItemWriter<T> extends AbstractFileChannelItemWriter<T> {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final LineAggregator<T> lineAggregator;
+
+    private Charset charset = StandardCharsets.UTF_8;
+    private String lineSeparator = System.lineSeparator();
+    private boolean gzip = false;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private FlatFileHeaderCallback headerCallback;
+    private FlatFileFooterCallback footerCallback;
+
+    private CharsetEncoder encoder;
+    private Deflater deflater;
+    private ByteBuffer compressed;
+    private final CRC32 crc = new CRC32();
+
+    public ChannelFlatFileItemWriter(Path file, LineAggregator<T> lineAggregator) {
+        super(file);
+        this.lineAggregator = lineAggregator;
+        setName(ChannelFlatFileItemWriter.class.getSimpleName());
+    }
+
+    public void setCharset(Charset charset) {
+        this.charset = charset;
+    }
+
+    public void setLineSeparator(String lineSeparator) {
+        this.lineSeparator = lineSeparator;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public void setHeaderCallback(FlatFileHeaderCallback headerCallback) {
+        this.headerCallback = headerCallback;
+    }
+
+    public void setFooterCallback(FlatFileFooterCallback footerCallback) {
+        this.footerCallback = footerCallback;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        encoder = charset.newEncoder();
+        if (gzip) {
+            deflater = new Deflater(compressionLevel, true);
+            compressed = ByteBuffer.allocateDirect(64 * 1024);
+        }
+        super.open(executionContext);
+    }
+
+    @Override
+    protected void openFile(boolean empty) throws IOException {
+        if (empty && headerCallback != null) {  //append여도 빈 파일이면 header를 씀
+            headerCallback.writeHeader(new BufferWriter());
+            encode(lineSeparator);
+        }
+    }
+
+    @Override
+    protected void writeItem(T item) throws IOException {
+        encode(lineAggregator.aggregate(item));
+        encode(lineSeparator);
+    }
+
+    @Override
+    protected void closeFile() throws IOException {
+        if (footerCallback != null) {
+            footerCallback.writeFooter(new BufferWriter());
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        try {
+            super.close();
+        } finally {
+            compressed = null;
+            if (deflater != null) {
+                deflater.end();
+                deflater = null;
+            }
+        }
+    }
+
+    @Override
+    protected void writeBuffer(ByteBuffer bytes) throws IOException {
+        if (gzip) {
+            writeGzipMember(bytes);
+        } else {
+            writeFully(bytes);
+        }
+    }
+
+    private void encode(CharSequence chars) throws IOException {
+        CharBuffer input = CharBuffer.wrap(chars);
+        while (true) {
+            CoderResult result = encoder.encode(input, buffer(), true);
+            if (result.isOverflow()) {  //버퍼가 차면 파일로 내보내고 계속 인코딩 (커밋 전이므로 롤백되면 잘라냄)
+                flush();
+                continue;
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            break;
+        }
+        encoder.reset();
+    }
+
+    //header + raw deflate + crc32/길이 trailer로 완전한 gzip member 하나를 씀
+    private void writeGzipMember(ByteBuffer input) throws IOException {
+        int size = input.remaining();
+        crc.reset();
+        crc.update(input.duplicate());
+
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+
+        writeFully(ByteBuffer.wrap(GZIP_HEADER));
+        while (!deflater.finished()) {
+            deflater.deflate(compressed);
+            compressed.flip();
+            writeFully(compressed);
+            compressed.clear();
+        }
+
+        ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        trailer.putInt((int) crc.getValue()).putInt(size).flip();
+        writeFully(trailer);
+    }
+
+    //header/footer callback이 쓰는 내용을 버퍼로 바로 인코딩
+    private class BufferWriter extends Writer {
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            encode(CharBuffer.wrap(chars, offset, length));
+        }
+
+        @Override
+        public void write(String str) throws IOException {
+            encode(str);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
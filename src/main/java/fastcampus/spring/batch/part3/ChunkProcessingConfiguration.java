@@ -1,23 +1,23 @@
 package fastcampus.spring.batch.part3;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.util.StringUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
 import org.springframework.batch.core.Job;
-import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.Step;
-import org.springframework.batch.core.StepExecution;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.JobScope;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
-import org.springframework.batch.core.step.tasklet.Tasklet;
 import org.springframework.batch.item.ItemProcessor;
 import org.springframework.batch.item.ItemReader;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.support.ListItemReader;
-import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -32,21 +32,40 @@ public class ChunkProcessingConfiguration {
 
     private final JobBuilderFactory jobBuilderFactory;
     private final StepBuilderFactory stepBuilderFactory;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
 
     @Bean
     public Job chunkProcessingJob(){
         return jobBuilderFactory.get("chunkProcessingJob")
                 .incrementer(new RunIdIncrementer())
                 .start(this.taskBaseStep())
-                .next(this.chunkBaseStep(null))
+                .next(this.chunkBaseStep(null, null, null))
                 .build();
     }
 
     @Bean
     @JobScope   //Job 실행/종료에 따라서 빈이 생성 소멸됨.
-    public Step chunkBaseStep(@Value("#{jobParameters[chunkSize]}") String chunkSize){  //spel을 이용해서 파라미터 설정
+    public Step chunkBaseStep(@Value("#{jobParameters[chunkSize]}") String chunkSize,  //spel을 이용해서 파라미터 설정
+                              @Value("#{jobParameters[chunk_policy]}") String chunkPolicy,
+                              @Value("#{jobParameters[target_commit_ms]}") String targetCommitMs){
+        int size = StringUtils.isNotEmpty(chunkSize) ? Integer.parseInt(chunkSize) : 10;
+
+        if ("adaptive".equals(chunkPolicy)) {   //chunkSize는 시작 크기로만 쓰고, chunk 처리 시간이 target_commit_ms에 맞도록 크기를 조절
+            AdaptiveChunkSizeCompletionPolicy completionPolicy = new AdaptiveChunkSizeCompletionPolicy("chunkBaseStep", size,
+                    StringUtils.isNotEmpty(targetCommitMs) ? Long.parseLong(targetCommitMs) : 1000, 1, 10_000,
+                    meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));    //metrics 설정이 꺼져 있으면 registry 빈이 없음
+
+            return stepBuilderFactory.get("chunkBaseStep")
+                    .<String, String>chunk(completionPolicy)
+                    .reader(itemReader())
+                    .processor(itemProcessor())
+                    .writer(itemWriter())
+                    .listener((ChunkListener) completionPolicy)     //chunk 시간을 재기 위해 ChunkListener로도 등록 (item 리스너로도 같이 등록됨)
+                    .build();
+        }
+
         return stepBuilderFactory.get("taskBaseStep")
-                .<String, String>chunk(StringUtils.isNotEmpty(chunkSize) ? Integer.parseInt(chunkSize) : 10)      //첫번째 제네릭 타입 : input 타입, 두번째 제네릭 타입 : itemProcessor output 타입, 10개씩 처리하겠다.
+                .<String, String>chunk(size)      //첫번째 제네릭 타입 : input 타입, 두번째 제네릭 타입 : itemProcessor output 타입, 10개씩 처리하겠다.
                 .reader(itemReader())
                 .processor(itemProcessor())
                 .writer(itemWriter())   //아웃풋 타입의 리스트를 받아서 처리
@@ -76,32 +95,12 @@ public class ChunkProcessingConfiguration {
 
     @Bean
     @StepScope
-    public Tasklet tasklet(@Value("#{jobParameters[chunkSize]}") String value) {
-
-        List<String> items = getItems();
-
-        return (contribution, chunkContext) -> {
-
-            StepExecution stepExecution = contribution.getStepExecution();
-            //JobParameters jobParameters = stepExecution.getJobParameters();
-            //String value = jobParameters.getString("chunkSize", "10");
-            int chunkSize = StringUtils.isNotEmpty(value) ? Integer.parseInt(value) : 10;
-
-            int fromIndex = stepExecution.getReadCount();
-            int toIndex = fromIndex + chunkSize;
-
-            if(fromIndex >= items.size()){
-                return RepeatStatus.FINISHED;
-            }
-
-            List<String> subList = items.subList(fromIndex, toIndex);
-
-            log.info("task item size : {}", subList.size());
-
-            stepExecution.setReadCount(toIndex);
+    public SlicedTasklet<String> tasklet(@Value("#{jobParameters[chunkSize]}") String value) {    //step scope 프록시가 StepExecutionListener로도 등록되도록 SlicedTasklet 타입으로 반환
+        int chunkSize = StringUtils.isNotEmpty(value) ? Integer.parseInt(value) : 10;
 
-            return RepeatStatus.CONTINUABLE;        //이 tasklet을 반복해서 실행해라
-        };
+        //chunkSize개씩 나눈 slice를 ForkJoinPool에서 병렬로 처리. 처리한 slice는 ExecutionContext에 저장되어 재시작할 때 건너뜀
+        return new SlicedTasklet<>(getItems(), chunkSize,
+                (slice, items) -> log.info("task slice {} item size : {}", slice, items.size()));
     }
 
     private List<String> getItems() {
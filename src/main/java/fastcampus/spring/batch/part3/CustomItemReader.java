@@ -1,28 +1,59 @@
 package fastcampus.spring.batch.part3;
 
 
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemReader;
-import org.springframework.batch.item.NonTransientResourceException;
-import org.springframework.batch.item.ParseException;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamSupport;
 
-import java.rmi.UnexpectedException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class CustomItemReader<T> implements ItemReader<T> {
+/**
+ * 리스트를 커서(index)로 읽는 reader. 아이템 하나당 O(1)이고, 커서가 AtomicInteger라서 multi-thread step에서 인스턴스 하나를 같이 써도 된다.
+ * 읽은 위치는 ExecutionContext에 저장되어 재시작하면 이어서 읽는다.
+ * (multi-thread step에서는 커밋된 chunk와 읽은 위치가 어긋날 수 있으니 setSaveState(false)로 사용)
+ */
+public class CustomItemReader<T> extends ItemStreamSupport implements ItemReader<T> {
+
+    private static final String READ_COUNT = "read.count";
 
     private final List<T> items;
+    private final AtomicInteger cursor = new AtomicInteger();
+    private boolean saveState = true;
 
     public CustomItemReader(List<T> items){
-        this.items = new ArrayList<>(items);
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        setName(CustomItemReader.class.getSimpleName());
+    }
+
+    public void setSaveState(boolean saveState) {
+        this.saveState = saveState;
     }
 
     @Override
-    public T read() throws Exception, UnexpectedException, ParseException, NonTransientResourceException {
-        if(!items.isEmpty()){
-            return items.remove(0); //0번째 인덱스 반환하면서 제거
+    public T read() {
+        int index = cursor.getAndUpdate(current -> current < items.size() ? current + 1 : current);  //끝까지 읽었으면 커서를 더 이상 올리지 않음
+        if (index < items.size()) {
+            return items.get(index);
         }
         return null;
     }
 
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        if (saveState && executionContext.containsKey(getExecutionContextKey(READ_COUNT))) {
+            cursor.set(Math.min(executionContext.getInt(getExecutionContextKey(READ_COUNT)), items.size()));
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (saveState) {
+            executionContext.putInt(getExecutionContextKey(READ_COUNT), cursor.get());
+        }
+    }
+
 }
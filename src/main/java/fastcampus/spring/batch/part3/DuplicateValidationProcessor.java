@@ -1,20 +1,109 @@
 package fastcampus.spring.batch.part3;
 
+import fastcampus.spring.batch.jfr.DedupDecisionEvent;
+import fastcampus.spring.batch.jfr.JfrSampler;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.item.ExecutionContext;
 import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamSupport;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
-public class DuplicateValidationProcessor<T> implements ItemProcessor<T, T> {
+/**
+ * 키가 중복된 아이템을 필터링하는 processor.
+ * chunk에서 처리한 키는 chunk가 커밋된 뒤(afterChunk)에 키 저장소에 넣고, 롤백되면(afterChunkError) 버린다. 롤백 후 다시 처리하는 아이템이 중복으로 걸러지지 않도록 하기 위함
+ * 커밋 전인 키는 다른 chunk(스레드)에서도 중복으로 보고 거른다. ChunkListener로 등록되지 않으면 처리하는 즉시 키 저장소에 넣는다.
+ * 체크포인트 디렉토리를 지정하면 chunk 커밋마다(update) 그 chunk의 키만 체크포인트 파일에 이어 쓰고, 파일 경로와 커밋된 길이를 step ExecutionContext에 저장한다.
+ * 재시작하면 입력 파일을 다시 읽지 않고 체크포인트 파일에서 키만 복원한다. 지정하지 않으면 체크포인트를 남기지 않으므로 재시작하면 이전 실행의 키는 복원되지 않는다.
+ */
+public class DuplicateValidationProcessor<T> extends ItemStreamSupport implements ItemProcessor<T, T>, StepExecutionListener, ChunkListener {
 
-    private final Map<String, Object> keyPool = new ConcurrentHashMap<>();
+    private static final String CHECKPOINT_FILE = "checkpoint.file";
+    private static final String CHECKPOINT_LENGTH = "checkpoint.length";
+
+    private final KeyStore keyPool;
     private final Function<T, String> keyExtractor;
     private final boolean allowDuplicate;
 
+    private final List<String> pendingKeys = new ArrayList<>();     //chunk 없이 처리해서 마지막 체크포인트 이후 추가된 키
+    private final Map<String, ChunkKeys> stagedKeys;   //커밋 전 chunk에서 처리한 키 -> 그 chunk
+    private final ThreadLocal<ChunkKeys> currentChunk = new ThreadLocal<>();
+    private volatile ChunkKeys lastChunk;      //PipelinedItemProcessor처럼 chunk 스레드가 아닌 worker에서 process할 때 사용 (chunk가 하나씩만 진행됨)
+    private Path checkpointDirectory;
+    private Path checkpointFile;
+    private FileChannel checkpointChannel;
+    private boolean saveState = true;
+    private boolean sharedKeyPool;
+
     public DuplicateValidationProcessor(Function<T, String> keyExtractor, boolean allowDuplicate) {
+        this(keyExtractor, allowDuplicate, new InMemoryKeyStore());
+    }
+
+    public DuplicateValidationProcessor(Function<T, String> keyExtractor, boolean allowDuplicate, KeyStore keyPool) {
+        this(keyExtractor, allowDuplicate, keyPool, new ConcurrentHashMap<>());
+    }
+
+    private DuplicateValidationProcessor(Function<T, String> keyExtractor, boolean allowDuplicate, KeyStore keyPool,
+                                         Map<String, ChunkKeys> stagedKeys) {
         this.keyExtractor = keyExtractor;
         this.allowDuplicate = allowDuplicate;
+        this.keyPool = keyPool;
+        this.stagedKeys = stagedKeys;
+        setName(DuplicateValidationProcessor.class.getSimpleName());
+    }
+
+    /**
+     * 키 저장소와 커밋 전 키를 이 processor와 같이 쓰는 processor를 만든다. (파티션마다 하나씩, setSharedKeyPool(true))
+     * 다른 파티션에서 아직 커밋하지 않은 키도 중복으로 거르기 위함
+     */
+    DuplicateValidationProcessor<T> newPartition() {
+        DuplicateValidationProcessor<T> partition = new DuplicateValidationProcessor<>(keyExtractor, allowDuplicate, keyPool, stagedKeys);
+        partition.setSharedKeyPool(true);
+        partition.setCheckpointDirectory(checkpointDirectory);
+        partition.setSaveState(saveState);
+        return partition;
+    }
+
+    /**
+     * 체크포인트 파일을 만들 디렉토리. 지정하지 않으면 체크포인트를 남기지 않는다.
+     */
+    public void setCheckpointDirectory(Path checkpointDirectory) {
+        this.checkpointDirectory = checkpointDirectory;
+    }
+
+    public void setSaveState(boolean saveState) {
+        this.saveState = saveState;
+    }
+
+    /**
+     * 키 저장소를 다른 processor(파티션)와 같이 쓰면 true. (PartitionedDuplicateValidationProcessor 참고)
+     * close할 때 키 저장소를 닫지 않고, step이 완료되어도 체크포인트를 지우지 않는다. 다른 파티션이 실패해서 재시작하면 이 파티션이 처리한 키도 복원해야 하기 때문
+     */
+    public void setSharedKeyPool(boolean sharedKeyPool) {
+        this.sharedKeyPool = sharedKeyPool;
     }
 
     @Override
@@ -26,12 +115,266 @@ public class DuplicateValidationProcessor<T> implements ItemProcessor<T, T> {
 
         String key = keyExtractor.apply(item);  //해당 아이템으로 키를 추출
 
-        if(keyPool.containsKey(key)){
+        ChunkKeys chunk = chunk();
+        if(!addKey(key, chunk)){  //이미 처리한 키면 필터링
             return null;
         }
 
-        keyPool.put(key, key);
+        if (chunk == null && saveState) {
+            synchronized (pendingKeys) {
+                pendingKeys.add(key);
+            }
+        }
         return item;
     }
 
+    private ChunkKeys chunk() {
+        ChunkKeys chunk = currentChunk.get();
+        return chunk != null ? chunk : lastChunk;
+    }
+
+    //샘플링한 item만 키 저장소 확인 시간과 필터링 여부를 JFR 이벤트로 남김
+    private boolean addKey(String key, ChunkKeys chunk) {
+        if (!JfrSampler.sample()) {
+            return chunk == null ? keyPool.add(key) : stage(key, chunk);
+        }
+        DedupDecisionEvent event = new DedupDecisionEvent();
+        event.begin();
+        boolean added = chunk == null ? keyPool.add(key) : stage(key, chunk);
+        event.end();
+        if (event.shouldCommit()) {
+            event.keyStore = keyPool.getClass().getSimpleName();
+            event.filtered = !added;
+            event.sampleInterval = JfrSampler.getInterval();
+            event.commit();
+        }
+        return added;
+    }
+
+    //먼저 stagedKeys를 차지한 뒤 키 저장소를 확인. 다른 chunk가 커밋하면서 키 저장소에 넣은 뒤에 stagedKeys에서 빼므로 둘 다 놓치는 일은 없음
+    private boolean stage(String key, ChunkKeys chunk) {
+        if (stagedKeys.putIfAbsent(key, chunk) != null) {
+            return false;
+        }
+        if (keyPool.contains(key)) {
+            stagedKeys.remove(key, chunk);
+            return false;
+        }
+        synchronized (chunk.keys) {
+            chunk.keys.add(key);
+        }
+        return true;
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        if (allowDuplicate) {
+            return;
+        }
+        ChunkKeys chunk = new ChunkKeys();
+        currentChunk.set(chunk);
+        lastChunk = chunk;
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {     //커밋된 chunk의 키만 키 저장소에 반영
+        ChunkKeys chunk = endChunk();
+        if (chunk == null) {
+            return;
+        }
+        synchronized (chunk.keys) {
+            for (String key : chunk.keys) {
+                keyPool.add(key);
+                stagedKeys.remove(key, chunk);
+            }
+        }
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {    //롤백된 chunk의 키는 버리고 체크포인트에 쓴 내용도 되돌림
+        ChunkKeys chunk = endChunk();
+        if (chunk == null) {
+            return;
+        }
+        synchronized (chunk.keys) {
+            for (String key : chunk.keys) {
+                stagedKeys.remove(key, chunk);
+            }
+        }
+        if (chunk.checkpointStart >= 0 && checkpointChannel != null) {
+            try {
+                checkpointChannel.truncate(chunk.checkpointStart);
+                checkpointChannel.position(chunk.checkpointStart);
+            } catch (IOException e) {
+                throw new ItemStreamException("dedup 체크포인트 되돌리기 실패 : " + checkpointFile, e);
+            }
+        }
+    }
+
+    private ChunkKeys endChunk() {
+        ChunkKeys chunk = currentChunk.get();
+        currentChunk.remove();
+        if (lastChunk == chunk) {
+            lastChunk = null;
+        }
+        return chunk;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        if (allowDuplicate || !saveState || checkpointDirectory == null) {
+            return;
+        }
+
+        try {
+            if (executionContext.containsKey(getExecutionContextKey(CHECKPOINT_FILE))) {
+                checkpointFile = Paths.get(executionContext.getString(getExecutionContextKey(CHECKPOINT_FILE)));
+                restore(executionContext.getLong(getExecutionContextKey(CHECKPOINT_LENGTH)));
+            } else {
+                checkpointFile = Files.createTempFile(Files.createDirectories(checkpointDirectory), "dedup-", ".keys");
+                checkpointChannel = FileChannel.open(checkpointFile, StandardOpenOption.WRITE);
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("dedup 체크포인트 파일을 열 수 없습니다 : " + checkpointFile, e);
+        }
+    }
+
+    //커밋된 길이 이후는 롤백된 chunk에서 쓴 내용이므로 잘라내고, 나머지 키를 keyPool에 복원
+    private void restore(long committedLength) throws IOException {
+        checkpointChannel = FileChannel.open(checkpointFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        checkpointChannel.truncate(committedLength);
+
+        checkpointChannel.position(0);
+        readKeys(checkpointChannel, committedLength, keyPool);
+        checkpointChannel.position(committedLength);
+    }
+
+    private static void readKeys(FileChannel channel, long committedLength, KeyStore keyPool) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        long read = 0;
+        while (read < committedLength) {
+            byte[] key = new byte[in.readInt()];
+            in.readFully(key);
+            keyPool.add(new String(key, StandardCharsets.UTF_8));
+            read += Integer.BYTES + key.length;
+        }
+    }
+
+    /**
+     * 다른 step(파티션)의 ExecutionContext에 저장된 체크포인트에서 커밋된 키만 읽어서 keyPool에 넣는다. 체크포인트 파일은 바꾸지 않는다.
+     * @param name 체크포인트를 저장한 processor의 이름 (setName, 기본은 클래스 이름)
+     */
+    static void restoreCheckpoint(ExecutionContext executionContext, String name, KeyStore keyPool) {
+        String fileKey = name + "." + CHECKPOINT_FILE;
+        if (!executionContext.containsKey(fileKey)) {
+            return;
+        }
+        Path file = Paths.get(executionContext.getString(fileKey));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            readKeys(channel, executionContext.getLong(name + "." + CHECKPOINT_LENGTH), keyPool);
+        } catch (IOException e) {
+            throw new ItemStreamException("dedup 체크포인트를 읽을 수 없습니다 : " + file, e);
+        }
+    }
+
+    static void deleteCheckpoint(ExecutionContext executionContext, String name) {
+        String fileKey = name + "." + CHECKPOINT_FILE;
+        if (!executionContext.containsKey(fileKey)) {
+            return;
+        }
+        Path file = Paths.get(executionContext.getString(fileKey));
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new ItemStreamException("dedup 체크포인트 삭제 실패 : " + file, e);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (checkpointChannel == null) {
+            return;
+        }
+
+        List<String> keys;
+        synchronized (pendingKeys) {
+            keys = new ArrayList<>(pendingKeys);
+            pendingKeys.clear();
+        }
+        ChunkKeys chunk = chunk();
+        if (chunk != null && chunk.checkpointStart < 0) {     //update는 chunk 커밋 직전에 호출됨. 롤백되면 afterChunkError에서 여기부터 잘라냄
+            synchronized (chunk.keys) {
+                keys.addAll(chunk.keys);
+            }
+        }
+
+        try {
+            if (chunk != null && chunk.checkpointStart < 0) {
+                chunk.checkpointStart = checkpointChannel.position();
+            }
+            if (!keys.isEmpty()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(keys.size() * 16);
+                DataOutputStream out = new DataOutputStream(bytes);
+                for (String key : keys) {
+                    byte[] encoded = key.getBytes(StandardCharsets.UTF_8);     //길이(int) + UTF-8. writeUTF는 64KB가 넘는 키를 쓰지 못함
+                    out.writeInt(encoded.length);
+                    out.write(encoded);
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+                while (buffer.hasRemaining()) {
+                    checkpointChannel.write(buffer);
+                }
+                checkpointChannel.force(false);     //ExecutionContext가 커밋되기 전에 디스크에 반영
+            }
+
+            executionContext.putString(getExecutionContextKey(CHECKPOINT_FILE), checkpointFile.toAbsolutePath().toString());
+            executionContext.putLong(getExecutionContextKey(CHECKPOINT_LENGTH), checkpointChannel.position());
+        } catch (IOException e) {
+            throw new ItemStreamException("dedup 체크포인트 저장 실패 : " + checkpointFile, e);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        try {
+            if (checkpointChannel != null) {
+                checkpointChannel.close();
+                checkpointChannel = null;
+            }
+            if (!sharedKeyPool) {
+                keyPool.close();    //step이 끝나면 디스크로 내려쓴 키 파일 정리
+            }
+        } catch (IOException e) {
+            throw new ItemStreamException("keyPool close 실패", e);
+        }
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (stepExecution.getStatus() == BatchStatus.COMPLETED && checkpointFile != null && !sharedKeyPool) {     //재시작할 일이 없으면 체크포인트 삭제
+            try {
+                if (checkpointChannel != null) {
+                    checkpointChannel.close();
+                    checkpointChannel = null;
+                }
+                Files.deleteIfExists(checkpointFile);
+            } catch (IOException e) {
+                throw new ItemStreamException("dedup 체크포인트 삭제 실패 : " + checkpointFile, e);
+            }
+        }
+        return null;
+    }
+
+    //chunk 하나에서 처리했지만 아직 커밋되지 않은 키
+    private static class ChunkKeys {
+
+        private final List<String> keys = new ArrayList<>();
+        private long checkpointStart = -1;     //이 chunk의 키를 쓰기 시작한 체크포인트 위치
+
+    }
+
 }
@@ -0,0 +1,60 @@
+package fastcampus.spring.batch.part3;
+
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 테이블의 min(id) ~ max(id)를 gridSize개의 연속된 id 구간으로 나누는 Partitioner.
+ * 각 파티션의 ExecutionContext에는 minId, maxId(둘 다 포함)가 들어간다. id 사이에 빈 곳이 많으면 파티션별 건수는 고르지 않을 수 있다.
+ */
+public class IdRangePartitioner implements Partitioner {
+
+    public static final String MIN_ID = "minId";
+    public static final String MAX_ID = "maxId";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String table;
+    private final String column;
+
+    public IdRangePartitioner(DataSource dataSource, String table, String column) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.table = table;
+        this.column = column;
+    }
+
+    @Override
+    public Map<String, ExecutionContext> partition(int gridSize) {
+        Map<String, Object> range = jdbcTemplate.queryForMap("select min(" + column + ") as min_id, max(" + column + ") as max_id from " + table);
+        Number min = (Number) range.get("min_id");
+        Number max = (Number) range.get("max_id");
+
+        Map<String, ExecutionContext> partitions = new HashMap<>();
+        if (min == null) {  //빈 테이블이면 아무것도 읽지 않는 파티션 하나
+            partitions.put("partition0", context(1, 0));
+            return partitions;
+        }
+
+        long minId = min.longValue();
+        long maxId = max.longValue();
+        long size = Math.max(1, (maxId - minId + 1 + gridSize - 1) / gridSize);    //올림해서 마지막 구간이 작아지도록 함
+
+        int i = 0;
+        for (long start = minId; start <= maxId; start += size) {
+            partitions.put("partition" + i++, context(start, Math.min(start + size - 1, maxId)));
+        }
+        return partitions;
+    }
+
+    private static ExecutionContext context(long minId, long maxId) {
+        ExecutionContext executionContext = new ExecutionContext();
+        executionContext.putLong(MIN_ID, minId);
+        executionContext.putLong(MAX_ID, maxId);
+        return executionContext;
+    }
+
+}
@@ -0,0 +1,30 @@
+package fastcampus.spring.batch.part3;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class InMemoryKeyStore implements KeyStore {
+
+    private final Map<String, Object> keyPool = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean add(String key) {
+        return keyPool.putIfAbsent(key, key) == null;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return keyPool.containsKey(key);
+    }
+
+    @Override
+    public long size() {
+        return keyPool.size();
+    }
+
+    @Override
+    public void close() {
+        keyPool.clear();
+    }
+
+}
@@ -1,28 +1,35 @@
 package fastcampus.spring.batch.part3;
 
+import fastcampus.spring.batch.job.DagJobBuilder;
+import io.micrometer.core.instrument.util.StringUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.JobScope;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.JdbcCursorItemReader;
 import org.springframework.batch.item.database.JpaCursorItemReader;
 import org.springframework.batch.item.database.builder.JdbcCursorItemReaderBuilder;
 import org.springframework.batch.item.database.builder.JpaCursorItemReaderBuilder;
-import org.springframework.batch.item.file.FlatFileItemReader;
-import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
-import org.springframework.batch.item.file.mapping.DefaultLineMapper;
-import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.item.support.CompositeItemWriter;
+import org.springframework.batch.item.support.builder.CompositeItemWriterBuilder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -36,15 +43,26 @@ public class ItemReaderConfiguration {
     private final StepBuilderFactory stepBuilderFactory;
     private final DataSource dataSource;
     private final EntityManagerFactory entityManagerFactory;
+    private final TaskExecutor batchTaskExecutor;
 
+    /**
+     * stagedFileStep만 csvFileStep이 만든 스테이징 파일을 읽고, 나머지 step은 서로 관계가 없으므로 동시에 실행한다.
+     * 끝나면 전체 실행 시간과 critical path를 로그로 남긴다. (DagJob 참고)
+     */
     @Bean
     public Job itemReaderJob() throws Exception {
-        return this.jobBuilderFactory.get("itemReaderJob")
-                .incrementer(new RunIdIncrementer())
-                .start(this.customItemReaderStep())
-                .next(this.csvFileStep())
-                .next(this.jdbcStep())
-                .next(this.jpaStep())
+        Step csvFileStep = this.csvFileStep(null);
+
+        return new DagJobBuilder(this.jobBuilderFactory.get("itemReaderJob")
+                .incrementer(new RunIdIncrementer()))
+                .step(this.customItemReaderStep())
+                .step(csvFileStep)
+                .step(this.stagedFileStep(null), csvFileStep)
+                .step(this.jdbcStep())
+                .step(this.jpaStep())
+                .step(this.keysetPartitionStep(null))
+                .taskExecutor(new SimpleAsyncTaskExecutor("itemReaderJob-"))    //keysetPartitionStep의 worker가 batchTaskExecutor를 쓰므로 따로 둠
+                .maxConcurrentSteps(4)
                 .build();
     }
 
@@ -57,37 +75,46 @@ public class ItemReaderConfiguration {
                 .build();
     }
 
+    /**
+     * csv를 읽어서 로그로 남기면서 스테이징 파일(바이너리)에도 저장한다. 다음 step(stagedFileStep)은 csv를 다시 파싱하지 않고 스테이징 파일을 읽는다.
+     */
     @Bean
-    public Step csvFileStep() throws Exception{
+    @JobScope
+    public Step csvFileStep(@Value("#{jobExecution.jobInstance.id}") Long jobInstanceId) throws Exception{
+        CompositeItemWriter<Person> itemWriter = new CompositeItemWriterBuilder<Person>()
+                .delegates(itemWriter(), new PersonBinaryItemWriter(stagingFile(jobInstanceId)))
+                .build();
+        itemWriter.afterPropertiesSet();
+
         return stepBuilderFactory.get("csvFileStep")
                 .<Person, Person>chunk(10)
                 .reader(this.csvFileItemReader())
-                .writer(itemWriter())
+                .writer(itemWriter)
                 .build();
     }
 
-    private FlatFileItemReader<Person> csvFileItemReader() throws Exception{
-        DefaultLineMapper<Person> lineMapper = new DefaultLineMapper<>();       //csv를 1줄씩읽을 수 있는 객체 생성
-        DelimitedLineTokenizer tokenizer = new DelimitedLineTokenizer();        //csv 파일을 person 객체에 매핑하기 위해서 토크나이저 객체 생성
-        tokenizer.setNames("id", "name", "age", "address");                     //person의 필드명 세팅
-        lineMapper.setLineTokenizer(tokenizer);
-
-        lineMapper.setFieldSetMapper(fieldSet -> {      //csv파일에서 읽은 값을 Person 객체로 매핑
-            int id = fieldSet.readInt("id");
-            String name = fieldSet.readString("name");
-            String age = fieldSet.readString("age");
-            String address = fieldSet.readString("address");
-            return new Person(id, name, age, address);
-        });
-
-        FlatFileItemReader<Person> itemReader = new FlatFileItemReaderBuilder<Person>()
-                .name("csvFileItemReader")
-                .encoding("UTF-8")
-                .resource(new ClassPathResource("test.csv"))
-                .linesToSkip(1)    //첫번째 ROW는 필드명이니까 2번째부터 읽으라는 설정
-                .lineMapper(lineMapper)
+    @Bean
+    @JobScope
+    public Step stagedFileStep(@Value("#{jobExecution.jobInstance.id}") Long jobInstanceId) {
+        PersonBinaryItemReader itemReader = new PersonBinaryItemReader(stagingFile(jobInstanceId));   //memory-mapped 파일에서 바로 Person을 만듦
+        itemReader.setDeleteOnComplete(true);   //다 읽었으면 reader가 파일을 닫은 뒤 정리. 실패하면 재시작할 때 다시 읽을 수 있게 남겨둠
+
+        return stepBuilderFactory.get("stagedFileStep")
+                .<Person, Person>chunk(10)
+                .reader(itemReader)
+                .writer(itemWriter())
                 .build();
-        itemReader.afterPropertiesSet();    //itemReader에서 필요한 필수설정값이 정상적으로 설정 됐는지 검증하는 메소드
+    }
+
+    //재시작해도 같은 파일을 쓰도록 job instance 단위로 만듦
+    private Path stagingFile(Long jobInstanceId) {
+        return Paths.get("output/staging", "person-" + jobInstanceId + ".bin");
+    }
+
+    private PersonCsvItemReader csvFileItemReader() {
+        PersonCsvItemReader itemReader = new PersonCsvItemReader(new ClassPathResource("test.csv"), true);   //id,name,age,address 순서의 csv를 바이트 단위로 바로 Person으로 매핑
+        itemReader.setName("csvFileItemReader");
+        itemReader.setLinesToSkip(1);    //첫번째 ROW는 필드명이니까 2번째부터 읽으라는 설정
 
         return itemReader;
     }
@@ -132,10 +159,49 @@ public class ItemReaderConfiguration {
         return itemReader;
     }
 
+    /**
+     * person 테이블을 id 구간(grid_size개, 기본 4)으로 나눠서 구간마다 keyset reader로 병렬로 읽는다.
+     * 재시작하면 파티션마다 마지막으로 읽은 id 다음부터 읽는다.
+     */
+    @Bean
+    @JobScope
+    public Step keysetPartitionStep(@Value("#{jobParameters[grid_size]}") String gridSize) throws Exception {
+        int grid = StringUtils.isNotEmpty(gridSize) ? Integer.parseInt(gridSize) : 4;
+
+        return stepBuilderFactory.get("keysetPartitionStep")
+                .partitioner("keysetWorkerStep", new IdRangePartitioner(dataSource, "person", "id"))
+                .step(keysetWorkerStep())
+                .gridSize(grid)
+                .taskExecutor(batchTaskExecutor)
+                .build();
+    }
+
+    private Step keysetWorkerStep() {
+        return stepBuilderFactory.get("keysetWorkerStep")
+                .<Person, Person>chunk(10)
+                .reader(personKeysetItemReader(null, null))
+                .writer(itemWriter())
+                .build();
+    }
+
+    @Bean
+    @StepScope
+    public PersonKeysetItemReader personKeysetItemReader(@Value("#{stepExecutionContext[minId]}") Long minId,
+                                                         @Value("#{stepExecutionContext[maxId]}") Long maxId) {
+        PersonKeysetItemReader itemReader = new PersonKeysetItemReader(dataSource, minId, maxId);
+        itemReader.setName("personKeysetItemReader");
+        itemReader.setPageSize(100);
+        return itemReader;
+    }
+
     private ItemWriter<Person> itemWriter() {
-        return items -> log.info(items.stream()
-                .map(Person::getName)
-                .collect(Collectors.joining(", ")));
+        return items -> {
+            if (log.isDebugEnabled()) {     //chunk마다 이름을 이어붙이는 비용은 debug 로그를 볼 때만 냄
+                log.debug(items.stream()
+                        .map(Person::getName)
+                        .collect(Collectors.joining(", ")));
+            }
+        };
     }
 
     private List<Person> getItems() {
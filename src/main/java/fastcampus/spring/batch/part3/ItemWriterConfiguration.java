@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.JobScope;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
 import org.springframework.batch.item.ItemReader;
@@ -18,12 +19,14 @@ import org.springframework.batch.item.file.FlatFileItemWriter;
 import org.springframework.batch.item.file.builder.FlatFileItemWriterBuilder;
 import org.springframework.batch.item.file.transform.BeanWrapperFieldExtractor;
 import org.springframework.batch.item.file.transform.DelimitedLineAggregator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.FileSystemResource;
 
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -41,28 +44,37 @@ public class ItemWriterConfiguration {
     public Job itemWriterJob() throws Exception {
         return this.jobBuilderFactory.get("itemWriterJob")
                 .incrementer(new RunIdIncrementer())
-                .start(this.csvItemWriterStep())
+                .start(this.csvItemWriterStep(null, null))
                 //.next(this.jdbcBatchItemWriterStep())
+                //.next(this.batchInsertItemWriterStep())
+                //.next(this.statelessSessionItemWriterStep())
                 .next(this.jpaItemWriterStep())
                 .build();
     }
 
     @Bean
-    public Step csvItemWriterStep() throws Exception {
+    @JobScope
+    public Step csvItemWriterStep(@Value("#{jobParameters[csv_writer]}") String csvWriter,
+                                  @Value("#{jobParameters[csv_gzip]}") String csvGzip) throws Exception {
         return this.stepBuilderFactory.get("csvItemWriterStep")
                 .<Person, Person>chunk(10)
                 .reader(itemReader())
-                .writer(csvFileItemWriter())
+                .writer("channel".equals(csvWriter) ? channelCsvFileItemWriter(Boolean.parseBoolean(csvGzip)) : csvFileItemWriter())
                 .build();
     }
 
-    private ItemWriter<Person> csvFileItemWriter() throws Exception {
+    private DelimitedLineAggregator<Person> csvLineAggregator() {
         BeanWrapperFieldExtractor<Person> fieldExtractor = new BeanWrapperFieldExtractor<>();  //csv파일에 작성할 데이터를 추출하기 위한 객체.
         fieldExtractor.setNames(new String[] {"id", "name", "age", "address"});  //필드명 설정
 
         DelimitedLineAggregator<Person> lineAggregator = new DelimitedLineAggregator<>();   //각 필드에 데이터를 하나의 라인으로 작성하기 위해서 사용.
         lineAggregator.setDelimiter(",");  //csv 파일이니까 콤마 기준으로 생성
         lineAggregator.setFieldExtractor(fieldExtractor);
+        return lineAggregator;
+    }
+
+    private ItemWriter<Person> csvFileItemWriter() throws Exception {
+        DelimitedLineAggregator<Person> lineAggregator = csvLineAggregator();
 
         FlatFileItemWriter<Person> itemWriter = new FlatFileItemWriterBuilder<Person>()
                 .name("csvFileItemWriter")
@@ -78,6 +90,18 @@ public class ItemWriterConfiguration {
         return itemWriter;
     }
 
+    //csv_writer=channel : 큰 direct buffer에 모았다가 chunk 커밋마다 한 번만 쓰고 fsync. csv_gzip=true면 test-output.csv.gz로 압축해서 저장
+    private ItemWriter<Person> channelCsvFileItemWriter(boolean gzip) {
+        ChannelFlatFileItemWriter<Person> itemWriter = new ChannelFlatFileItemWriter<>(
+                Paths.get(gzip ? "output/test-output.csv.gz" : "output/test-output.csv"), csvLineAggregator());
+        itemWriter.setName("channelCsvFileItemWriter");
+        itemWriter.setGzip(gzip);
+        itemWriter.setHeaderCallback(writer -> writer.write("id,이름,나이,거주지"));
+        itemWriter.setFooterCallback(writer -> writer.write("------------------\n"));
+        itemWriter.setAppend(true);
+        return itemWriter;
+    }
+
     private ItemReader<Person> itemReader() {
         return new CustomItemReader<>(getItems());
     }
@@ -114,6 +138,24 @@ public class ItemWriterConfiguration {
         return itemWriter;
     }
 
+    @Bean
+    public Step batchInsertItemWriterStep(){
+        return stepBuilderFactory.get("batchInsertItemWriterStep")
+                .<Person, Person>chunk(10)
+                .reader(itemReader())
+                .writer(new PersonBatchInsertItemWriter(dataSource))     //chunk 10개를 multi-row insert 한 번으로 저장하고 생성된 id를 돌려받음
+                .build();
+    }
+
+    @Bean
+    public Step statelessSessionItemWriterStep(){
+        return stepBuilderFactory.get("statelessSessionItemWriterStep")
+                .<Person, Person>chunk(10)
+                .reader(itemReader())
+                .writer(new StatelessSessionItemWriter<>(entityManagerFactory))  //영속성 컨텍스트 없이 insert. chunk가 끝나도 EntityManager에 Person이 남지 않음
+                .build();
+    }
+
     @Bean
     public Step jpaItemWriterStep() throws Exception{
         return stepBuilderFactory.get("jpaItemWriterStep")
@@ -0,0 +1,19 @@
+package fastcampus.spring.batch.part3;
+
+import java.io.Closeable;
+
+/**
+ * DuplicateValidationProcessor가 이미 처리한 키를 보관하는 저장소.
+ */
+public interface KeyStore extends Closeable {
+
+    /**
+     * 처음 보는 키면 저장하고 true, 이미 저장된 키면 false를 반환한다.
+     */
+    boolean add(String key);
+
+    boolean contains(String key);
+
+    long size();
+
+}
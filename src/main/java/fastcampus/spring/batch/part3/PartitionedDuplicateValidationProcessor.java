@@ -0,0 +1,139 @@
+package fastcampus.spring.batch.part3;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 파티션(worker step execution)마다 DuplicateValidationProcessor를 따로 두고 키 저장소와 커밋 전 키만 같이 쓰는 processor.
+ * 파티션끼리도 중복을 거르면서, 체크포인트는 파티션별 ExecutionContext에 저장되므로 실패한 파티션만 이어서 재시작할 수 있다.
+ * 재시작할 때 다시 실행되지 않는 완료된 파티션의 키도 필요하므로, manager step이 시작할 때 restore로 이전 실행의 모든 파티션 체크포인트를 키 저장소에 복원하고
+ * manager step이 완료되면 deleteCheckpoints로 지운다.
+ * worker step은 여러 스레드에서 같은 Step 객체로 실행되므로, 현재 스레드의 step execution으로 파티션의 processor를 찾는다.
+ */
+public class PartitionedDuplicateValidationProcessor<T> implements ItemProcessor<T, T>, ItemStream, ChunkListener {
+
+    private static final String NAME = DuplicateValidationProcessor.class.getSimpleName();
+
+    private final DuplicateValidationProcessor<T> template;    //파티션 processor를 만들 때만 사용 (open 되지 않음)
+    private final KeyStore keyPool;
+    private final JobExplorer jobExplorer;
+    private final String workerStepName;
+    private final Map<Long, DuplicateValidationProcessor<T>> partitions = new ConcurrentHashMap<>();
+
+    public PartitionedDuplicateValidationProcessor(Function<T, String> keyExtractor, KeyStore keyPool,
+                                                   JobExplorer jobExplorer, String workerStepName) {
+        this.template = new DuplicateValidationProcessor<>(keyExtractor, false, keyPool);
+        this.keyPool = keyPool;
+        this.jobExplorer = jobExplorer;
+        this.workerStepName = workerStepName;
+    }
+
+    /**
+     * 체크포인트 파일을 만들 디렉토리. 지정하지 않으면 체크포인트를 남기지 않으므로 재시작할 때 키를 복원하지 않는다.
+     */
+    public void setCheckpointDirectory(Path checkpointDirectory) {
+        template.setCheckpointDirectory(checkpointDirectory);
+    }
+
+    @Override
+    public T process(T item) throws Exception {
+        return current().process(item);
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        DuplicateValidationProcessor<T> processor = template.newPartition();
+        partitions.put(currentStepExecutionId(), processor);
+        processor.open(executionContext);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        current().update(executionContext);
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+        current().beforeChunk(context);
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        current().afterChunk(context);
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        current().afterChunkError(context);
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        DuplicateValidationProcessor<T> processor = partitions.remove(currentStepExecutionId());
+        if (processor != null) {
+            processor.close();
+        }
+    }
+
+    /**
+     * 이전 실행에서 각 파티션이 커밋한 키를 키 저장소에 복원한다. manager step의 beforeStep에서 파티션이 실행되기 전에 호출한다.
+     */
+    public void restore(StepExecution managerStepExecution) {
+        for (StepExecution partition : lastPartitionExecutions(managerStepExecution)) {
+            if (!partition.getJobExecutionId().equals(managerStepExecution.getJobExecutionId())) {
+                DuplicateValidationProcessor.restoreCheckpoint(partition.getExecutionContext(), NAME, keyPool);
+            }
+        }
+    }
+
+    /**
+     * 모든 파티션의 체크포인트 파일을 지운다. manager step이 완료되어 더 이상 재시작할 일이 없을 때 호출한다.
+     */
+    public void deleteCheckpoints(StepExecution managerStepExecution) {
+        for (StepExecution partition : lastPartitionExecutions(managerStepExecution)) {
+            DuplicateValidationProcessor.deleteCheckpoint(partition.getExecutionContext(), NAME);
+        }
+    }
+
+    //파티션 이름(workerStepName:partitionN)마다 가장 마지막 실행
+    private Collection<StepExecution> lastPartitionExecutions(StepExecution managerStepExecution) {
+        Map<String, StepExecution> last = new HashMap<>();
+        for (JobExecution jobExecution : jobExplorer.getJobExecutions(managerStepExecution.getJobExecution().getJobInstance())) {
+            for (StepExecution stepExecution : jobExecution.getStepExecutions()) {
+                if (stepExecution.getStepName().startsWith(workerStepName + ":")) {
+                    last.merge(stepExecution.getStepName(), stepExecution, (a, b) -> a.getId() > b.getId() ? a : b);
+                }
+            }
+        }
+        return last.values();
+    }
+
+    private DuplicateValidationProcessor<T> current() {
+        return partitions.get(currentStepExecutionId());
+    }
+
+    private Long currentStepExecutionId() {
+        StepContext context = StepSynchronizationManager.getContext();
+        if (context == null) {
+            throw new IllegalStateException("worker step 안에서만 사용할 수 있습니다.");
+        }
+        return context.getStepExecution().getId();
+    }
+
+}
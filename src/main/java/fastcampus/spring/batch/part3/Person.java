@@ -1,31 +1,94 @@
 package fastcampus.spring.batch.part3;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 
+import javax.persistence.Access;
+import javax.persistence.AccessType;
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Transient;
+import java.io.Serializable;
 
 @Getter
-@AllArgsConstructor
 @Entity
 @NoArgsConstructor
-public class Person {
+public class Person implements Serializable {     //remote chunking에서 TCP로 worker에게 보낼 때 직렬화
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int NOT_NUMERIC = -1;
+    private static final String[] AGE_TEXTS = new String[200];     //getAge()가 자주 쓰는 나이마다 String을 만들지 않도록 미리 만들어 둠
+
+    static {
+        for (int i = 0; i < AGE_TEXTS.length; i++) {
+            AGE_TEXTS[i] = Integer.toString(i);
+        }
+    }
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Setter(AccessLevel.PACKAGE)    //JPA를 거치지 않고 insert한 writer가 생성된 id를 넣어줄 때 사용
     private int id;
     private String name;
-    private String age;
+
+    //나이는 대부분 숫자이므로 int로 저장하고, 숫자가 아니거나 null일 때만 원래 문자열을 보관한다. (컬럼은 그대로 문자열)
+    @Transient
+    @Getter(AccessLevel.NONE)
+    private int ageValue = NOT_NUMERIC;
+    @Transient
+    @Getter(AccessLevel.NONE)
+    private String ageText;
+
     private String address;
 
+    public Person(int id, String name, String age, String address) {
+        this.id = id;
+        this.name = name;
+        this.address = address;
+        setAge(age);
+    }
+
     public Person(String name, String age, String address) {
         this.name = name;
-        this.age = age;
         this.address = address;
+        setAge(age);
+    }
+
+    @Access(AccessType.PROPERTY)
+    @Column(name = "age")
+    public String getAge() {
+        if (ageValue == NOT_NUMERIC) {
+            return ageText;
+        }
+        return ageValue < AGE_TEXTS.length ? AGE_TEXTS[ageValue] : Integer.toString(ageValue);
+    }
+
+    protected void setAge(String age) {
+        int value = parseAge(age);
+        this.ageValue = value;
+        this.ageText = value == NOT_NUMERIC ? age : null;
+    }
+
+    //"030", "+30"처럼 다시 문자열로 바꿨을 때 원래 값과 달라지는 경우는 숫자로 저장하지 않음
+    private static int parseAge(String age) {
+        if (age == null || age.isEmpty() || age.length() > 9 || (age.length() > 1 && age.charAt(0) == '0')) {
+            return NOT_NUMERIC;
+        }
+        int value = 0;
+        for (int i = 0; i < age.length(); i++) {
+            char c = age.charAt(i);
+            if (c < '0' || c > '9') {
+                return NOT_NUMERIC;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
     }
 
 }
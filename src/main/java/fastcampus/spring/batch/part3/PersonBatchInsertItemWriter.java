@@ -0,0 +1,78 @@
+package fastcampus.spring.batch.part3;
+
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * chunk 하나를 insert into person(...) values (...), (...), ... 한 문장으로 저장하는 writer.
+ * Person.id가 IDENTITY라서 JpaItemWriter는 row마다 insert를 보내지만, 이 writer는 chunk당 한 번만 DB에 다녀온다.
+ * 생성된 id는 getGeneratedKeys로 받아서 Person에 다시 넣어준다.
+ * step의 트랜잭션에 묶인 커넥션을 그대로 사용하므로 chunk 단위 커밋/롤백에 같이 참여한다.
+ */
+public class PersonBatchInsertItemWriter implements ItemWriter<Person> {
+
+    private static final String INSERT = "insert into person(name, age, address) values ";
+    private static final String VALUES = "(?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private int rowsPerStatement = 1000;    //placeholder 개수 제한이 있으니 너무 큰 chunk는 나눠서 보냄
+
+    public PersonBatchInsertItemWriter(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    public void setRowsPerStatement(int rowsPerStatement) {
+        this.rowsPerStatement = rowsPerStatement;
+    }
+
+    @Override
+    public void write(List<? extends Person> items) {
+        for (int from = 0; from < items.size(); from += rowsPerStatement) {
+            insert(items.subList(from, Math.min(from + rowsPerStatement, items.size())));
+        }
+    }
+
+    private void insert(List<? extends Person> rows) {
+        String sql = sql(rows.size());
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"});
+            int index = 1;
+            for (Person person : rows) {
+                ps.setString(index++, person.getName());
+                ps.setString(index++, person.getAge());
+                ps.setString(index++, person.getAddress());
+            }
+            return ps;
+        }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != rows.size()) {
+            throw new DataRetrievalFailureException("생성된 id 개수(" + keys.size() + ")가 insert한 row 개수(" + rows.size() + ")와 다릅니다");
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            Number id = (Number) keys.get(i).values().iterator().next();    //컬럼명은 DB마다 다름 (H2: ID, MySQL: GENERATED_KEY)
+            rows.get(i).setId(id.intValue());
+        }
+    }
+
+    private String sql(int rowCount) {
+        StringBuilder sql = new StringBuilder(INSERT.length() + rowCount * (VALUES.length() + 2)).append(INSERT);
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(VALUES);
+        }
+        return sql.toString();
+    }
+
+}
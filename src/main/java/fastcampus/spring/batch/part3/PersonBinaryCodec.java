@@ -0,0 +1,92 @@
+package fastcampus.spring.batch.part3;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * step 사이에 Person을 넘길 때 쓰는 길이 접두(length-prefixed) 바이너리 레코드 형식.
+ * 파일 : [magic 4바이트 "PBIN"][version 4바이트][레코드]...
+ * 레코드 : [본문 길이 int][id int][name][age][address]
+ * 문자열 : [UTF-8 바이트 길이 int (null이면 -1)][UTF-8 바이트]
+ * 모든 정수는 big endian.
+ * 인코더와 디코딩 버퍼를 재사용하므로 thread-safe 하지 않다. reader/writer마다 하나씩 만든다.
+ */
+public class PersonBinaryCodec {
+
+    public static final int MAGIC = 0x5042494e;     //"PBIN"
+    public static final int VERSION = 1;
+    public static final int FILE_HEADER_LENGTH = 8;
+
+    private static final int NULL_LENGTH = -1;
+
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private byte[] scratch = new byte[256];
+
+    /**
+     * 레코드 하나가 차지할 수 있는 최대 바이트 수. (UTF-8은 char 하나에 최대 3바이트)
+     */
+    public static int maxRecordLength(Person person) {
+        return 4 + 4 + maxLength(person.getName()) + maxLength(person.getAge()) + maxLength(person.getAddress());
+    }
+
+    /**
+     * target에 레코드 하나를 쓴다. target에는 maxRecordLength 이상의 공간이 있어야 한다.
+     */
+    public void encode(Person person, ByteBuffer target) throws CharacterCodingException {
+        int start = target.position();
+        target.position(start + 4);     //본문 길이는 다 쓴 뒤에 채움
+        target.putInt(person.getId());
+        putString(person.getName(), target);
+        putString(person.getAge(), target);
+        putString(person.getAddress(), target);
+        target.putInt(start, target.position() - start - 4);
+    }
+
+    /**
+     * source의 현재 위치에서 레코드 하나를 읽는다.
+     */
+    public Person decode(ByteBuffer source) {
+        source.getInt();    //본문 길이
+        int id = source.getInt();
+        String name = getString(source);
+        String age = getString(source);
+        String address = getString(source);
+        return new Person(id, name, age, address);
+    }
+
+    private static int maxLength(String value) {
+        return 4 + (value == null ? 0 : value.length() * 3);
+    }
+
+    private void putString(String value, ByteBuffer target) throws CharacterCodingException {
+        if (value == null) {
+            target.putInt(NULL_LENGTH);
+            return;
+        }
+        int lengthPosition = target.position();
+        target.position(lengthPosition + 4);
+        CoderResult result = encoder.encode(CharBuffer.wrap(value), target, true);
+        if (!result.isUnderflow()) {
+            result.throwException();
+        }
+        encoder.reset();
+        target.putInt(lengthPosition, target.position() - lengthPosition - 4);
+    }
+
+    private String getString(ByteBuffer source) {
+        int length = source.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        source.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+}
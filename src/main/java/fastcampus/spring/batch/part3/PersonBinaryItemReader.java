@@ -0,0 +1,152 @@
+package fastcampus.spring.batch.part3;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * PersonBinaryItemWriter가 쓴 스테이징 파일을 memory-mapped 파일로 읽는 reader.
+ * 파일을 mapSize 크기의 구간으로 나눠서 map 하고, 레코드가 구간 끝에 걸치면 그 레코드 위치부터 다시 map 한다.
+ * 재시작할 때는 ExecutionContext에 저장된 바이트 위치부터 읽는다.
+ * setDeleteOnComplete(true)면 step이 완료되었을 때 close에서 파일을 닫은 뒤 지운다. (step 리스너로 자동 등록됨)
+ */
+@Slf4j
+public class PersonBinaryItemReader extends AbstractItemCountingItemStreamItemReader<Person> implements StepExecutionListener {
+
+    private static final String BYTE_OFFSET = "byte.offset";
+
+    private final Path file;
+    private final PersonBinaryCodec codec = new PersonBinaryCodec();
+    private long mapSize = 64 * 1024 * 1024;
+
+    private FileChannel channel;
+    private long fileSize;
+    private MappedByteBuffer mapped;
+    private long mappedOffset;      //mapped[0]의 파일 내 위치
+    private long restartOffset = -1;
+    private boolean deleteOnComplete;
+    private boolean deleteOnClose;
+
+    public PersonBinaryItemReader(Path file) {
+        this.file = file;
+        setName(PersonBinaryItemReader.class.getSimpleName());
+    }
+
+    public void setMapSize(long mapSize) {
+        this.mapSize = mapSize;
+    }
+
+    /**
+     * step이 완료되면 파일을 지운다. 실패하면 재시작할 때 다시 읽을 수 있도록 남겨둔다.
+     */
+    public void setDeleteOnComplete(boolean deleteOnComplete) {
+        this.deleteOnComplete = deleteOnComplete;
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {     //close보다 먼저 호출되므로 여기서는 표시만 하고 close에서 지움
+        deleteOnClose = deleteOnComplete && stepExecution.getStatus() == BatchStatus.COMPLETED;
+        return null;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        restartOffset = isSaveState() && executionContext.containsKey(getExecutionContextKey(BYTE_OFFSET))
+                ? executionContext.getLong(getExecutionContextKey(BYTE_OFFSET))
+                : -1;
+        super.open(executionContext);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        super.update(executionContext);
+        if (isSaveState() && mapped != null) {
+            executionContext.putLong(getExecutionContextKey(BYTE_OFFSET), mappedOffset + mapped.position());
+        }
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        fileSize = channel.size();
+
+        map(0, Math.min(fileSize, PersonBinaryCodec.FILE_HEADER_LENGTH));
+        if (fileSize < PersonBinaryCodec.FILE_HEADER_LENGTH || mapped.getInt() != PersonBinaryCodec.MAGIC) {
+            throw new IllegalStateException("Person 스테이징 파일이 아닙니다 : " + file);
+        }
+        int version = mapped.getInt();
+        if (version != PersonBinaryCodec.VERSION) {
+            throw new IllegalStateException("지원하지 않는 스테이징 파일 버전입니다 : " + version);
+        }
+
+        long start = restartOffset >= 0 ? restartOffset : PersonBinaryCodec.FILE_HEADER_LENGTH;
+        map(start, Math.min(mapSize, fileSize - start));
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) throws Exception {
+        if (restartOffset < 0) {    //바이트 위치가 없을 때만 아이템 개수만큼 다시 읽음
+            super.jumpToItem(itemIndex);
+        }
+    }
+
+    @Override
+    protected Person doRead() throws Exception {
+        long offset = mappedOffset + mapped.position();
+        if (offset >= fileSize) {
+            return null;
+        }
+
+        if (mapped.remaining() < 4) {
+            map(offset, Math.min(mapSize, fileSize - offset));
+        }
+        int recordLength = 4 + mapped.getInt(mapped.position());
+        if (mapped.remaining() < recordLength) {    //구간 끝에 걸친 레코드
+            if (offset + recordLength > fileSize) {
+                throw new IllegalStateException("레코드가 잘렸습니다 (offset " + offset + ") : " + file);
+            }
+            map(offset, Math.min(Math.max(mapSize, recordLength), fileSize - offset));
+        }
+        return codec.decode(mapped);
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        mapped = null;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        restartOffset = -1;
+        if (deleteOnClose) {
+            deleteOnClose = false;
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {   //map된 구간이 GC 전까지 풀리지 않는 OS(Windows)에서는 실패할 수 있음
+                log.warn("스테이징 파일 삭제 실패 : {}", file, e);
+            }
+        }
+    }
+
+    private void map(long offset, long length) throws IOException {
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        mappedOffset = offset;
+    }
+
+}
@@ -0,0 +1,36 @@
+package fastcampus.spring.batch.part3;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Person을 PersonBinaryCodec 형식으로 스테이징 파일에 쓰는 writer.
+ * 다음 step이 PersonBinaryItemReader로 csv 파싱이나 DB 조회 없이 바로 읽을 수 있다.
+ * chunk 커밋마다 한 번 쓰고 force 하며, 재시작하면 마지막 커밋 위치부터 이어서 쓴다.
+ */
+public class PersonBinaryItemWriter extends AbstractFileChannelItemWriter<Person> {
+
+    private final PersonBinaryCodec codec = new PersonBinaryCodec();
+
+    public PersonBinaryItemWriter(Path file) {
+        super(file);
+        setName(PersonBinaryItemWriter.class.getSimpleName());
+    }
+
+    @Override
+    protected void openFile(boolean empty) throws IOException {
+        if (empty) {
+            buffer(PersonBinaryCodec.FILE_HEADER_LENGTH)
+                    .putInt(PersonBinaryCodec.MAGIC)
+                    .putInt(PersonBinaryCodec.VERSION);
+        }
+    }
+
+    @Override
+    protected void writeItem(Person item) throws IOException {
+        ByteBuffer buffer = buffer(PersonBinaryCodec.maxRecordLength(item));
+        codec.encode(item, buffer);
+    }
+
+}
@@ -0,0 +1,348 @@
+package fastcampus.spring.batch.part3;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.item.file.transform.FieldSet;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * person csv를 바이트 단위로 직접 파싱해서 Person을 만드는 reader.
+ * DefaultLineMapper + DelimitedLineTokenizer와 달리 줄 String, 토큰 배열, FieldSet을 만들지 않고 버퍼에서 바로 필드를 UTF-8로 디코딩한다.
+ * 재시작할 때는 ExecutionContext에 저장된 바이트 위치로 바로 이동한다.
+ * 따옴표(")가 들어간 줄만 DelimitedLineTokenizer로 처리한다. 어느 쪽이든 필드 앞뒤 공백은 FieldSet.readString처럼 잘라낸다.
+ * FlatFileItemReader처럼 #으로 시작하는 줄은 주석으로 건너뛰고(setComments), 빈 줄은 필드 개수가 맞지 않으므로 FlatFileParseException을 던진다.
+ * 나이와 거주지는 값 종류가 적으므로 reader마다 ValueDictionary로 같은 값은 같은 String을 쓴다. (setInternMaxEntries(0)이면 사용하지 않음)
+ */
+public class PersonCsvItemReader extends AbstractItemCountingItemStreamItemReader<Person> {
+
+    private static final String BYTE_OFFSET = "byte.offset";
+
+    private final Resource resource;
+    private final boolean withId;   //true면 id,name,age,address / false면 name,age,address
+    private int linesToSkip = 0;
+    private int bufferSize = 64 * 1024;
+    private int internMaxEntries = 1024;
+    private byte[][] comments = {{'#'}};
+
+    private ReadableByteChannel channel;
+    private byte[] buffer;
+    private ByteBuffer byteBuffer;
+    private int position;
+    private int limit;
+    private long bufferOffset;      //buffer[0]의 파일 내 위치
+    private boolean endOfFile;
+    private int lineNumber;
+    private long restartOffset = -1;
+    private DelimitedLineTokenizer quotedLineTokenizer;
+    private ValueDictionary ages;
+    private ValueDictionary addresses;
+
+    private int lineStart;
+    private int lineEnd;
+    private final int[] delimiters = new int[4];
+
+    public PersonCsvItemReader(Resource resource, boolean withId) {
+        this.resource = resource;
+        this.withId = withId;
+        setName(PersonCsvItemReader.class.getSimpleName());
+    }
+
+    public void setLinesToSkip(int linesToSkip) {
+        this.linesToSkip = linesToSkip;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * 이 문자열로 시작하는 줄은 주석으로 보고 건너뛴다. (기본 #)
+     */
+    public void setComments(String... comments) {
+        this.comments = new byte[comments.length][];
+        for (int i = 0; i < comments.length; i++) {
+            this.comments[i] = comments[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 나이, 거주지 컬럼마다 intern 할 값의 최대 개수. 0이면 intern 하지 않는다.
+     */
+    public void setInternMaxEntries(int internMaxEntries) {
+        this.internMaxEntries = internMaxEntries;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        restartOffset = isSaveState() && executionContext.containsKey(getExecutionContextKey(BYTE_OFFSET))
+                ? executionContext.getLong(getExecutionContextKey(BYTE_OFFSET))
+                : -1;
+        super.open(executionContext);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        super.update(executionContext);
+        if (isSaveState() && buffer != null) {
+            executionContext.putLong(getExecutionContextKey(BYTE_OFFSET), bufferOffset + position);
+        }
+    }
+
+    @Override
+    protected void doOpen() throws Exception {
+        channel = resource.readableChannel();
+        buffer = new byte[bufferSize];
+        byteBuffer = ByteBuffer.wrap(buffer);
+        position = 0;
+        limit = 0;
+        bufferOffset = 0;
+        endOfFile = false;
+        lineNumber = 0;
+        if (internMaxEntries > 0) {
+            ages = new ValueDictionary(internMaxEntries);
+            addresses = new ValueDictionary(internMaxEntries);
+        }
+
+        if (restartOffset >= 0) {
+            seek(restartOffset);
+            return;
+        }
+
+        for (int i = 0; i < linesToSkip && nextLine(); i++) {   //헤더 건너뜀
+            lineNumber++;
+        }
+    }
+
+    //저장된 바이트 위치로 이동. 파일이면 position만 옮기고, 아니면 앞부분을 읽어서 버림
+    private void seek(long offset) throws IOException {
+        if (channel instanceof SeekableByteChannel) {
+            ((SeekableByteChannel) channel).position(offset);
+            bufferOffset = offset;
+            return;
+        }
+        while (bufferOffset + limit < offset && !endOfFile) {
+            position = limit;
+            fill();
+        }
+        position = (int) Math.min(offset - bufferOffset, limit);
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) throws Exception {
+        if (restartOffset < 0) {    //바이트 위치가 없을 때만 아이템 개수만큼 다시 읽음
+            super.jumpToItem(itemIndex);
+        }
+    }
+
+    @Override
+    protected Person doRead() throws Exception {
+        while (nextLine()) {
+            lineNumber++;
+            if (!isComment()) {
+                return mapLine();
+            }
+        }
+        return null;
+    }
+
+    private boolean isComment() {
+        for (byte[] comment : comments) {
+            if (startsWith(comment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean startsWith(byte[] prefix) {
+        if (lineEnd - lineStart < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[lineStart + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void doClose() throws Exception {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        buffer = null;
+        byteBuffer = null;
+        restartOffset = -1;
+        ages = null;
+        addresses = null;
+    }
+
+    private Person mapLine() {
+        int expected = withId ? 4 : 3;
+        int count = 0;
+        for (int i = lineStart; i < lineEnd; i++) {
+            byte b = buffer[i];
+            if (b == '"') {
+                return mapQuotedLine();
+            }
+            if (b == ',') {
+                if (count == expected - 1) {
+                    throw parseException("필드 개수가 " + expected + "개보다 많습니다");
+                }
+                delimiters[count++] = i;
+            }
+        }
+        if (count != expected - 1) {
+            throw parseException("필드 개수가 " + expected + "개가 아닙니다");
+        }
+
+        int field = lineStart;
+        int id = 0;
+        if (withId) {
+            id = parseInt(field, delimiters[0]);
+            field = delimiters[0] + 1;
+        }
+        int d = withId ? 1 : 0;
+        String name = decode(null, field, delimiters[d]);
+        String age = decode(ages, delimiters[d] + 1, delimiters[d + 1]);
+        String address = decode(addresses, delimiters[d + 1] + 1, lineEnd);
+
+        return withId ? new Person(id, name, age, address) : new Person(name, age, address);
+    }
+
+    private Person mapQuotedLine() {
+        if (quotedLineTokenizer == null) {
+            quotedLineTokenizer = new DelimitedLineTokenizer();
+        }
+        FieldSet fieldSet;
+        try {
+            fieldSet = quotedLineTokenizer.tokenize(decode(lineStart, lineEnd));
+        } catch (RuntimeException e) {
+            throw new FlatFileParseException("Parsing error at line: " + lineNumber, e, decode(lineStart, lineEnd), lineNumber);
+        }
+        if (fieldSet.getFieldCount() != (withId ? 4 : 3)) {
+            throw parseException("필드 개수가 맞지 않습니다");
+        }
+        return withId
+                ? new Person(fieldSet.readInt(0), fieldSet.readString(1), fieldSet.readString(2), fieldSet.readString(3))
+                : new Person(fieldSet.readString(0), fieldSet.readString(1), fieldSet.readString(2));
+    }
+
+    private String decode(int from, int to) {
+        return new String(buffer, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    //앞뒤 공백을 잘라서 디코딩 (String.trim과 같은 기준. UTF-8 멀티바이트 문자의 바이트는 0x80 이상이라 잘리지 않음)
+    private String decode(ValueDictionary dictionary, int from, int to) {
+        from = trimStart(from, to);
+        to = trimEnd(from, to);
+        return dictionary != null ? dictionary.get(buffer, from, to) : decode(from, to);
+    }
+
+    private int trimStart(int from, int to) {
+        while (from < to && (buffer[from] & 0xff) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private int trimEnd(int from, int to) {
+        while (to > from && (buffer[to - 1] & 0xff) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+
+    private int parseInt(int from, int to) {
+        from = trimStart(from, to);
+        to = trimEnd(from, to);
+        boolean negative = from < to && buffer[from] == '-';
+        int digitsFrom = negative ? from + 1 : from;
+        if (digitsFrom == to) {
+            throw parseException("id가 비어있습니다");
+        }
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (int i = digitsFrom; i < to; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw parseException("id가 숫자가 아닙니다");
+            }
+            value = value * 10 + digit;
+            if (value > limit) {
+                throw parseException("id가 int 범위를 넘습니다");
+            }
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    private FlatFileParseException parseException(String message) {
+        return new FlatFileParseException(message + " (line " + lineNumber + ")", decode(lineStart, lineEnd), lineNumber);
+    }
+
+    //다음 줄의 [lineStart, lineEnd) 범위를 찾음. 줄 끝의 \r\n은 포함하지 않는다.
+    private boolean nextLine() throws IOException {
+        int scanFrom = position;
+        while (true) {
+            for (int i = scanFrom; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    setLine(position, i);
+                    position = i + 1;
+                    return true;
+                }
+            }
+            if (endOfFile) {
+                if (position < limit) {     //마지막 줄에 개행이 없는 경우
+                    setLine(position, limit);
+                    position = limit;
+                    return true;
+                }
+                return false;
+            }
+            scanFrom = fill();
+        }
+    }
+
+    private void setLine(int start, int end) {
+        lineStart = start;
+        lineEnd = end > start && buffer[end - 1] == '\r' ? end - 1 : end;
+    }
+
+    //아직 처리하지 않은 바이트를 버퍼 앞으로 당기고 채움. 다시 스캔을 시작할 위치를 반환
+    private int fill() throws IOException {
+        int remaining = limit - position;
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+            bufferOffset += position;
+            position = 0;
+            limit = remaining;
+        }
+        if (limit == buffer.length) {   //한 줄이 버퍼보다 길면 버퍼를 늘림
+            byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+            byteBuffer = ByteBuffer.wrap(buffer);
+        }
+
+        byteBuffer.limit(buffer.length).position(limit);
+        int read = channel.read(byteBuffer);
+        if (read < 0) {
+            endOfFile = true;
+        } else {
+            limit += read;
+        }
+        return remaining;
+    }
+
+}
@@ -0,0 +1,103 @@
+package fastcampus.spring.batch.part3;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * person 테이블을 id 순서로 pageSize개씩 읽는 keyset reader.
+ * offset 대신 where id > (마지막으로 읽은 id) 로 다음 페이지를 가져오므로 뒤쪽 페이지도 인덱스로 바로 찾아가고, 커서를 오래 잡고 있지 않는다.
+ * [minId, maxId] 구간만 읽으므로 IdRangePartitioner와 같이 쓰면 구간별로 나눠서 병렬로 읽을 수 있다.
+ * 마지막으로 읽은 id를 ExecutionContext에 저장해서 재시작하면 앞부분을 다시 읽지 않고 그 다음 id부터 읽는다.
+ */
+public class PersonKeysetItemReader extends AbstractItemCountingItemStreamItemReader<Person> {
+
+    private static final String LAST_ID = "last.id";
+    private static final String SQL = "select id, name, age, address from person where id > ? and id <= ? order by id limit ?";
+    private static final RowMapper<Person> ROW_MAPPER = (rs, rowNum) -> new Person(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long minId;
+    private final long maxId;
+    private int pageSize = 100;
+
+    private List<Person> page = Collections.emptyList();
+    private int index;
+    private boolean lastPage;
+    private long lastId;
+    private Long restartLastId;
+
+    public PersonKeysetItemReader(DataSource dataSource, long minId, long maxId) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.minId = minId;
+        this.maxId = maxId;
+        setName(PersonKeysetItemReader.class.getSimpleName());
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        restartLastId = isSaveState() && executionContext.containsKey(getExecutionContextKey(LAST_ID))
+                ? executionContext.getLong(getExecutionContextKey(LAST_ID))
+                : null;
+        super.open(executionContext);
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        super.update(executionContext);
+        if (isSaveState()) {
+            executionContext.putLong(getExecutionContextKey(LAST_ID), lastId);
+        }
+    }
+
+    @Override
+    protected void doOpen() {
+        lastId = restartLastId != null ? restartLastId : minId - 1;
+        page = Collections.emptyList();
+        index = 0;
+        lastPage = false;
+    }
+
+    @Override
+    protected void jumpToItem(int itemIndex) throws Exception {
+        if (restartLastId == null) {    //마지막 id가 없을 때만 아이템 개수만큼 다시 읽음
+            super.jumpToItem(itemIndex);
+        }
+    }
+
+    @Override
+    protected Person doRead() {
+        if (index >= page.size()) {
+            if (lastPage) {
+                return null;
+            }
+            page = jdbcTemplate.query(SQL, ROW_MAPPER, lastId, maxId, pageSize);
+            index = 0;
+            lastPage = page.size() < pageSize;
+            if (page.isEmpty()) {
+                return null;
+            }
+        }
+
+        Person person = page.get(index++);
+        lastId = person.getId();
+        return person;
+    }
+
+    @Override
+    protected void doClose() {
+        page = Collections.emptyList();
+        restartLastId = null;
+    }
+
+}
@@ -2,6 +2,20 @@ package fastcampus.spring.batch.part3;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface PersonRepository extends JpaRepository<Person, Integer> {
 
+    //이름 목록을 in (...) 한 번으로 조회. 엔티티 전체가 아니라 id, name만 가져옴
+    List<PersonKey> findByNameIn(Collection<String> names);
+
+    interface PersonKey {
+
+        int getId();
+
+        String getName();
+
+    }
+
 }
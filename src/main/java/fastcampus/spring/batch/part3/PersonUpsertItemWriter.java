@@ -0,0 +1,51 @@
+package fastcampus.spring.batch.part3;
+
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PersonUpsertProcessor가 기존 row의 id를 넣어 준 item은 JDBC batch update로 갱신하고, 나머지(id가 0)는 delegate로 insert 하는 writer.
+ * update는 chunk당 batchUpdate 한 번이라 JpaItemWriter의 merge처럼 item마다 select 하지 않는다.
+ * step의 트랜잭션에 묶인 커넥션을 그대로 사용하므로 delegate의 insert와 같이 커밋/롤백된다.
+ */
+public class PersonUpsertItemWriter implements ItemWriter<Person> {
+
+    private static final String UPDATE = "update person set age = ?, address = ? where id = ?";
+
+    private final ItemWriter<Person> delegate;
+    private final JdbcTemplate jdbcTemplate;
+
+    public PersonUpsertItemWriter(ItemWriter<Person> delegate, DataSource dataSource) {
+        this.delegate = delegate;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Override
+    public void write(List<? extends Person> items) throws Exception {
+        List<Person> inserts = new ArrayList<>(items.size());
+        List<Person> updates = new ArrayList<>();
+        for (Person item : items) {
+            if (item.getId() == 0) {
+                inserts.add(item);
+            } else {
+                updates.add(item);
+            }
+        }
+
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE, updates, updates.size(), (ps, person) -> {
+                ps.setString(1, person.getAge());
+                ps.setString(2, person.getAddress());
+                ps.setInt(3, person.getId());
+            });
+        }
+        if (!inserts.isEmpty()) {
+            delegate.write(inserts);
+        }
+    }
+
+}
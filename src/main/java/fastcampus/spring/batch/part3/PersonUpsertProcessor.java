@@ -0,0 +1,140 @@
+package fastcampus.spring.batch.part3;
+
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.item.ItemProcessor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 이전 실행에서 이미 person 테이블에 저장된 이름을 걸러내거나(filter) 기존 row를 갱신하도록(update) 표시하는 processor.
+ * ItemReadListener로 chunk에서 읽은 이름을 모아 두었다가 그 chunk의 첫 process에서 in (...) 쿼리 한 번으로 조회한다.
+ * (chunk는 전부 읽은 뒤에 process가 시작되므로 item마다 쿼리하지 않음)
+ * 조회한 이름과 id, 이 step에서 저장한 이름과 id는 최대 cacheSize개까지 LRU로 보관해서 다음 chunk에서는 다시 조회하지 않는다.
+ *
+ * update 모드에서는 기존 row의 id를 넣어서 돌려주므로 writer는 PersonUpsertItemWriter로 id가 있는 item을 update 해야 한다.
+ * 같은 이름이 DB에 여러 개면 가장 작은 id를 사용한다. 여러 스레드에서 동시에 사용할 수 없다.
+ */
+public class PersonUpsertProcessor implements ItemProcessor<Person, Person>, ItemReadListener<Person>, ItemWriteListener<Person> {
+
+    private final PersonRepository personRepository;
+    private final boolean update;
+    private final Map<String, Integer> knownKeys;
+    private final Set<String> pendingKeys = new LinkedHashSet<>();
+    private final Set<String> absentKeys = new HashSet<>();     //이번 chunk에서 조회했지만 DB에 없던 이름
+
+    private int lookupBatchSize = 1000;     //in 목록이 너무 길어지지 않도록 나눠서 조회
+    private long lookupQueries;
+    private long cacheHits;
+
+    public PersonUpsertProcessor(PersonRepository personRepository, boolean update, int cacheSize) {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("cacheSize는 1 이상이어야 합니다 : " + cacheSize);
+        }
+        this.personRepository = personRepository;
+        this.update = update;
+        this.knownKeys = new LinkedHashMap<String, Integer>(16, 0.75f, true) {     //accessOrder=true : 가장 오래 안 쓴 키부터 제거
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public void setLookupBatchSize(int lookupBatchSize) {
+        this.lookupBatchSize = lookupBatchSize;
+    }
+
+    public long getLookupQueries() {
+        return lookupQueries;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    @Override
+    public void beforeRead() {
+    }
+
+    @Override
+    public void afterRead(Person item) {
+        if (item.getName() != null && !knownKeys.containsKey(item.getName())) {
+            pendingKeys.add(item.getName());
+        }
+    }
+
+    @Override
+    public void onReadError(Exception ex) {
+    }
+
+    @Override
+    public Person process(Person item) throws Exception {
+        if (!pendingKeys.isEmpty()) {   //새 chunk의 첫 item
+            absentKeys.clear();
+            lookup(pendingKeys);
+            pendingKeys.clear();
+        }
+
+        String name = item.getName();
+        if (name == null) {
+            return item;
+        }
+        Integer id = knownKeys.get(name);
+        if (id != null) {
+            cacheHits++;
+        } else if (!absentKeys.contains(name)) {    //afterRead를 거치지 않았거나 LRU에서 밀려난 이름은 따로 조회
+            lookup(Collections.singleton(name));
+            id = knownKeys.get(name);
+        }
+
+        if (id == null) {
+            return item;    //새 이름은 insert
+        }
+        if (!update) {
+            return null;
+        }
+        item.setId(id);
+        return item;
+    }
+
+    private void lookup(Collection<String> names) {
+        List<String> keys = new ArrayList<>(names);
+        for (int from = 0; from < keys.size(); from += lookupBatchSize) {
+            List<String> batch = keys.subList(from, Math.min(from + lookupBatchSize, keys.size()));
+            Set<String> absent = new HashSet<>(batch);
+            for (PersonRepository.PersonKey key : personRepository.findByNameIn(batch)) {
+                knownKeys.merge(key.getName(), key.getId(), Math::min);
+                absent.remove(key.getName());
+            }
+            absentKeys.addAll(absent);
+            lookupQueries++;
+        }
+    }
+
+    @Override
+    public void beforeWrite(List<? extends Person> items) {
+    }
+
+    @Override
+    public void afterWrite(List<? extends Person> items) {
+        for (Person item : items) {     //이번 step에서 insert한 이름도 다음 chunk부터는 이미 있는 이름
+            if (item.getName() != null && item.getId() != 0) {
+                knownKeys.putIfAbsent(item.getName(), item.getId());
+            }
+        }
+    }
+
+    @Override
+    public void onWriteError(Exception exception, List<? extends Person> items) {
+    }
+
+}
@@ -0,0 +1,82 @@
+package fastcampus.spring.batch.part3;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * delegate processor를 worker 스레드에서 실행하고 결과 대신 Future를 돌려주는 processor. PipelinedItemWriter와 같이 사용한다.
+ * laneKey가 있으면 같은 키의 아이템은 항상 같은 worker(단일 스레드)에서 읽은 순서대로 처리된다. (중복 제거에서 먼저 읽은 아이템이 남도록)
+ * laneKey가 null이면 아무 worker에서나 처리한다.
+ * worker는 open에서 만들고 close에서 정리하며, delegate가 ItemStream이면 open/update/close를 그대로 전달한다.
+ */
+public class PipelinedItemProcessor<I, O> implements ItemProcessor<I, Future<O>>, ItemStream {
+
+    private final ItemProcessor<I, O> delegate;
+    private final int workers;
+    private final Function<I, ?> laneKey;
+    private ExecutorService[] lanes;
+
+    public PipelinedItemProcessor(ItemProcessor<I, O> delegate, int workers, Function<I, ?> laneKey) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers는 1 이상이어야 합니다 : " + workers);
+        }
+        this.delegate = delegate;
+        this.workers = workers;
+        this.laneKey = laneKey;
+    }
+
+    @Override
+    public Future<O> process(I item) {
+        int lane = lanes.length == 1 ? 0 : Math.floorMod(Objects.hashCode(laneKey.apply(item)), lanes.length);
+        return lanes[lane].submit(() -> delegate.process(item));
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("pipeline-process-");
+        threadFactory.setDaemon(true);
+
+        if (laneKey == null) {
+            lanes = new ExecutorService[]{Executors.newFixedThreadPool(workers, threadFactory)};
+        } else {
+            lanes = new ExecutorService[workers];
+            for (int i = 0; i < workers; i++) {
+                lanes[i] = Executors.newSingleThreadExecutor(threadFactory);
+            }
+        }
+
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).open(executionContext);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).update(executionContext);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        if (lanes != null) {
+            for (ExecutorService lane : lanes) {
+                lane.shutdownNow();
+            }
+            lanes = null;
+        }
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).close();
+        }
+    }
+
+}
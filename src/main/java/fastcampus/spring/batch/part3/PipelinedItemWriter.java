@@ -0,0 +1,303 @@
+package fastcampus.spring.batch.part3;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStream;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.WriteFailedException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * PipelinedItemProcessor가 돌려준 Future를 풀어서 delegate writer로 저장한다. null 결과(필터링된 아이템)는 저장하지 않는다.
+ * - transactional : chunk 트랜잭션 안에서 Future를 기다렸다가 바로 저장. chunk 커밋/롤백, 재시작이 기존 step과 같다.
+ * - write behind : Future를 풀어서 저장할 아이템을 bounded queue에 넣고 바로 돌아가고, writer 스레드가 별도 트랜잭션으로 저장한다.
+ *   다음 chunk를 읽고 처리하는 동안 DB 저장이 같이 진행된다. 큐가 차면 reader 쪽이 기다린다.
+ *   writer 스레드가 1개면 chunk 순서대로 저장되고, 여러 개면 순서가 보장되지 않는다.
+ *   step 커밋이 DB 저장을 기다리지 않으므로 실패하면 큐에 있던 chunk는 저장되지 않은 채로 끝날 수 있다. (재시작으로 정확히 이어갈 수 없음)
+ *   저장 실패는 다음 write 또는 step 종료(afterStep) 시점에 step 실패로 드러난다.
+ * chunk processor는 Future 개수만큼 writeCount를 올리므로, write()에서 필터링된 개수만큼 writeCount를 빼고 filterCount에 더한다.
+ * chunk 트랜잭션 안에서 옮기므로 chunk마다 저장되는 StepExecution의 개수도 맞고, 롤백되면 되돌린다.
+ */
+@Slf4j
+public class PipelinedItemWriter<T> implements ItemWriter<Future<T>>, ItemStream, ChunkListener, StepExecutionListener {
+
+    private static final List<Object> END = Collections.emptyList();
+    private static final long POLL_MILLIS = 100;
+
+    private final ItemWriter<T> delegate;
+    private final TransactionTemplate transactionTemplate;     //null이면 transactional
+    private final int writers;
+    private final int queueCapacity;
+
+    private final ThreadLocal<FilterCountMove> chunkFiltered = new ThreadLocal<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private BlockingQueue<List<?>> queue;
+    private List<Thread> writerThreads = Collections.emptyList();
+
+    /**
+     * chunk 트랜잭션 안에서 저장하는 writer
+     */
+    public PipelinedItemWriter(ItemWriter<T> delegate) {
+        this.delegate = delegate;
+        this.transactionTemplate = null;
+        this.writers = 0;
+        this.queueCapacity = 0;
+    }
+
+    /**
+     * writer 스레드 writers개가 별도 트랜잭션으로 저장하는 write behind writer. queueCapacity는 대기할 수 있는 chunk 개수
+     */
+    public PipelinedItemWriter(ItemWriter<T> delegate, PlatformTransactionManager transactionManager, int writers, int queueCapacity) {
+        if (writers < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("writers, queueCapacity는 1 이상이어야 합니다 : " + writers + ", " + queueCapacity);
+        }
+        this.delegate = delegate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.writers = writers;
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Override
+    public void write(List<? extends Future<T>> items) throws Exception {
+        List<T> outputs = unwrap(items);    //write behind도 Future는 여기서 풀어서 chunk 트랜잭션 안에서 필터링 개수를 반영
+        moveToFilterCount(items.size() - outputs.size());
+        if (transactionTemplate == null) {
+            if (!outputs.isEmpty()) {
+                delegate.write(outputs);
+            }
+            return;
+        }
+
+        if (!outputs.isEmpty()) {
+            while (!queue.offer(outputs, POLL_MILLIS, TimeUnit.MILLISECONDS)) {  //큐가 차 있으면 writer 스레드가 따라올 때까지 대기
+                rethrowFailure();
+            }
+        }
+        rethrowFailure();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runWriter() {
+        while (true) {
+            List<?> chunk;
+            try {
+                chunk = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (chunk == END) {
+                return;
+            }
+            if (failure.get() != null) {   //이미 실패했으면 남은 chunk는 버림
+                continue;
+            }
+
+            try {
+                List<T> outputs = (List<T>) chunk;
+                transactionTemplate.executeWithoutResult(status -> {
+                    try {
+                        delegate.write(outputs);
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new WriteFailedException("write behind 저장 실패", e);
+                    }
+                });
+            } catch (Throwable e) {
+                log.error("write behind 저장 실패", e);
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    private List<T> unwrap(List<? extends Future<T>> futures) throws Exception {
+        List<T> outputs = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            T item;
+            try {
+                item = future.get();
+            } catch (ExecutionException e) {   //processor에서 던진 예외를 그대로 다시 던져서 skip/retry 설정이 동작하도록 함
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw e;
+            }
+            if (item != null) {
+                outputs.add(item);
+            }
+        }
+        return outputs;
+    }
+
+    private void rethrowFailure() {
+        Throwable e = failure.get();
+        if (e != null) {
+            throw new WriteFailedException("write behind 저장 실패로 step을 중단합니다", e);
+        }
+    }
+
+    //큐에 남은 chunk를 모두 저장할 때까지 기다리고 writer 스레드를 정리
+    private void drain() {
+        if (queue == null) {
+            return;
+        }
+        for (int i = 0; i < writerThreads.size(); i++) {
+            try {
+                queue.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        for (Thread thread : writerThreads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        writerThreads = Collections.emptyList();
+        queue = null;
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).open(executionContext);
+        }
+        if (transactionTemplate == null) {
+            return;
+        }
+
+        failure.set(null);
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        writerThreads = new ArrayList<>(writers);
+        for (int i = 0; i < writers; i++) {
+            Thread thread = new Thread(this::runWriter, "pipeline-write-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            writerThreads.add(thread);
+        }
+    }
+
+    @Override
+    public void update(ExecutionContext executionContext) throws ItemStreamException {
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).update(executionContext);
+        }
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        drain();
+        if (delegate instanceof ItemStream) {
+            ((ItemStream) delegate).close();
+        }
+    }
+
+    @Override
+    public void beforeChunk(ChunkContext context) {
+    }
+
+    @Override
+    public void afterChunk(ChunkContext context) {
+        chunkFiltered.remove();
+    }
+
+    @Override
+    public void afterChunkError(ChunkContext context) {
+        FilterCountMove move = chunkFiltered.get();
+        chunkFiltered.remove();
+        if (move != null) {
+            move.undo();
+        }
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (transactionTemplate == null) {
+            return null;
+        }
+
+        drain();
+
+        Throwable e = failure.get();
+        if (e != null && stepExecution.getStatus() == BatchStatus.COMPLETED) {     //마지막 chunk들 저장이 실패했으면 step을 실패로 바꿈
+            stepExecution.setStatus(BatchStatus.FAILED);
+            stepExecution.addFailureException(e);
+            return ExitStatus.FAILED.addExitDescription(e);
+        }
+        return null;
+    }
+
+    //chunk 트랜잭션 안에서 옮겨 두면 chunk 커밋 때 저장되는 StepExecution의 개수가 바로 맞음
+    private void moveToFilterCount(int filtered) {
+        StepContext stepContext = StepSynchronizationManager.getContext();
+        if (filtered == 0 || stepContext == null) {
+            return;
+        }
+        StepExecution stepExecution = stepContext.getStepExecution();
+        synchronized (stepExecution) {     //StepExecution.apply와 같은 lock
+            stepExecution.setWriteCount(stepExecution.getWriteCount() - filtered);
+            stepExecution.setFilterCount(stepExecution.getFilterCount() + filtered);
+            chunkFiltered.set(new FilterCountMove(stepExecution, filtered));
+        }
+    }
+
+    /**
+     * 롤백된 chunk에서 옮긴 필터링 개수를 되돌린다.
+     * TaskletStep은 StepExecution을 저장한 뒤에 커밋이 실패했을 때만 chunk 이전 값으로 되돌리므로, 이미 되돌려져서 값이 달라졌으면 그대로 둔다.
+     */
+    private static class FilterCountMove {
+
+        private final StepExecution stepExecution;
+        private final int filtered;
+        private final int writeCount;
+        private final int filterCount;
+
+        FilterCountMove(StepExecution stepExecution, int filtered) {
+            this.stepExecution = stepExecution;
+            this.filtered = filtered;
+            this.writeCount = stepExecution.getWriteCount();
+            this.filterCount = stepExecution.getFilterCount();
+        }
+
+        void undo() {
+            synchronized (stepExecution) {
+                if (stepExecution.getWriteCount() == writeCount && stepExecution.getFilterCount() == filterCount) {
+                    stepExecution.setWriteCount(writeCount + filtered);
+                    stepExecution.setFilterCount(filterCount - filtered);
+                }
+            }
+        }
+
+    }
+
+}
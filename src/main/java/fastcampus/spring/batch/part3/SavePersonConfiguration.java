@@ -1,30 +1,54 @@
 package fastcampus.spring.batch.part3;
 
+import fastcampus.spring.batch.step.BisectingStepBuilder;
+import fastcampus.spring.batch.step.RestartGuardItemStream;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.util.StringUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.core.ItemReadListener;
+import org.springframework.batch.core.ItemWriteListener;
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.JobScope;
 import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
 import org.springframework.batch.core.configuration.annotation.StepScope;
 import org.springframework.batch.core.launch.support.RunIdIncrementer;
-import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.core.listener.SkipListenerSupport;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.skip.LimitCheckingItemSkipPolicy;
+import org.springframework.batch.core.step.skip.SkipPolicy;
 import org.springframework.batch.item.ItemWriter;
 import org.springframework.batch.item.database.JpaItemWriter;
 import org.springframework.batch.item.database.builder.JpaItemWriterBuilder;
-import org.springframework.batch.item.file.FlatFileItemReader;
-import org.springframework.batch.item.file.builder.FlatFileItemReaderBuilder;
-import org.springframework.batch.item.file.mapping.DefaultLineMapper;
-import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.item.support.CompositeItemProcessor;
 import org.springframework.batch.item.support.CompositeItemWriter;
+import org.springframework.batch.item.support.SynchronizedItemStreamReader;
+import org.springframework.batch.item.support.builder.CompositeItemProcessorBuilder;
 import org.springframework.batch.item.support.builder.CompositeItemWriterBuilder;
+import org.springframework.batch.repeat.CompletionPolicy;
+import org.springframework.batch.repeat.policy.SimpleCompletionPolicy;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.Future;
 
 @Configuration
 @Slf4j
@@ -34,38 +58,253 @@ public class SavePersonConfiguration {
     private final JobBuilderFactory jobBuilderFactory;
     private final StepBuilderFactory stepBuilderFactory;
     private final EntityManagerFactory entityManagerFactory;
+    private final DataSource dataSource;
+    private final PlatformTransactionManager transactionManager;
+    private final TaskExecutor batchTaskExecutor;
+    private final PersonRepository personRepository;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
 
     @Bean
     public Job savePersonJob() throws Exception {
         return this.jobBuilderFactory.get("savePersonJob")
                 .incrementer(new RunIdIncrementer())
-                .start(this.savePersonStep(null))   //null로 설정해도 spring이 자동으로 넣어줌
+                .start(this.savePersonStep(null, null, null, null, null, null, null, null, null, null, null, null, null, null))   //null로 설정해도 spring이 자동으로 넣어줌
                 .build();
     }
 
     @Bean
     @JobScope
-    public Step savePersonStep(@Value("#{jobParameters[allow_duplicate]}") String allowDuplicate) throws Exception {
-        return this.stepBuilderFactory.get("savePersonStep")
-                .<Person, Person>chunk(10)
+    public Step savePersonStep(@Value("#{jobParameters[allow_duplicate]}") String allowDuplicate,
+                               @Value("#{jobParameters[dedup_expected_keys]}") String dedupExpectedKeys,
+                               @Value("#{jobParameters[dedup_checkpoint_dir]}") String dedupCheckpointDir,
+                               @Value("#{jobParameters[writer_mode]}") String writerMode,
+                               @Value("#{jobParameters[chunk_policy]}") String chunkPolicy,
+                               @Value("#{jobParameters[target_commit_ms]}") String targetCommitMs,
+                               @Value("#{jobParameters[pipeline_mode]}") String pipelineMode,
+                               @Value("#{jobParameters[pipeline_workers]}") String pipelineWorkers,
+                               @Value("#{jobParameters[pipeline_ordering]}") String pipelineOrdering,
+                               @Value("#{jobParameters[step_threads]}") String stepThreads,
+                               @Value("#{jobParameters[upsert_mode]}") String upsertMode,
+                               @Value("#{jobParameters[upsert_cache_size]}") String upsertCacheSize,
+                               @Value("#{jobParameters[fault_tolerance]}") String faultTolerance,
+                               @Value("#{jobParameters[skip_limit]}") String skipLimit) throws Exception {
+        DuplicateValidationProcessor<Person> processor =
+                new DuplicateValidationProcessor<>(Person::getName, Boolean.parseBoolean(allowDuplicate), keyStore(dedupExpectedKeys));  //false면 항상 필터링
+        if (StringUtils.isNotEmpty(dedupCheckpointDir)) {
+            processor.setCheckpointDirectory(Paths.get(dedupCheckpointDir));    //재시작 시 중복 키를 복원할 체크포인트 위치
+        }
+
+        CompletionPolicy completionPolicy = "adaptive".equals(chunkPolicy)     //chunk 처리 시간이 target_commit_ms에 맞도록 chunk 크기를 조절
+                ? new AdaptiveChunkSizeCompletionPolicy("savePersonStep", 10,
+                        StringUtils.isNotEmpty(targetCommitMs) ? Long.parseLong(targetCommitMs) : 1000, 10, 5_000,
+                        meterRegistry.getIfAvailable(() -> Metrics.globalRegistry))
+                : new SimpleCompletionPolicy(10);
+
+        SkipPolicy writeSkipPolicy = writeSkipPolicy(faultTolerance, skipLimit, writerMode);
+
+        int threads = StringUtils.isNotEmpty(stepThreads) ? Integer.parseInt(stepThreads) : 1;
+        if (StringUtils.isNotEmpty(upsertMode)) {
+            if (Boolean.parseBoolean(allowDuplicate) || threads > 1 || StringUtils.isNotEmpty(pipelineMode)) {
+                throw new IllegalArgumentException("upsert_mode는 allow_duplicate=true, step_threads, pipeline_mode와 같이 사용할 수 없습니다");
+            }
+            return upsertStep(processor, completionPolicy, writerMode, upsertMode,
+                    StringUtils.isNotEmpty(upsertCacheSize) ? Integer.parseInt(upsertCacheSize) : 10_000, writeSkipPolicy);
+        }
+        if (StringUtils.isNotEmpty(pipelineMode)) {
+            if (threads > 1) {
+                throw new IllegalArgumentException("pipeline_mode와 step_threads는 같이 사용할 수 없습니다");
+            }
+            if (writeSkipPolicy != null) {
+                throw new IllegalArgumentException("pipeline_mode와 fault_tolerance는 같이 사용할 수 없습니다");
+            }
+            int workers = StringUtils.isNotEmpty(pipelineWorkers) ? Integer.parseInt(pipelineWorkers) : Runtime.getRuntime().availableProcessors();
+            return pipelinedStep(processor, completionPolicy, writerMode, pipelineMode, workers, !"unordered".equals(pipelineOrdering));
+        }
+
+        if (threads > 1) {
+            return multiThreadedStep(processor, completionPolicy, writerMode, threads, writeSkipPolicy);
+        }
+
+        SimpleStepBuilder<Person, Person> stepBuilder = this.stepBuilderFactory.get("savePersonStep")
+                .<Person, Person>chunk(completionPolicy)
                 .reader(itemReader())
-                .processor(new DuplicateValidationProcessor<>(Person::getName, Boolean.parseBoolean(allowDuplicate)))  //false면 항상 필터링
-                .writer(itemWriter())
+                .processor(processor)
+                .writer(itemWriter(writerMode));
+        if (completionPolicy instanceof ChunkListener) {
+            stepBuilder.listener((ChunkListener) completionPolicy);
+        }
+        return faultTolerant(stepBuilder, writeSkipPolicy).build();
+    }
+
+    /**
+     * step_threads가 2 이상이면 chunk를 batchTaskExecutor의 worker 스레드 여러 개에서 동시에 처리한다. (batch.executor.virtual-threads=true면 virtual thread)
+     * reader는 SynchronizedItemStreamReader로 감싸고, chunk가 끝나는 순서가 읽은 순서와 다르므로 읽은 위치와 dedup 체크포인트는 저장하지 않는다.
+     * 재시작하면 처음부터 다시 저장하게 되므로 RestartGuardItemStream으로 재시작을 막는다.
+     */
+    private Step multiThreadedStep(DuplicateValidationProcessor<Person> processor, CompletionPolicy completionPolicy,
+                                   String writerMode, int threads, SkipPolicy writeSkipPolicy) throws Exception {
+        PersonCsvItemReader personCsvItemReader = itemReader();
+        personCsvItemReader.setSaveState(false);
+        processor.setSaveState(false);
+
+        SynchronizedItemStreamReader<Person> itemReader = new SynchronizedItemStreamReader<>();
+        itemReader.setDelegate(personCsvItemReader);
+
+        SimpleStepBuilder<Person, Person> stepBuilder = this.stepBuilderFactory.get("savePersonStep")
+                .<Person, Person>chunk(completionPolicy)
+                .reader(itemReader)
+                .processor(processor)
+                .writer(itemWriter(writerMode));
+        if (completionPolicy instanceof ChunkListener) {
+            stepBuilder.listener((ChunkListener) completionPolicy);
+        }
+        stepBuilder.stream(new RestartGuardItemStream("step_threads=" + threads));
+        return faultTolerant(stepBuilder, writeSkipPolicy)
+                .taskExecutor(batchTaskExecutor)
+                .throttleLimit(threads)
                 .build();
     }
 
-    private ItemWriter<? super Person> itemWriter() throws Exception{
-        //return items -> items.forEach(x -> log.info("저는 {} 입니다.", x.getName()));
-        JpaItemWriter<Person> jpaItemWriter = new JpaItemWriterBuilder<Person>()
-                .entityManagerFactory(entityManagerFactory)
+    /**
+     * upsert_mode가 있으면 이전 실행에서 이미 저장된 이름도 DB에서 확인한다. chunk마다 in (...) 쿼리 한 번으로 조회하고 확인한 이름은 LRU 캐시(upsert_cache_size, 기본 10000)에 보관한다.
+     * upsert_mode=filter : 이미 있는 이름은 필터링
+     * upsert_mode=update : 이미 있는 이름은 기존 row의 나이/거주지를 갱신 (같은 실행에서 두 번째 이후로 나온 이름은 지금처럼 필터링)
+     * 이번 실행 안의 중복은 그대로 DuplicateValidationProcessor가 거른다.
+     */
+    private Step upsertStep(DuplicateValidationProcessor<Person> processor, CompletionPolicy completionPolicy,
+                            String writerMode, String upsertMode, int cacheSize, SkipPolicy writeSkipPolicy) throws Exception {
+        boolean update;
+        if ("filter".equals(upsertMode)) {
+            update = false;
+        } else if ("update".equals(upsertMode)) {
+            update = true;
+        } else {
+            throw new IllegalArgumentException("지원하지 않는 upsert_mode : " + upsertMode);
+        }
+        if (update && writeSkipPolicy != null) {     //나눠 쓰다 롤백된 insert도 writer가 넣은 id가 남아서 update로 잘못 분류될 수 있음
+            throw new IllegalArgumentException("upsert_mode=update와 fault_tolerance는 같이 사용할 수 없습니다");
+        }
+        PersonUpsertProcessor upsertProcessor = new PersonUpsertProcessor(personRepository, update, cacheSize);
+
+        CompositeItemProcessor<Person, Person> itemProcessor = new CompositeItemProcessorBuilder<Person, Person>()
+                .delegates(upsertProcessor, processor)     //DB 확인을 먼저 해야 같은 이름이 반복될 때 캐시를 씀
                 .build();
+        itemProcessor.afterPropertiesSet();
+
+        ItemWriter<Person> personItemWriter = personItemWriter(writerMode);
+        SimpleStepBuilder<Person, Person> stepBuilder = this.stepBuilderFactory.get("savePersonStep")
+                .<Person, Person>chunk(completionPolicy)
+                .reader(itemReader())
+                .processor(itemProcessor)
+                .writer(itemWriter(update ? new PersonUpsertItemWriter(personItemWriter, dataSource) : personItemWriter));
+        stepBuilder.listener((ItemReadListener<Person>) upsertProcessor);   //chunk에서 읽은 이름을 모아서 한 번에 조회
+        stepBuilder.listener((ItemWriteListener<Person>) upsertProcessor);  //저장한 이름을 캐시에 추가
+        stepBuilder.stream(processor);      //processor를 감쌌으므로 dedup 체크포인트 stream/리스너는 직접 등록
+        stepBuilder.listener((StepExecutionListener) processor);
+        stepBuilder.listener((ChunkListener) processor);
+        if (completionPolicy instanceof ChunkListener) {
+            stepBuilder.listener((ChunkListener) completionPolicy);
+        }
+        return faultTolerant(stepBuilder, writeSkipPolicy).build();
+    }
+
+    /**
+     * pipeline_mode가 있으면 processor를 worker 스레드에서 실행하고 writer가 Future를 풀어서 저장한다.
+     * pipeline_mode=transactional : chunk 트랜잭션 안에서 저장 (재시작 가능)
+     * pipeline_mode=write_behind : writer 스레드가 별도 트랜잭션으로 저장해서 다음 chunk 읽기/처리와 DB 저장이 겹친다 (재시작하면 RestartGuardItemStream이 step을 실패시킴)
+     * pipeline_ordering=ordered(기본)면 같은 이름은 같은 worker에서 읽은 순서대로 처리하고 writer 스레드 1개로 chunk 순서대로 저장한다.
+     */
+    private Step pipelinedStep(DuplicateValidationProcessor<Person> processor, CompletionPolicy completionPolicy,
+                               String writerMode, String pipelineMode, int workers, boolean ordered) throws Exception {
+        PipelinedItemProcessor<Person, Person> pipelinedProcessor =
+                new PipelinedItemProcessor<>(processor, workers, ordered ? Person::getName : null);
+
+        PipelinedItemWriter<Person> pipelinedWriter;
+        RestartGuardItemStream restartGuard = null;
+        PersonCsvItemReader itemReader = itemReader();
+        if ("write_behind".equals(pipelineMode)) {
+            pipelinedWriter = new PipelinedItemWriter<>(itemWriter(writerMode), transactionManager, ordered ? 1 : Math.min(workers, 4), 4);
+            itemReader.setSaveState(false);     //DB 저장이 step 커밋보다 늦으므로 읽은 위치를 저장하지 않음
+            processor.setSaveState(false);
+            restartGuard = new RestartGuardItemStream("pipeline_mode=write_behind");  //처음부터 다시 읽으면 이미 저장한 Person을 다시 저장하므로 재시작을 막음
+        } else if ("transactional".equals(pipelineMode)) {
+            pipelinedWriter = new PipelinedItemWriter<>(itemWriter(writerMode));
+        } else {
+            throw new IllegalArgumentException("지원하지 않는 pipeline_mode : " + pipelineMode);
+        }
+
+        SimpleStepBuilder<Person, Future<Person>> stepBuilder = this.stepBuilderFactory.get("savePersonStep")
+                .<Person, Future<Person>>chunk(completionPolicy)
+                .reader(itemReader)
+                .processor(pipelinedProcessor)
+                .writer(pipelinedWriter);
+        stepBuilder.listener((StepExecutionListener) processor);   //processor를 감쌌으므로 체크포인트 정리, 커밋된 키 반영 리스너는 직접 등록
+        stepBuilder.listener((ChunkListener) processor);
+        if (restartGuard != null) {
+            stepBuilder.stream(restartGuard);
+        }
+        if (completionPolicy instanceof ChunkListener) {
+            stepBuilder.listener((ChunkListener) completionPolicy);
+        }
+        return stepBuilder.build();
+    }
+
+    /**
+     * fault_tolerance=bisect면 write가 실패한 chunk를 savepoint로 반씩 나눠 다시 써서 저장할 수 없는 row만 skip 한다. (skip_limit, 기본 10)
+     * FaultTolerantStepBuilder처럼 chunk 전체를 item 하나씩 다시 처리하지 않으므로 chunk가 커도 실패한 row 수 * log(chunk 크기)번만 다시 쓴다.
+     * 실패한 insert를 savepoint로 되돌려도 영속성 컨텍스트에 엔티티가 남는 JPA writer는 쓸 수 없어서 writer_mode=multi_row, stateless만 지원한다.
+     */
+    private SkipPolicy writeSkipPolicy(String faultTolerance, String skipLimit, String writerMode) {
+        if (StringUtils.isEmpty(faultTolerance)) {
+            return null;
+        }
+        if (!"bisect".equals(faultTolerance)) {
+            throw new IllegalArgumentException("지원하지 않는 fault_tolerance : " + faultTolerance);
+        }
+        if (!"multi_row".equals(writerMode) && !"stateless".equals(writerMode)) {
+            throw new IllegalArgumentException("fault_tolerance=bisect는 writer_mode=multi_row, stateless에서만 사용할 수 있습니다");
+        }
+        return new LimitCheckingItemSkipPolicy(StringUtils.isNotEmpty(skipLimit) ? Integer.parseInt(skipLimit) : 10,
+                Collections.singletonMap(DataIntegrityViolationException.class, true));     //제약 조건 위반 등 row 자체가 잘못된 경우만 skip
+    }
+
+    private SimpleStepBuilder<Person, Person> faultTolerant(SimpleStepBuilder<Person, Person> stepBuilder, SkipPolicy writeSkipPolicy) {
+        if (writeSkipPolicy == null) {
+            return stepBuilder;
+        }
+        return new BisectingStepBuilder<>(stepBuilder)
+                .dataSource(dataSource)
+                .skipPolicy(writeSkipPolicy)
+                .retryPolicy(new SimpleRetryPolicy(3, Collections.singletonMap(TransientDataAccessException.class, true)))  //deadlock 등은 나누기 전에 재시도
+                .skipListener(new SkipListenerSupport<Person, Person>() {
+                    @Override
+                    public void onSkipInWrite(Person item, Throwable t) {
+                        log.warn("저장하지 못해서 건너뜁니다 : {} ({})", item.getName(), t.getMessage());
+                    }
+                });
+    }
+
+    //dedup_expected_keys 파라미터가 있으면 블룸 필터 + 디스크 키 저장소로 메모리 사용량을 고정
+    private KeyStore keyStore(String dedupExpectedKeys) throws IOException {
+        if (StringUtils.isEmpty(dedupExpectedKeys)) {
+            return new InMemoryKeyStore();
+        }
+        return new BloomFilterKeyStore(Long.parseLong(dedupExpectedKeys));
+    }
+
+    private ItemWriter<Person> itemWriter(String writerMode) throws Exception{
+        //return items -> items.forEach(x -> log.info("저는 {} 입니다.", x.getName()));
+        return itemWriter(personItemWriter(writerMode));
+    }
+
+    private ItemWriter<Person> itemWriter(ItemWriter<Person> personItemWriter) throws Exception {
 
         ItemWriter<Person> logItemWriter = items -> log.info("person.size : {}", items.size());
 
 
-        //jpaItemWriter와 logItemWriter를 합쳐서 사용할 수 있는 CompositeItemWriterBuilder 사용
+        //personItemWriter와 logItemWriter를 합쳐서 사용할 수 있는 CompositeItemWriterBuilder 사용
         CompositeItemWriter<Person> itemWriter = new CompositeItemWriterBuilder<Person>()
-                .delegates(jpaItemWriter, logItemWriter)    //jpaItemWriter 먼저 실행 후 logItemWriter 실행
+                .delegates(personItemWriter, logItemWriter)    //personItemWriter 먼저 실행 후 logItemWriter 실행
                 .build();
 
         itemWriter.afterPropertiesSet();
@@ -73,25 +312,28 @@ public class SavePersonConfiguration {
         return itemWriter;
     }
 
-    private ItemReader<? extends Person> itemReader() throws Exception {
-        DefaultLineMapper<Person> lineMapper = new DefaultLineMapper<>();
-        DelimitedLineTokenizer lineTokenizer = new DelimitedLineTokenizer();
-        lineTokenizer.setNames("name", "age", "address");
-        lineMapper.setLineTokenizer(lineTokenizer);
-        lineMapper.setFieldSetMapper(fieldSet -> new Person(
-            fieldSet.readString(0),
-            fieldSet.readString(1),
-            fieldSet.readString(2)));
-
-        FlatFileItemReader<Person> itemReader = new FlatFileItemReaderBuilder<Person>()
-                .name("savePersonItemReader")
-                .encoding("UTF-8")
-                .linesToSkip(1)
-                .resource(new ClassPathResource(("person.csv")))
-                .lineMapper(lineMapper)
+    //writer_mode=multi_row면 chunk를 multi-row insert 한 문장으로 저장 (IDENTITY 때문에 JPA는 batch insert가 안 됨)
+    //writer_mode=stateless면 영속성 컨텍스트 없이 StatelessSession으로 insert
+    private ItemWriter<Person> personItemWriter(String writerMode) throws Exception {
+        if ("multi_row".equals(writerMode)) {
+            return new PersonBatchInsertItemWriter(dataSource);
+        }
+        if ("stateless".equals(writerMode)) {
+            return new StatelessSessionItemWriter<>(entityManagerFactory);
+        }
+
+        JpaItemWriter<Person> jpaItemWriter = new JpaItemWriterBuilder<Person>()
+                .entityManagerFactory(entityManagerFactory)
                 .build();
+        jpaItemWriter.afterPropertiesSet();
+        return jpaItemWriter;
+    }
 
-        itemReader.afterPropertiesSet();
+    private PersonCsvItemReader itemReader() throws Exception {
+        //DefaultLineMapper + DelimitedLineTokenizer 대신 바이트 단위로 바로 Person을 만드는 reader 사용 (FieldSet 생성 없음)
+        PersonCsvItemReader itemReader = new PersonCsvItemReader(new ClassPathResource("person.csv"), false);
+        itemReader.setName("savePersonItemReader");
+        itemReader.setLinesToSkip(1);
 
         return itemReader;
     }
@@ -0,0 +1,167 @@
+package fastcampus.spring.batch.part3;
+
+import io.micrometer.core.instrument.util.StringUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.JobScope;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.StepScope;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.core.listener.StepExecutionListenerSupport;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.database.JpaItemWriter;
+import org.springframework.batch.item.database.builder.JpaItemWriterBuilder;
+import org.springframework.batch.item.file.mapping.DefaultLineMapper;
+import org.springframework.batch.item.file.transform.DelimitedLineTokenizer;
+import org.springframework.batch.item.support.CompositeItemWriter;
+import org.springframework.batch.item.support.PassThroughItemProcessor;
+import org.springframework.batch.item.support.builder.CompositeItemWriterBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskExecutor;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+/**
+ * person.csv를 줄 단위로 맞춘 바이트 구간으로 나눠서 구간마다 worker step을 병렬로 실행하는 job.
+ * grid_size 파라미터로 파티션 개수를 정하고, 재시작 정보는 파티션(worker step execution)마다 따로 저장된다.
+ * worker step은 batchTaskExecutor에서 실행된다. (batch.executor.virtual-threads=true면 virtual thread)
+ * 재시작하면 완료된 파티션은 건너뛰고 실패한 파티션만 커밋된 위치부터 이어서 처리한다.
+ * dedup_checkpoint_dir 파라미터가 있으면 중복 필터링 키도 파티션마다 체크포인트되어 재시작할 때 복원된다.
+ */
+@Configuration
+@Slf4j
+@RequiredArgsConstructor
+public class SavePersonPartitionConfiguration {
+
+    private final JobBuilderFactory jobBuilderFactory;
+    private final StepBuilderFactory stepBuilderFactory;
+    private final EntityManagerFactory entityManagerFactory;
+    private final TaskExecutor batchTaskExecutor;
+    private final JobExplorer jobExplorer;
+
+    @Bean
+    public Job savePersonPartitionJob() throws Exception {
+        return this.jobBuilderFactory.get("savePersonPartitionJob")
+                .incrementer(new RunIdIncrementer())
+                .start(this.savePersonPartitionStep(null, null, null, null))
+                .build();
+    }
+
+    @Bean
+    @JobScope
+    public Step savePersonPartitionStep(@Value("#{jobParameters[grid_size]}") String gridSize,
+                                        @Value("#{jobParameters[allow_duplicate]}") String allowDuplicate,
+                                        @Value("#{jobParameters[input_file]}") String inputFile,
+                                        @Value("#{jobParameters[dedup_checkpoint_dir]}") String dedupCheckpointDir) throws Exception {
+        int grid = StringUtils.isNotEmpty(gridSize) ? Integer.parseInt(gridSize) : Runtime.getRuntime().availableProcessors();
+
+        KeyStore keyStore = new InMemoryKeyStore();     //파티션끼리도 중복을 걸러야 하니 키 저장소는 모든 worker step이 같이 사용 (thread-safe)
+        PartitionedDuplicateValidationProcessor<Person> processor =
+                new PartitionedDuplicateValidationProcessor<>(Person::getName, keyStore, jobExplorer, "savePersonWorkerStep");
+        if (StringUtils.isNotEmpty(dedupCheckpointDir)) {
+            processor.setCheckpointDirectory(Paths.get(dedupCheckpointDir));   //재시작 시 모든 파티션이 커밋한 키를 복원할 체크포인트 위치
+        }
+        boolean filterDuplicate = !Boolean.parseBoolean(allowDuplicate);
+
+        TaskExecutorPartitionHandler partitionHandler = new TaskExecutorPartitionHandler();
+        partitionHandler.setStep(savePersonWorkerStep(filterDuplicate ? processor : new PassThroughItemProcessor<>()));
+        partitionHandler.setTaskExecutor(batchTaskExecutor);   //동시에 실행되는 파티션 수는 커넥션 풀 크기로 제한됨
+        partitionHandler.setGridSize(grid);
+        partitionHandler.afterPropertiesSet();
+
+        return this.stepBuilderFactory.get("savePersonPartitionStep")
+                .partitioner("savePersonWorkerStep", new ByteRangePartitioner(inputResource(inputFile), 1))
+                .partitionHandler(partitionHandler)
+                .listener(new StepExecutionListenerSupport() {
+                    @Override
+                    public void beforeStep(StepExecution stepExecution) {
+                        if (filterDuplicate) {
+                            processor.restore(stepExecution);   //재시작이면 다시 실행되지 않는 파티션이 처리한 키까지 복원
+                        }
+                    }
+
+                    @Override
+                    public ExitStatus afterStep(StepExecution stepExecution) {
+                        if (filterDuplicate && stepExecution.getStatus() == BatchStatus.COMPLETED) {
+                            processor.deleteCheckpoints(stepExecution);
+                        }
+                        try {
+                            keyStore.close();       //모든 파티션이 끝난 뒤에 키 저장소 정리
+                        } catch (IOException e) {
+                            throw new ItemStreamException("keyStore close 실패", e);
+                        }
+                        return null;
+                    }
+                })
+                .build();
+    }
+
+    private Step savePersonWorkerStep(ItemProcessor<Person, Person> processor) throws Exception {
+        return this.stepBuilderFactory.get("savePersonWorkerStep")
+                .<Person, Person>chunk(10)
+                .reader(personRangeItemReader(null, null, null))
+                .processor(processor)      //ItemStream이면 파티션마다 open/update/close 되어 키 체크포인트가 파티션 ExecutionContext에 저장됨
+                .writer(itemWriter())
+                .build();
+    }
+
+    @Bean
+    @StepScope
+    public ByteRangeItemReader<Person> personRangeItemReader(@Value("#{stepExecutionContext[file]}") String file,
+                                                             @Value("#{stepExecutionContext[startByte]}") Long startByte,
+                                                             @Value("#{stepExecutionContext[endByte]}") Long endByte) {
+        DefaultLineMapper<Person> lineMapper = new DefaultLineMapper<>();
+        DelimitedLineTokenizer lineTokenizer = new DelimitedLineTokenizer();
+        lineTokenizer.setNames("name", "age", "address");
+        lineMapper.setLineTokenizer(lineTokenizer);
+        lineMapper.setFieldSetMapper(fieldSet -> new Person(
+                fieldSet.readString(0),
+                fieldSet.readString(1),
+                fieldSet.readString(2)));
+
+        return new ByteRangeItemReader<>(Paths.get(file), startByte, endByte, lineMapper, StandardCharsets.UTF_8);
+    }
+
+    private ItemWriter<Person> itemWriter() throws Exception {
+        JpaItemWriter<Person> jpaItemWriter = new JpaItemWriterBuilder<Person>()
+                .entityManagerFactory(entityManagerFactory)
+                .build();
+
+        ItemWriter<Person> logItemWriter = items -> log.info("[{}] person.size : {}", Thread.currentThread().getName(), items.size());
+
+        CompositeItemWriter<Person> itemWriter = new CompositeItemWriterBuilder<Person>()
+                .delegates(jpaItemWriter, logItemWriter)
+                .build();
+
+        itemWriter.afterPropertiesSet();
+
+        return itemWriter;
+    }
+
+    //input_file 파라미터가 없으면 classpath의 person.csv (partitioner가 파일로 접근하므로 jar로 실행하면 input_file을 지정해야 함)
+    private Resource inputResource(String inputFile) {
+        if (StringUtils.isNotEmpty(inputFile)) {
+            return new FileSystemResource(inputFile);
+        }
+        return new ClassPathResource("person.csv");
+    }
+
+}
@@ -0,0 +1,113 @@
+package fastcampus.spring.batch.part3;
+
+import fastcampus.spring.batch.remote.ChunkTransport;
+import fastcampus.spring.batch.remote.InJvmChunkTransport;
+import fastcampus.spring.batch.remote.RemoteChunkItemWriter;
+import fastcampus.spring.batch.remote.SocketChunkTransport;
+import fastcampus.spring.batch.remote.TransactionalChunkHandler;
+import io.micrometer.core.instrument.util.StringUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.configuration.annotation.JobBuilderFactory;
+import org.springframework.batch.core.configuration.annotation.JobScope;
+import org.springframework.batch.core.configuration.annotation.StepBuilderFactory;
+import org.springframework.batch.core.launch.support.RunIdIncrementer;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.database.JpaItemWriter;
+import org.springframework.batch.item.database.builder.JpaItemWriterBuilder;
+import org.springframework.batch.item.support.CompositeItemWriter;
+import org.springframework.batch.item.support.builder.CompositeItemWriterBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * savePersonJob을 remote chunking으로 실행하는 job.
+ * manager step은 person.csv를 읽어서 chunk를 worker에게 보내기만 하고, worker가 DuplicateValidationProcessor + writer를 실행한다.
+ * 이름이 같은 Person은 항상 같은 worker로 보내므로 worker마다 dedup 해도 결과는 savePersonJob과 같다.
+ * remote_workers : worker 수 (기본 2)
+ * remote_transport : in_jvm(기본, 같은 JVM의 큐) / tcp (127.0.0.1 TCP 연결, 직렬화 포함)
+ * worker가 manager와 별도로 커밋하므로 재시작은 막아두었다. 실패하면 worker가 이미 저장한 데이터를 정리하고 새로 실행해야 한다.
+ */
+@Configuration
+@Slf4j
+@RequiredArgsConstructor
+public class SavePersonRemoteChunkingConfiguration {
+
+    private final JobBuilderFactory jobBuilderFactory;
+    private final StepBuilderFactory stepBuilderFactory;
+    private final EntityManagerFactory entityManagerFactory;
+    private final PlatformTransactionManager transactionManager;
+
+    @Bean
+    public Job savePersonRemoteChunkingJob() throws Exception {
+        return this.jobBuilderFactory.get("savePersonRemoteChunkingJob")
+                .incrementer(new RunIdIncrementer())
+                .preventRestart()   //재시작하면 처음부터 다시 보내서 worker가 이미 커밋한 Person을 다시 저장하게 됨
+                .start(this.savePersonManagerStep(null, null, null))
+                .build();
+    }
+
+    @Bean
+    @JobScope
+    public Step savePersonManagerStep(@Value("#{jobParameters[remote_workers]}") String remoteWorkers,
+                                      @Value("#{jobParameters[remote_transport]}") String remoteTransport,
+                                      @Value("#{jobParameters[allow_duplicate]}") String allowDuplicate) throws Exception {
+        int workers = StringUtils.isNotEmpty(remoteWorkers) ? Integer.parseInt(remoteWorkers) : 2;
+
+        //worker마다 자기 processor(키 저장소)와 writer를 가짐
+        List<TransactionalChunkHandler<Person, Person>> handlers = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            DuplicateValidationProcessor<Person> processor = new DuplicateValidationProcessor<>(Person::getName, Boolean.parseBoolean(allowDuplicate));
+            processor.setSaveState(false);
+            handlers.add(new TransactionalChunkHandler<>(processor, workerItemWriter(), transactionManager));
+        }
+
+        PersonCsvItemReader itemReader = new PersonCsvItemReader(new ClassPathResource("person.csv"), false);
+        itemReader.setName("savePersonManagerItemReader");
+        itemReader.setLinesToSkip(1);
+        itemReader.setSaveState(false);     //보낸 chunk는 manager 트랜잭션과 무관하게 커밋되므로 읽은 위치를 저장하지 않음
+
+        return this.stepBuilderFactory.get("savePersonManagerStep")
+                .<Person, Person>chunk(10)
+                .reader(itemReader)
+                .writer(new RemoteChunkItemWriter<>(chunkTransport(remoteTransport, handlers), Person::getName))  //dedup 키로 worker를 고름
+                .build();
+    }
+
+    private ChunkTransport<Person> chunkTransport(String remoteTransport, List<TransactionalChunkHandler<Person, Person>> handlers) throws IOException {
+        if (StringUtils.isEmpty(remoteTransport) || "in_jvm".equals(remoteTransport)) {
+            return new InJvmChunkTransport<>(handlers);
+        }
+        if ("tcp".equals(remoteTransport)) {
+            return SocketChunkTransport.loopback(handlers);
+        }
+        throw new IllegalArgumentException("지원하지 않는 remote_transport : " + remoteTransport);
+    }
+
+    private ItemWriter<Person> workerItemWriter() throws Exception {
+        JpaItemWriter<Person> jpaItemWriter = new JpaItemWriterBuilder<Person>()
+                .entityManagerFactory(entityManagerFactory)
+                .build();
+
+        ItemWriter<Person> logItemWriter = items -> log.info("[{}] person.size : {}", Thread.currentThread().getName(), items.size());
+
+        CompositeItemWriter<Person> itemWriter = new CompositeItemWriterBuilder<Person>()
+                .delegates(jpaItemWriter, logItemWriter)
+                .build();
+
+        itemWriter.afterPropertiesSet();
+
+        return itemWriter;
+    }
+
+}
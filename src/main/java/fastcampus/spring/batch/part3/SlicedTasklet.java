@@ -0,0 +1,212 @@
+package fastcampus.spring.batch.part3;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * items를 sliceSize개씩 나눈 slice들을 ForkJoinPool에서 병렬로 처리하는 Tasklet.
+ * execute 한 번에 아직 처리하지 않은 slice를 최대 slicesPerWave개(기본 pool 병렬도)까지 동시에 처리하고, 남은 slice가 있으면 CONTINUABLE을 돌려준다.
+ * 마지막 slice는 sliceSize보다 작을 수 있다.
+ *
+ * 처리한 slice 번호는 "0-4,7" 같은 범위 문자열로 step ExecutionContext에 저장하므로, 재시작하면 처리하지 못한 slice만 다시 처리한다.
+ * 한 번에 처리한 slice 중 일부가 실패해도 성공한 slice는 기록하고 첫 번째 예외를 던진다.
+ * 예외를 던지면 TaskletStep이 chunk를 롤백하면서 ExecutionContext를 chunk 시작 전 상태로 되돌리므로, afterStep에서 처리한 slice를 다시 넣는다.
+ * AbstractStep은 afterStep 다음에 ExecutionContext를 저장하므로 실패한 step에도 성공한 slice가 남는다.
+ * TaskletStep에 넣으면 StepExecutionListener로 자동 등록된다. (@StepScope 빈이면 프록시가 리스너가 되도록 반환 타입을 SlicedTasklet으로 둘 것)
+ * slice는 step 트랜잭션 밖(ForkJoinPool 스레드)에서 처리되므로, slice마다 독립적으로 커밋되는 작업이어야 한다.
+ */
+@Slf4j
+public class SlicedTasklet<T> implements Tasklet, StepExecutionListener {
+
+    private static final String COMPLETED_KEY = "completed";
+    private static final String SLICE_COUNT_KEY = "slice.count";
+
+    private final List<T> items;
+    private final int sliceSize;
+    private final int sliceCount;
+    private final SliceProcessor<T> sliceProcessor;
+
+    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+    private int slicesPerWave;
+    private String name = SlicedTasklet.class.getSimpleName();
+
+    private StepExecution stepExecution;
+    private BitSet completed;
+
+    public SlicedTasklet(List<T> items, int sliceSize, SliceProcessor<T> sliceProcessor) {
+        if (sliceSize < 1) {
+            throw new IllegalArgumentException("sliceSize는 1 이상이어야 합니다 : " + sliceSize);
+        }
+        this.items = items;
+        this.sliceSize = sliceSize;
+        this.sliceCount = (items.size() + sliceSize - 1) / sliceSize;
+        this.sliceProcessor = sliceProcessor;
+    }
+
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    public void setSlicesPerWave(int slicesPerWave) {
+        this.slicesPerWave = slicesPerWave;
+    }
+
+    /**
+     * ExecutionContext key 앞에 붙는 이름. 한 step에서 여러 개를 쓸 때 구분용
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (this.stepExecution == stepExecution && completed != null) {     //롤백으로 되돌아간 ExecutionContext에 처리한 slice를 다시 기록
+            stepExecution.getExecutionContext().putInt(key(SLICE_COUNT_KEY), sliceCount);
+            stepExecution.getExecutionContext().putString(key(COMPLETED_KEY), toRanges(completed));
+        }
+        return null;
+    }
+
+    @Override
+    public RepeatStatus execute(StepContribution contribution, ChunkContext chunkContext) throws Exception {
+        StepExecution stepExecution = contribution.getStepExecution();
+        if (this.stepExecution != stepExecution) {  //step 실행마다 처리한 slice를 ExecutionContext에서 다시 읽음
+            this.stepExecution = stepExecution;
+            this.completed = restore(stepExecution.getExecutionContext());
+        }
+
+        List<Integer> wave = nextWave();
+        if (wave.isEmpty()) {
+            return RepeatStatus.FINISHED;
+        }
+
+        List<ForkJoinTask<Exception>> tasks = new ArrayList<>(wave.size());
+        for (int slice : wave) {
+            List<T> items = slice(slice);
+            tasks.add(forkJoinPool.submit(() -> {
+                try {
+                    sliceProcessor.process(slice, items);
+                    return null;
+                } catch (Exception e) {     //join은 다른 스레드의 예외를 감싸서 다시 던지므로 원래 예외를 그대로 돌려받음
+                    return e;
+                }
+            }));
+        }
+
+        Exception failure = null;
+        int processed = 0;
+        for (int i = 0; i < tasks.size(); i++) {
+            Exception exception = tasks.get(i).join();
+            if (exception == null) {
+                completed.set(wave.get(i));
+                processed += slice(wave.get(i)).size();
+            } else if (failure == null) {
+                failure = exception;
+            } else {
+                failure.addSuppressed(exception);
+            }
+        }
+
+        stepExecution.setReadCount(stepExecution.getReadCount() + processed);
+        stepExecution.getExecutionContext().putString(key(COMPLETED_KEY), toRanges(completed));
+        log.info("slice {}개 처리 ({} / {})", wave.size(), completed.cardinality(), sliceCount);
+
+        if (failure != null) {
+            throw failure;
+        }
+        return completed.cardinality() < sliceCount ? RepeatStatus.CONTINUABLE : RepeatStatus.FINISHED;
+    }
+
+    private BitSet restore(ExecutionContext executionContext) {
+        if (!executionContext.containsKey(key(COMPLETED_KEY))) {
+            executionContext.putInt(key(SLICE_COUNT_KEY), sliceCount);
+            return new BitSet(sliceCount);
+        }
+        int savedSliceCount = executionContext.getInt(key(SLICE_COUNT_KEY));
+        if (savedSliceCount != sliceCount) {    //items나 sliceSize가 바뀌면 slice 경계가 달라지므로 이어서 처리할 수 없음
+            throw new IllegalStateException("재시작 전과 slice 개수가 다릅니다 : " + savedSliceCount + " -> " + sliceCount);
+        }
+        BitSet restored = fromRanges(executionContext.getString(key(COMPLETED_KEY)));
+        log.info("처리된 slice {}개를 건너뜁니다", restored.cardinality());
+        return restored;
+    }
+
+    private List<Integer> nextWave() {
+        int limit = slicesPerWave > 0 ? slicesPerWave : forkJoinPool.getParallelism();
+        List<Integer> wave = new ArrayList<>(limit);
+        for (int slice = completed.nextClearBit(0); slice < sliceCount && wave.size() < limit; slice = completed.nextClearBit(slice + 1)) {
+            wave.add(slice);
+        }
+        return wave;
+    }
+
+    private List<T> slice(int slice) {
+        int fromIndex = slice * sliceSize;
+        return items.subList(fromIndex, Math.min(fromIndex + sliceSize, items.size()));
+    }
+
+    private String key(String suffix) {
+        return name + "." + suffix;
+    }
+
+    //연속된 slice 번호를 "0-4,7,9-12" 형태로 저장
+    static String toRanges(BitSet slices) {
+        StringBuilder ranges = new StringBuilder();
+        for (int start = slices.nextSetBit(0); start >= 0; start = slices.nextSetBit(start)) {
+            int end = slices.nextClearBit(start) - 1;
+            if (ranges.length() > 0) {
+                ranges.append(',');
+            }
+            ranges.append(start);
+            if (end > start) {
+                ranges.append('-').append(end);
+            }
+            start = end + 1;
+        }
+        return ranges.toString();
+    }
+
+    static BitSet fromRanges(String ranges) {
+        BitSet slices = new BitSet();
+        if (ranges.isEmpty()) {
+            return slices;
+        }
+        for (String range : ranges.split(",")) {
+            int dash = range.indexOf('-');
+            if (dash < 0) {
+                slices.set(Integer.parseInt(range));
+            } else {
+                slices.set(Integer.parseInt(range.substring(0, dash)), Integer.parseInt(range.substring(dash + 1)) + 1);
+            }
+        }
+        return slices;
+    }
+
+    /**
+     * slice 하나를 처리한다. 여러 스레드에서 동시에 호출된다.
+     */
+    @FunctionalInterface
+    public interface SliceProcessor<T> {
+
+        void process(int slice, List<T> items) throws Exception;
+
+    }
+
+}
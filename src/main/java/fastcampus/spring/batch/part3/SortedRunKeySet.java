@@ -0,0 +1,306 @@
+package fastcampus.spring.batch.part3;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * 메모리에는 최대 maxKeysInMemory개의 키만 두고, 넘치면 정렬된 run 파일로 디스크에 내려쓰는 정확한(exact) 키 집합.
+ * run 파일마다 BLOCK_SIZE개 단위의 희소 인덱스(블록 첫 키)를 메모리에 두고, 조회는 해당 블록 하나만 읽어서 확인한다.
+ * 희소 인덱스는 내려쓴 키 수 / BLOCK_SIZE 개라서 키가 늘어나면 같이 늘어난다. (키 1억 개면 약 156만 개)
+ * run 파일은 크기 단계(tier)별로 모아서, 같은 단계의 run이 mergeFactor개가 되면 하나로 병합해 다음 단계로 올린다.
+ * 키 하나는 단계마다 한 번만 다시 쓰이므로 전체 쓰기량은 키 수 * log(키 수 / maxKeysInMemory) 에 비례한다.
+ * 키는 길이(int) + UTF-8 바이트로 저장하므로 길이 제한이 없다.
+ */
+public class SortedRunKeySet implements Closeable {
+
+    private static final int BLOCK_SIZE = 64;
+
+    private final Path directory;
+    private final int maxKeysInMemory;
+    private final int mergeFactor;
+
+    private final Set<String> memory = new HashSet<>();
+    private final List<Run> runs = new ArrayList<>();   //오래된 run부터. 뒤로 갈수록 tier가 같거나 낮음
+    private int runSequence = 0;
+    private long size = 0;
+
+    public SortedRunKeySet(Path directory, int maxKeysInMemory, int mergeFactor) {
+        if (mergeFactor < 2) {
+            throw new IllegalArgumentException("mergeFactor는 2 이상이어야 합니다 : " + mergeFactor);
+        }
+        this.directory = directory;
+        this.maxKeysInMemory = maxKeysInMemory;
+        this.mergeFactor = mergeFactor;
+    }
+
+    public boolean contains(String key) {
+        if (memory.contains(key)) {
+            return true;
+        }
+        for (int i = runs.size() - 1; i >= 0; i--) {    //최근 run부터
+            if (runs.get(i).contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 호출하는 쪽에서 contains로 중복이 아님을 확인한 키만 넣어야 한다.
+     */
+    public void add(String key) {
+        if (memory.add(key)) {
+            size++;
+        }
+        if (memory.size() >= maxKeysInMemory) {
+            spill();
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int runCount() {
+        return runs.size();
+    }
+
+    private void spill() {
+        String[] keys = memory.toArray(new String[0]);
+        Arrays.sort(keys);
+
+        try {
+            runs.add(Run.write(nextRunPath(), 0, Arrays.asList(keys)));
+            memory.clear();
+            compact();
+        } catch (IOException e) {
+            throw new UncheckedIOException("key run 파일 생성 실패 : " + directory, e);
+        }
+    }
+
+    //마지막 run과 같은 tier의 run이 mergeFactor개가 되면 병합해서 한 단계 올림. 올라간 tier에서도 다시 확인
+    private void compact() throws IOException {
+        while (true) {
+            int tier = runs.get(runs.size() - 1).tier;
+            int from = runs.size();
+            while (from > 0 && runs.get(from - 1).tier == tier) {
+                from--;
+            }
+            if (runs.size() - from < mergeFactor) {
+                return;
+            }
+
+            List<Run> sameTier = new ArrayList<>(runs.subList(from, runs.size()));
+            Run merged = merge(sameTier, tier + 1);
+            runs.subList(from, runs.size()).clear();
+            runs.add(merged);
+        }
+    }
+
+    //k-way merge. 각 run은 이미 정렬되어 있고 run끼리 겹치는 키는 없다.
+    private Run merge(List<Run> toMerge, int tier) throws IOException {
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>();
+        try {
+            for (Run run : toMerge) {
+                RunCursor cursor = new RunCursor(run.path);
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                } else {
+                    cursor.close();
+                }
+            }
+
+            Run merged = Run.write(nextRunPath(), tier, () -> new Iterator<String>() {
+                @Override
+                public boolean hasNext() {
+                    return !queue.isEmpty();
+                }
+
+                @Override
+                public String next() {
+                    RunCursor cursor = queue.poll();
+                    String key = cursor.current;
+                    try {
+                        if (cursor.advance()) {
+                            queue.add(cursor);
+                        } else {
+                            cursor.close();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return key;
+                }
+            });
+
+            for (Run run : toMerge) {
+                run.delete();
+            }
+            return merged;
+        } finally {
+            for (RunCursor cursor : queue) {
+                cursor.close();
+            }
+        }
+    }
+
+    private Path nextRunPath() {
+        return directory.resolve("keys-" + (runSequence++) + ".run");
+    }
+
+    @Override
+    public void close() throws IOException {
+        memory.clear();
+        for (Run run : runs) {
+            run.delete();
+        }
+        runs.clear();
+        size = 0;
+    }
+
+    //쓴 바이트 수를 반환
+    private static int writeKey(DataOutputStream out, String key) throws IOException {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return Integer.BYTES + bytes.length;
+    }
+
+    private static String readKey(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Run {
+
+        private final Path path;
+        private final int tier;
+        private final FileChannel channel;
+        private final String[] blockFirstKeys;
+        private final long[] blockOffsets;
+        private final long length;
+
+        private Run(Path path, int tier, String[] blockFirstKeys, long[] blockOffsets) throws IOException {
+            this.path = path;
+            this.tier = tier;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.blockFirstKeys = blockFirstKeys;
+            this.blockOffsets = blockOffsets;
+            this.length = channel.size();
+        }
+
+        static Run write(Path path, int tier, Iterable<String> sortedKeys) throws IOException {
+            List<String> firstKeys = new ArrayList<>();
+            List<Long> offsets = new ArrayList<>();
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+                long offset = 0;    //DataOutputStream.size()는 2GB를 넘으면 int가 넘치므로 직접 셈
+                int count = 0;
+                for (String key : sortedKeys) {
+                    if (count++ % BLOCK_SIZE == 0) {
+                        firstKeys.add(key);
+                        offsets.add(offset);
+                    }
+                    offset += writeKey(out, key);
+                }
+            }
+
+            return new Run(path, tier, firstKeys.toArray(new String[0]), offsets.stream().mapToLong(Long::longValue).toArray());
+        }
+
+        boolean contains(String key) {
+            int block = Arrays.binarySearch(blockFirstKeys, key);
+            if (block >= 0) {
+                return true;
+            }
+            block = -block - 2;     //key보다 작은 마지막 블록
+            if (block < 0) {
+                return false;
+            }
+
+            long start = blockOffsets[block];
+            long end = block + 1 < blockOffsets.length ? blockOffsets[block + 1] : length;
+            ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, start + buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array(), 0, buffer.position()));
+                while (in.available() > 0) {
+                    int compare = readKey(in).compareTo(key);
+                    if (compare == 0) {
+                        return true;
+                    }
+                    if (compare > 0) {
+                        return false;
+                    }
+                }
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException("key run 파일 읽기 실패 : " + path, e);
+            }
+        }
+
+        void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(path);
+        }
+
+    }
+
+    private static class RunCursor implements Comparable<RunCursor>, Closeable {
+
+        private final DataInputStream in;
+        private String current;
+
+        RunCursor(Path path) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                current = readKey(in);
+                return true;
+            } catch (EOFException e) {
+                current = null;
+                return false;
+            }
+        }
+
+        @Override
+        public int compareTo(RunCursor other) {
+            return current.compareTo(other.current);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,55 @@
+package fastcampus.spring.batch.part3;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.orm.hibernate5.SessionFactoryUtils;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+/**
+ * Hibernate StatelessSession으로 엔티티를 insert하는 writer.
+ * 영속성 컨텍스트(1차 캐시)와 dirty checking이 없어서 chunk가 커지거나 step이 길어져도 엔티티가 쌓이지 않는다.
+ * chunk 트랜잭션에 묶인 EntityManager의 커넥션을 그대로 사용하므로 chunk 커밋/롤백에 같이 참여한다.
+ * 생성된 id는 insert할 때 엔티티에 바로 들어간다. (IDENTITY라서 JDBC batch는 되지 않음)
+ * StatelessSession은 JPA 예외 변환을 거치지 않으므로 Hibernate 예외를 직접 DataAccessException으로 바꿔서 던진다. (제약 조건 위반 → DataIntegrityViolationException)
+ */
+public class StatelessSessionItemWriter<T> implements ItemWriter<T> {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final SessionFactory sessionFactory;
+
+    public StatelessSessionItemWriter(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+    }
+
+    @Override
+    public void write(List<? extends T> items) {
+        EntityManager entityManager = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        if (entityManager == null) {
+            throw new DataAccessResourceFailureException("트랜잭션에 묶인 EntityManager가 없습니다. chunk 트랜잭션이 JpaTransactionManager인지 확인하세요.");
+        }
+
+        try {
+            entityManager.unwrap(Session.class).doWork(connection -> {
+                try (StatelessSession statelessSession = sessionFactory.withStatelessOptions()
+                        .connection(connection)     //직접 넘긴 커넥션은 StatelessSession을 닫아도 닫히지 않음
+                        .openStatelessSession()) {
+                    for (T item : items) {
+                        statelessSession.insert(item);
+                    }
+                }
+            });
+        } catch (HibernateException e) {
+            throw SessionFactoryUtils.convertHibernateAccessException(e);     //skip 정책이 DataAccessException 계층으로 판단할 수 있도록 변환
+        }
+    }
+
+}
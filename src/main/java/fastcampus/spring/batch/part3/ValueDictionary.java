@@ -0,0 +1,104 @@
+package fastcampus.spring.batch.part3;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 값 종류가 적은 컬럼(나이, 거주지 등)을 읽을 때 같은 값이면 같은 String 인스턴스를 돌려주는 intern 테이블.
+ * UTF-8 바이트로 바로 찾으므로 이미 있는 값이면 String을 새로 만들지 않는다.
+ * 최대 maxEntries개까지만 저장하고, 가득 차면 새 값은 저장하지 않고 그냥 String으로 만들어 돌려준다. (값 종류가 많은 컬럼이 들어와도 메모리가 늘지 않음)
+ * String.intern()과 달리 reader(step)마다 따로 만들고 step이 끝나면 버린다. thread-safe 하지 않다.
+ */
+public class ValueDictionary {
+
+    private final int maxEntries;
+    private byte[][] keys;
+    private String[] values;
+    private int[] hashes;
+    private int size;
+
+    private long hits;
+    private long misses;
+
+    public ValueDictionary(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries는 1 이상이어야 합니다 : " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        int capacity = Integer.highestOneBit(Math.min(maxEntries, 1 << 12) * 2 - 1) * 2;  //처음에는 작게 만들고 필요할 때 늘림
+        this.keys = new byte[capacity][];
+        this.values = new String[capacity];
+        this.hashes = new int[capacity];
+    }
+
+    /**
+     * bytes[from, to)를 UTF-8로 읽은 값을 돌려준다.
+     */
+    public String get(byte[] bytes, int from, int to) {
+        int hash = hash(bytes, from, to);
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && Arrays.equals(keys[slot], 0, keys[slot].length, bytes, from, to)) {
+                hits++;
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        misses++;
+        String value = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+        if (size < maxEntries) {
+            keys[slot] = Arrays.copyOfRange(bytes, from, to);
+            values[slot] = value;
+            hashes[slot] = hash;
+            if (++size * 2 > keys.length) {     //load factor 0.5
+                resize();
+            }
+        }
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    private void resize() {
+        byte[][] oldKeys = keys;
+        String[] oldValues = values;
+        int[] oldHashes = hashes;
+        keys = new byte[oldKeys.length * 2][];
+        values = new String[oldKeys.length * 2];
+        hashes = new int[oldKeys.length * 2];
+
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int hash = 1;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+}
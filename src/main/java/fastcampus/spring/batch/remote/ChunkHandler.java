@@ -0,0 +1,12 @@
+package fastcampus.spring.batch.remote;
+
+/**
+ * worker 쪽에서 chunk 하나를 처리한다. 한 worker의 chunk는 받은 순서대로 한 스레드에서 처리된다.
+ * 예외를 던지지 말고 실패하면 ChunkResponse.failure를 돌려준다.
+ */
+@FunctionalInterface
+public interface ChunkHandler<T> {
+
+    ChunkResponse handle(ChunkRequest<T> request);
+
+}
@@ -0,0 +1,21 @@
+package fastcampus.spring.batch.remote;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * manager가 worker에게 보내는 chunk. sequence는 manager step 안에서 요청마다 하나씩 증가한다.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ChunkRequest<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int sequence;
+    private final List<T> items;
+
+}
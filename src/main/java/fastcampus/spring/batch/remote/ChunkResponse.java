@@ -0,0 +1,32 @@
+package fastcampus.spring.batch.remote;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * worker가 chunk를 처리하고 manager에게 돌려주는 결과.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class ChunkResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int sequence;
+    private final boolean successful;
+    private final int filterCount;
+    private final int writeCount;
+    private final String message;
+
+    public static ChunkResponse success(int sequence, int filterCount, int writeCount) {
+        return new ChunkResponse(sequence, true, filterCount, writeCount, null);
+    }
+
+    public static ChunkResponse failure(int sequence, String message) {
+        return new ChunkResponse(sequence, false, 0, 0, message);
+    }
+
+}
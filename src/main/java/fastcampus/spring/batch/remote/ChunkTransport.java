@@ -0,0 +1,22 @@
+package fastcampus.spring.batch.remote;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * manager와 worker 사이에서 chunk 요청/응답을 주고받는 통로.
+ * worker는 0 ~ getWorkerCount()-1 번호로 구분하고, 같은 번호로 보낸 요청은 같은 worker가 보낸 순서대로 처리한다.
+ */
+public interface ChunkTransport<T> extends Closeable {
+
+    int getWorkerCount();
+
+    void send(int worker, ChunkRequest<T> request) throws IOException;
+
+    /**
+     * 도착한 응답을 하나 꺼낸다. timeout 안에 응답이 없으면 null
+     */
+    ChunkResponse receive(long timeout, TimeUnit unit) throws IOException, InterruptedException;
+
+}
@@ -0,0 +1,70 @@
+package fastcampus.spring.batch.remote;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * worker마다 요청 큐와 스레드를 하나씩 두고 같은 JVM 안에서 chunk를 주고받는 transport.
+ * 아이템을 직렬화하지 않고 그대로 넘긴다.
+ */
+public class InJvmChunkTransport<T> implements ChunkTransport<T> {
+
+    private final List<BlockingQueue<ChunkRequest<T>>> requestQueues = new ArrayList<>();
+    private final BlockingQueue<ChunkResponse> responses = new LinkedBlockingQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+
+    public InJvmChunkTransport(List<? extends ChunkHandler<T>> handlers) {
+        for (int i = 0; i < handlers.size(); i++) {
+            BlockingQueue<ChunkRequest<T>> requestQueue = new LinkedBlockingQueue<>();
+            ChunkHandler<T> handler = handlers.get(i);
+            Thread worker = new Thread(() -> work(requestQueue, handler), "chunk-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            requestQueues.add(requestQueue);
+            workers.add(worker);
+        }
+    }
+
+    private void work(BlockingQueue<ChunkRequest<T>> requestQueue, ChunkHandler<T> handler) {
+        try {
+            while (true) {
+                ChunkRequest<T> request = requestQueue.take();
+                responses.put(handle(handler, request));
+            }
+        } catch (InterruptedException e) {     //close
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static <T> ChunkResponse handle(ChunkHandler<T> handler, ChunkRequest<T> request) {
+        try {
+            return handler.handle(request);
+        } catch (RuntimeException e) {
+            return ChunkResponse.failure(request.getSequence(), e.toString());
+        }
+    }
+
+    @Override
+    public int getWorkerCount() {
+        return requestQueues.size();
+    }
+
+    @Override
+    public void send(int worker, ChunkRequest<T> request) {
+        requestQueues.get(worker).add(request);
+    }
+
+    @Override
+    public ChunkResponse receive(long timeout, TimeUnit unit) throws InterruptedException {
+        return responses.poll(timeout, unit);
+    }
+
+    @Override
+    public void close() {
+        workers.forEach(Thread::interrupt);
+    }
+
+}
@@ -0,0 +1,142 @@
+package fastcampus.spring.batch.remote;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.ItemWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * manager step의 writer. chunk를 routingKey 기준으로 worker별로 나눠서 transport로 보내고, worker의 응답을 모은다.
+ * 같은 키는 항상 같은 worker로 가므로 worker마다 따로 dedup 해도 전체에서 중복이 걸러진다.
+ * 응답을 기다리지 않은 요청이 throttleLimit개를 넘으면 응답이 올 때까지 기다리고, step이 끝날 때(afterStep) 남은 응답을 모두 기다린다.
+ * worker의 처리 결과(filter/write count)는 afterStep에서 step execution에 반영한다.
+ *
+ * worker는 manager의 chunk 트랜잭션과 별도로 커밋하므로, manager가 실패하면 이미 보낸 chunk는 되돌릴 수 없다.
+ * 재시작하면 worker가 커밋한 chunk를 다시 보내서 중복 저장되므로, 이 writer를 쓰는 job은 재시작을 막아야 한다. (preventRestart)
+ */
+@Slf4j
+public class RemoteChunkItemWriter<T> extends ItemStreamSupport implements ItemWriter<T>, StepExecutionListener {
+
+    private final ChunkTransport<T> transport;
+    private final Function<T, ?> routingKey;
+
+    private int throttleLimit;
+    private long responseTimeoutMillis = 60_000;
+
+    private int sequence;
+    private int outstanding;
+    private int filterCount;
+    private int writeCount;
+
+    public RemoteChunkItemWriter(ChunkTransport<T> transport, Function<T, ?> routingKey) {
+        this.transport = transport;
+        this.routingKey = routingKey;
+        this.throttleLimit = transport.getWorkerCount() * 2;
+        setName(RemoteChunkItemWriter.class.getSimpleName());
+    }
+
+    /**
+     * 응답을 기다리지 않고 보낼 수 있는 요청 수. 기본값은 worker 수 * 2
+     */
+    public void setThrottleLimit(int throttleLimit) {
+        this.throttleLimit = throttleLimit;
+    }
+
+    public void setResponseTimeoutMillis(long responseTimeoutMillis) {
+        this.responseTimeoutMillis = responseTimeoutMillis;
+    }
+
+    @Override
+    public void write(List<? extends T> items) throws Exception {
+        int workers = transport.getWorkerCount();
+        List<List<T>> routed = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            routed.add(new ArrayList<>());
+        }
+        for (T item : items) {
+            routed.get(Math.floorMod(Objects.hashCode(routingKey.apply(item)), workers)).add(item);
+        }
+
+        for (int worker = 0; worker < workers; worker++) {
+            if (!routed.get(worker).isEmpty()) {
+                transport.send(worker, new ChunkRequest<>(sequence++, routed.get(worker)));
+                outstanding++;
+            }
+        }
+
+        ChunkResponse response;
+        while ((response = transport.receive(0, TimeUnit.MILLISECONDS)) != null) {     //이미 도착한 응답 반영
+            apply(response);
+        }
+        while (outstanding > throttleLimit) {
+            apply(awaitResponse());
+        }
+    }
+
+    private ChunkResponse awaitResponse() throws InterruptedException, IOException {
+        ChunkResponse response = transport.receive(responseTimeoutMillis, TimeUnit.MILLISECONDS);
+        if (response == null) {
+            throw new IllegalStateException(responseTimeoutMillis + "ms 동안 worker 응답이 없습니다. (남은 요청 " + outstanding + "개)");
+        }
+        return response;
+    }
+
+    private void apply(ChunkResponse response) {
+        if (!response.isSuccessful()) {
+            throw new IllegalStateException("worker에서 chunk " + response.getSequence() + " 처리 실패 : " + response.getMessage());
+        }
+        outstanding--;
+        filterCount += response.getFilterCount();
+        writeCount += response.getWriteCount();
+    }
+
+    @Override
+    public void beforeStep(StepExecution stepExecution) {
+        sequence = 0;
+        outstanding = 0;
+        filterCount = 0;
+        writeCount = 0;
+    }
+
+    @Override
+    public ExitStatus afterStep(StepExecution stepExecution) {
+        if (stepExecution.getStatus() != BatchStatus.COMPLETED) {
+            return null;
+        }
+        try {
+            while (outstanding > 0) {
+                apply(awaitResponse());
+            }
+        } catch (Exception e) {
+            log.error("worker 응답 대기 중 실패", e);
+            stepExecution.setStatus(BatchStatus.FAILED);
+            return ExitStatus.FAILED.addExitDescription(e);
+        } finally {
+            //manager step은 보낸 아이템 수를 write count로 세므로 worker가 실제로 처리한 결과로 바꿈
+            stepExecution.setFilterCount(stepExecution.getFilterCount() + filterCount);
+            stepExecution.setWriteCount(writeCount);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws ItemStreamException {
+        try {
+            transport.close();
+        } catch (IOException e) {
+            throw new ItemStreamException("chunk transport close 실패", e);
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+package fastcampus.spring.batch.remote;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SocketChunkWorker들에 TCP로 연결해서 chunk를 주고받는 transport. worker 하나당 연결 하나를 사용한다.
+ * 연결이 끊기면 sequence -1인 실패 응답을 넣어서 manager가 멈추지 않고 실패하도록 한다.
+ * loopback(handlers)는 같은 JVM의 127.0.0.1에 worker를 띄우고 연결한다. (브로커 없이 직렬화/네트워크 경로까지 확인할 때 사용)
+ */
+@Slf4j
+public class SocketChunkTransport<T> implements ChunkTransport<T> {
+
+    private final List<Connection> connections = new ArrayList<>();
+    private final BlockingQueue<ChunkResponse> responses = new LinkedBlockingQueue<>();
+    private final List<Closeable> ownedWorkers = new ArrayList<>();
+    private volatile boolean closed;
+
+    public SocketChunkTransport(List<InetSocketAddress> workers) throws IOException {
+        try {
+            for (InetSocketAddress worker : workers) {
+                connections.add(new Connection(worker));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public static <T> SocketChunkTransport<T> loopback(List<? extends ChunkHandler<T>> handlers) throws IOException {
+        List<SocketChunkWorker<T>> workers = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        try {
+            for (ChunkHandler<T> handler : handlers) {
+                SocketChunkWorker<T> worker = new SocketChunkWorker<>(handler, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                workers.add(worker);
+                addresses.add(worker.getAddress());
+            }
+            SocketChunkTransport<T> transport = new SocketChunkTransport<>(addresses);
+            transport.ownedWorkers.addAll(workers);     //transport를 닫을 때 worker도 같이 종료
+            return transport;
+        } catch (IOException e) {
+            for (SocketChunkWorker<T> worker : workers) {
+                worker.close();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public int getWorkerCount() {
+        return connections.size();
+    }
+
+    @Override
+    public void send(int worker, ChunkRequest<T> request) throws IOException {
+        connections.get(worker).send(request);
+    }
+
+    @Override
+    public ChunkResponse receive(long timeout, TimeUnit unit) throws InterruptedException {
+        return responses.poll(timeout, unit);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (Connection connection : connections) {
+            connection.socket.close();
+        }
+        for (Closeable worker : ownedWorkers) {
+            worker.close();
+        }
+    }
+
+    private class Connection {
+
+        private final Socket socket;
+        private final ObjectOutputStream out;
+
+        private Connection(InetSocketAddress address) throws IOException {
+            socket = new Socket(address.getAddress(), address.getPort());
+            socket.setTcpNoDelay(true);
+            out = new ObjectOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.flush();
+
+            Thread reader = new Thread(this::readResponses, "chunk-manager-" + address.getPort());
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private synchronized void send(ChunkRequest<T> request) throws IOException {
+            out.writeObject(request);
+            out.reset();
+            out.flush();
+        }
+
+        private void readResponses() {
+            try {
+                ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(socket.getInputStream()));
+                in.setObjectInputFilter(ObjectInputFilter.Config.createFilter(ChunkResponse.class.getName() + ";java.lang.*;!*"));
+                while (true) {
+                    responses.put((ChunkResponse) in.readObject());
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                if (!closed) {
+                    log.warn("chunk worker 연결이 끊겼습니다 : {}", socket.getRemoteSocketAddress(), e);
+                    responses.add(ChunkResponse.failure(-1, "worker 연결 끊김 : " + socket.getRemoteSocketAddress() + " (" + e + ")"));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+package fastcampus.spring.batch.remote;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * TCP로 chunk 요청을 받아 handler로 처리하고 응답을 돌려주는 worker.
+ * 연결 하나마다 스레드 하나가 요청을 받은 순서대로 처리한다. 메시지는 Java 직렬화를 사용하고, allowedClasses 패턴에 맞는 클래스만 역직렬화한다.
+ * 다른 JVM에서 worker만 띄울 수도 있지만, 인증/암호화가 없으므로 loopback이나 내부망에서만 사용한다.
+ */
+@Slf4j
+public class SocketChunkWorker<T> implements Closeable {
+
+    static final String DEFAULT_ALLOWED_CLASSES = "fastcampus.spring.batch.**;java.lang.*;java.util.*";
+
+    private final ChunkHandler<T> handler;
+    private final ServerSocket serverSocket;
+    private final ObjectInputFilter inputFilter;
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+
+    public SocketChunkWorker(ChunkHandler<T> handler, InetSocketAddress bindAddress) throws IOException {
+        this(handler, bindAddress, DEFAULT_ALLOWED_CLASSES);
+    }
+
+    /**
+     * @param allowedClasses ObjectInputFilter 패턴 (예 : "com.example.**;java.util.*"). 그 밖의 클래스는 거부한다
+     */
+    public SocketChunkWorker(ChunkHandler<T> handler, InetSocketAddress bindAddress, String allowedClasses) throws IOException {
+        this.handler = handler;
+        this.inputFilter = ObjectInputFilter.Config.createFilter(allowedClasses + ";!*");
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(bindAddress);
+
+        Thread acceptor = new Thread(this::accept, "chunk-worker-accept-" + getAddress().getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                Thread connection = new Thread(() -> serve(socket), "chunk-worker-" + getAddress().getPort() + "-" + socket.getPort());
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("chunk worker 연결 수락 실패", e);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(s.getOutputStream()));    //상대가 ObjectInputStream을 만들 수 있도록 header를 먼저 보냄
+            out.flush();
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(s.getInputStream()));
+            in.setObjectInputFilter(inputFilter);
+
+            while (true) {
+                ChunkRequest<T> request = (ChunkRequest<T>) in.readObject();
+                out.writeObject(InJvmChunkTransport.handle(handler, request));
+                out.reset();    //보낸 객체를 스트림이 계속 참조하지 않도록
+                out.flush();
+            }
+        } catch (EOFException | SocketException e) {   //manager가 연결을 닫음
+            log.debug("chunk worker 연결 종료 : {}", socket.getRemoteSocketAddress());
+        } catch (IOException | ClassNotFoundException e) {
+            log.warn("chunk worker 요청 처리 실패", e);
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket connection : connections) {
+            connection.close();
+        }
+    }
+
+}
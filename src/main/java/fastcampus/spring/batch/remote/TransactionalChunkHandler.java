@@ -0,0 +1,76 @@
+package fastcampus.spring.batch.remote;
+
+import org.springframework.batch.core.ChunkListener;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * worker에서 chunk 하나를 트랜잭션 하나로 process + write 하는 handler.
+ * processor가 null을 돌려준 아이템은 filter count로 센다. 실패하면 트랜잭션을 롤백하고 실패 응답을 돌려준다.
+ * processor가 ChunkListener면 step의 chunk처럼 커밋/롤백을 알려준다. (DuplicateValidationProcessor가 커밋된 키만 반영하도록)
+ */
+public class TransactionalChunkHandler<I, O> implements ChunkHandler<I> {
+
+    private final ItemProcessor<I, O> itemProcessor;
+    private final ItemWriter<O> itemWriter;
+    private final PlatformTransactionManager transactionManager;
+
+    public TransactionalChunkHandler(ItemProcessor<I, O> itemProcessor, ItemWriter<O> itemWriter, PlatformTransactionManager transactionManager) {
+        this.itemProcessor = itemProcessor;
+        this.itemWriter = itemWriter;
+        this.transactionManager = transactionManager;
+    }
+
+    @Override
+    public ChunkResponse handle(ChunkRequest<I> request) {
+        ChunkListener chunkListener = itemProcessor instanceof ChunkListener ? (ChunkListener) itemProcessor : null;
+        if (chunkListener != null) {
+            chunkListener.beforeChunk(null);
+        }
+        TransactionStatus transaction = transactionManager.getTransaction(new DefaultTransactionDefinition());
+        ChunkResponse response;
+        try {
+            response = process(request);
+        } catch (Exception e) {
+            transactionManager.rollback(transaction);
+            if (chunkListener != null) {
+                chunkListener.afterChunkError(null);
+            }
+            return ChunkResponse.failure(request.getSequence(), e.toString());
+        }
+
+        try {
+            transactionManager.commit(transaction);
+        } catch (RuntimeException e) {
+            if (chunkListener != null) {
+                chunkListener.afterChunkError(null);
+            }
+            return ChunkResponse.failure(request.getSequence(), e.toString());
+        }
+        if (chunkListener != null) {
+            chunkListener.afterChunk(null);
+        }
+        return response;
+    }
+
+    private ChunkResponse process(ChunkRequest<I> request) throws Exception {
+        List<O> outputs = new ArrayList<>(request.getItems().size());
+        for (I item : request.getItems()) {
+            O output = itemProcessor.process(item);
+            if (output != null) {
+                outputs.add(output);
+            }
+        }
+        if (!outputs.isEmpty()) {
+            itemWriter.write(outputs);
+        }
+        return ChunkResponse.success(request.getSequence(), request.getItems().size() - outputs.size(), outputs.size());
+    }
+
+}
@@ -0,0 +1,215 @@
+package fastcampus.spring.batch.repository;
+
+import org.springframework.batch.core.repository.ExecutionContextSerializer;
+import org.springframework.batch.core.repository.dao.Jackson2ExecutionContextStringSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * ExecutionContext를 JSON 대신 타입 태그가 붙은 바이너리로 저장하는 serializer.
+ * 형식 : [0x00][0x42 'B'][version][flags] + 본문(flags의 COMPRESSED 비트가 있으면 deflate)
+ * 본문 : [항목 수 int] + 항목마다 [키 UTF][타입 태그 byte][값]
+ * String/Integer/Long/Double/Float/Boolean/Date는 직접 쓰고, 그 밖의 타입은 Jackson JSON으로 직렬화해서 JSON 태그로 넣는다.
+ *
+ * JSON은 항상 '{'로 시작하므로 첫 바이트가 0x00이 아니면 기존 Jackson serializer로 읽는다. 이미 저장된 JSON 컨텍스트도 그대로 읽을 수 있고, 다음에 저장할 때 바이너리로 바뀐다.
+ * JdbcExecutionContextDao는 바이트를 ISO-8859-1 문자열로 바꿔 저장하므로 H2, MySQL에서는 그대로 동작한다. 문자열 컬럼에 0x00을 넣을 수 없는 DB(PostgreSQL 등)에서는 사용하면 안 된다.
+ */
+public class BinaryExecutionContextSerializer implements ExecutionContextSerializer {
+
+    private static final int MARKER = 0x00;
+    private static final int FORMAT = 'B';
+    private static final int VERSION = 1;
+    private static final int COMPRESSED = 0x01;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte DATE = 7;
+    private static final byte JSON = 8;
+
+    private final Jackson2ExecutionContextStringSerializer jsonSerializer;
+    private final int compressionThreshold;
+
+    public BinaryExecutionContextSerializer() {
+        this(new Jackson2ExecutionContextStringSerializer(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param compressionThreshold 본문이 이 크기(바이트) 이상이면 deflate로 압축한다. Integer.MAX_VALUE면 압축하지 않음
+     */
+    public BinaryExecutionContextSerializer(Jackson2ExecutionContextStringSerializer jsonSerializer, int compressionThreshold) {
+        this.jsonSerializer = jsonSerializer;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public void serialize(Map<String, Object> context, OutputStream outputStream) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64 + context.size() * 32);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeInt(context.size());
+        for (Map.Entry<String, Object> entry : context.entrySet()) {
+            out.writeUTF(entry.getKey());
+            writeValue(out, entry.getKey(), entry.getValue());
+        }
+        out.flush();
+
+        byte[] bytes = body.toByteArray();
+        int flags = 0;
+        if (bytes.length >= compressionThreshold) {
+            byte[] compressed = deflate(bytes);
+            if (compressed.length < bytes.length) {     //압축해도 작아지지 않으면 그대로 저장
+                bytes = compressed;
+                flags |= COMPRESSED;
+            }
+        }
+
+        outputStream.write(MARKER);
+        outputStream.write(FORMAT);
+        outputStream.write(VERSION);
+        outputStream.write(flags);
+        outputStream.write(bytes);
+        outputStream.flush();
+    }
+
+    @Override
+    public Map<String, Object> deserialize(InputStream inputStream) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(inputStream, 1);
+        int first = pushback.read();
+        if (first != MARKER) {      //기존에 저장된 JSON 컨텍스트
+            if (first >= 0) {
+                pushback.unread(first);
+            }
+            return jsonSerializer.deserialize(pushback);
+        }
+
+        if (pushback.read() != FORMAT) {
+            throw new IOException("바이너리 ExecutionContext 형식이 아닙니다");
+        }
+        int version = pushback.read();
+        if (version != VERSION) {
+            throw new IOException("지원하지 않는 ExecutionContext 버전입니다 : " + version);
+        }
+        int flags = pushback.read();
+        InputStream body = (flags & COMPRESSED) != 0 ? new ByteArrayInputStream(inflate(pushback)) : pushback;
+
+        DataInputStream in = new DataInputStream(body);
+        int size = in.readInt();
+        Map<String, Object> context = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String key = in.readUTF();
+            context.put(key, readValue(in, key));
+        }
+        return context;
+    }
+
+    private void writeValue(DataOutputStream out, String key, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));     //writeUTF는 64KB까지만 쓸 수 있음
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value.getClass() == Date.class) {    //Timestamp 등 하위 타입은 타입을 유지하도록 JSON으로
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else {
+            Map<String, Object> entry = new HashMap<>(2);     //Jackson serializer는 HashMap으로만 읽을 수 있음
+            entry.put(key, value);
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            jsonSerializer.serialize(entry, json);
+            out.writeByte(JSON);
+            writeBytes(out, json.toByteArray());
+        }
+    }
+
+    private Object readValue(DataInputStream in, String key) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return new String(readBytes(in), StandardCharsets.UTF_8);
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case BOOLEAN:
+                return in.readBoolean();
+            case DATE:
+                return new Date(in.readLong());
+            case JSON:
+                return jsonSerializer.deserialize(new ByteArrayInputStream(readBytes(in))).get(key);
+            default:
+                throw new IOException("알 수 없는 타입 태그입니다 : " + tag + " (key " + key + ")");
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static byte[] deflate(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);     //chunk 커밋마다 호출되므로 압축률보다 속도
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+            out.write(bytes);
+        } finally {
+            deflater.end();
+        }
+        return compressed.toByteArray();
+    }
+
+    private static byte[] inflate(InputStream compressed) throws IOException {
+        Inflater inflater = new Inflater();
+        try (InflaterInputStream in = new InflaterInputStream(compressed, inflater, 4096)) {
+            return in.readAllBytes();
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
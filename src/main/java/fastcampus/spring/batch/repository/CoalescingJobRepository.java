@@ -0,0 +1,154 @@
+package fastcampus.spring.batch.repository;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.JobRestartException;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 실행 중인(STARTED) step의 StepExecution / step ExecutionContext 저장을 모았다가 flushChunks번 또는 flushIntervalMillis마다 한 번만 delegate에 저장하는 JobRepository.
+ * chunk 커밋마다 BATCH_STEP_EXECUTION, BATCH_STEP_EXECUTION_CONTEXT를 update 하던 것을 N chunk에 한 번으로 줄인다.
+ * step이 시작될 때와 끝날 때(COMPLETED, FAILED, STOPPED 등)는 항상 바로 저장한다.
+ *
+ * 재시작 : step이 예외로 실패하면 Spring Batch가 마지막으로 커밋된 chunk 기준의 ExecutionContext를 FAILED 상태와 함께 저장하므로 재시작 위치는 기존과 같다.
+ * 다만 프로세스가 강제 종료되면(kill -9, OOM 등) 마지막 flush 이후 커밋된 최대 flushChunks-1개 chunk는 재시작할 때 다시 처리되므로, writer가 멱등(upsert 등)이거나 중복을 허용할 때만 사용해야 한다.
+ * 중지 요청(JobOperator.stop)도 StepExecution을 저장할 때 확인하므로 최대 flush 주기만큼 늦게 반영된다.
+ */
+public class CoalescingJobRepository implements JobRepository {
+
+    private final JobRepository delegate;
+    private final int flushChunks;
+    private final long flushIntervalNanos;
+
+    private final Map<Long, PendingUpdate> pendingUpdates = new ConcurrentHashMap<>();     //step execution id별 미뤄둔 저장
+
+    public CoalescingJobRepository(JobRepository delegate, int flushChunks, long flushIntervalMillis) {
+        if (flushChunks < 1) {
+            throw new IllegalArgumentException("flushChunks는 1 이상이어야 합니다 : " + flushChunks);
+        }
+        this.delegate = delegate;
+        this.flushChunks = flushChunks;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    }
+
+    @Override
+    public void update(StepExecution stepExecution) {
+        if (!isRunning(stepExecution)) {    //step 종료 : 미뤄둔 저장을 버리고 최종 상태를 바로 저장
+            pendingUpdates.remove(stepExecution.getId());
+            delegate.update(stepExecution);
+            return;
+        }
+
+        PendingUpdate pending = pendingUpdates.get(stepExecution.getId());
+        if (pending == null) {  //step 시작 : STARTED 상태는 바로 저장
+            pendingUpdates.put(stepExecution.getId(), new PendingUpdate());
+            delegate.update(stepExecution);
+            return;
+        }
+
+        pending.chunks++;
+        if (pending.chunks >= flushChunks || System.nanoTime() - pending.lastFlushNanos >= flushIntervalNanos) {
+            flush(stepExecution, pending);
+        }
+    }
+
+    @Override
+    public void updateExecutionContext(StepExecution stepExecution) {
+        PendingUpdate pending = isRunning(stepExecution) ? pendingUpdates.get(stepExecution.getId()) : null;
+        if (pending == null) {
+            delegate.updateExecutionContext(stepExecution);
+            return;
+        }
+        pending.contextDirty = true;   //TaskletStep은 ExecutionContext를 저장한 다음 StepExecution을 저장하므로 update에서 같이 저장됨
+    }
+
+    //chunk 트랜잭션 안에서 호출되므로 ExecutionContext와 chunk 데이터가 같이 커밋됨
+    private void flush(StepExecution stepExecution, PendingUpdate pending) {
+        if (pending.contextDirty) {
+            delegate.updateExecutionContext(stepExecution);
+        }
+        delegate.update(stepExecution);
+        pending.chunks = 0;
+        pending.contextDirty = false;
+        pending.lastFlushNanos = System.nanoTime();
+    }
+
+    private boolean isRunning(StepExecution stepExecution) {
+        return stepExecution.getId() != null && stepExecution.getStatus() == BatchStatus.STARTED;
+    }
+
+    @Override
+    public boolean isJobInstanceExists(String jobName, JobParameters jobParameters) {
+        return delegate.isJobInstanceExists(jobName, jobParameters);
+    }
+
+    @Override
+    public JobInstance createJobInstance(String jobName, JobParameters jobParameters) {
+        return delegate.createJobInstance(jobName, jobParameters);
+    }
+
+    @Override
+    public JobExecution createJobExecution(JobInstance jobInstance, JobParameters jobParameters, String jobConfigurationLocation) {
+        return delegate.createJobExecution(jobInstance, jobParameters, jobConfigurationLocation);
+    }
+
+    @Override
+    public JobExecution createJobExecution(String jobName, JobParameters jobParameters)
+            throws JobExecutionAlreadyRunningException, JobRestartException, JobInstanceAlreadyCompleteException {
+        return delegate.createJobExecution(jobName, jobParameters);
+    }
+
+    @Override
+    public void update(JobExecution jobExecution) {
+        delegate.update(jobExecution);
+    }
+
+    @Override
+    public void add(StepExecution stepExecution) {
+        delegate.add(stepExecution);
+    }
+
+    @Override
+    public void addAll(Collection<StepExecution> stepExecutions) {
+        delegate.addAll(stepExecutions);
+    }
+
+    @Override
+    public void updateExecutionContext(JobExecution jobExecution) {
+        delegate.updateExecutionContext(jobExecution);
+    }
+
+    @Override
+    public StepExecution getLastStepExecution(JobInstance jobInstance, String stepName) {
+        return delegate.getLastStepExecution(jobInstance, stepName);
+    }
+
+    @Override
+    public int getStepExecutionCount(JobInstance jobInstance, String stepName) {
+        return delegate.getStepExecutionCount(jobInstance, stepName);
+    }
+
+    @Override
+    public JobExecution getLastJobExecution(String jobName, JobParameters jobParameters) {
+        return delegate.getLastJobExecution(jobName, jobParameters);
+    }
+
+    private static class PendingUpdate {
+
+        private int chunks;
+        private boolean contextDirty;
+        private long lastFlushNanos = System.nanoTime();
+
+    }
+
+}
@@ -0,0 +1,185 @@
+package fastcampus.spring.batch.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.configuration.annotation.BatchConfigurer;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.explore.support.JobExplorerFactoryBean;
+import org.springframework.batch.core.repository.ExecutionContextSerializer;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.dao.Jackson2ExecutionContextStringSerializer;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.batch.BatchProperties;
+import org.springframework.boot.autoconfigure.batch.JpaBatchConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.util.StringUtils;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+/**
+ * batch.job-repository.mode로 JobRepository 저장 방식을 고른다. 설정하지 않으면 Spring Boot 기본 설정(JpaBatchConfigurer)을 그대로 사용한다.
+ * default : 기본 JDBC JobRepository
+ * coalescing : 실행 중인 step의 메타데이터 저장을 batch.job-repository.flush-chunks(기본 10) chunk 또는 flush-interval-ms(기본 1000ms)마다 한 번으로 줄임 (CoalescingJobRepository 참고)
+ * in-memory : 메타데이터를 업무 DB가 아니라 프로세스 안의 임베디드 H2에 저장하는 JDBC JobRepository/JobExplorer. 프로세스가 끝나면 실행 이력이 사라지므로 로컬 실행에서만 사용
+ *             (deprecated된 Map 기반 JobRepository 대신 Spring Batch가 권장하는 임베디드 DB 방식)
+ *
+ * batch.execution-context.serializer로 ExecutionContext 저장 형식을 고른다.
+ * json : 기본 Jackson JSON
+ * binary : BinaryExecutionContextSerializer. 기존 JSON 컨텍스트도 읽을 수 있으므로 운영 중에 바로 바꿀 수 있다.
+ *          본문이 batch.execution-context.compression-threshold(기본 1024) 바이트 이상이면 deflate로 압축
+ */
+@Configuration
+@Slf4j
+@ConditionalOnExpression("'${batch.job-repository.mode:}' != '' or '${batch.execution-context.serializer:}' != ''")
+public class JobRepositoryConfiguration {
+
+    @Bean
+    public BatchConfigurer batchConfigurer(BatchProperties properties,
+                                           DataSource dataSource,
+                                           EntityManagerFactory entityManagerFactory,
+                                           ObjectProvider<TransactionManagerCustomizers> transactionManagerCustomizers,
+                                           @Value("${batch.job-repository.mode:default}") String mode,
+                                           @Value("${batch.job-repository.flush-chunks:10}") int flushChunks,
+                                           @Value("${batch.job-repository.flush-interval-ms:1000}") long flushIntervalMillis,
+                                           @Value("${batch.execution-context.serializer:json}") String serializer,
+                                           @Value("${batch.execution-context.compression-threshold:1024}") int compressionThreshold) {
+        JobRepositoryModeBatchConfigurer batchConfigurer = new JobRepositoryModeBatchConfigurer(properties, dataSource, transactionManagerCustomizers.getIfAvailable(),
+                entityManagerFactory, mode, flushChunks, flushIntervalMillis);
+        batchConfigurer.setSerializer(executionContextSerializer(serializer, compressionThreshold));
+        return batchConfigurer;
+    }
+
+    private ExecutionContextSerializer executionContextSerializer(String serializer, int compressionThreshold) {
+        switch (serializer) {
+            case "json":
+                return null;    //Spring Batch 기본값 사용
+            case "binary":
+                log.info("ExecutionContext를 바이너리로 저장합니다. {} 바이트 이상이면 압축합니다", compressionThreshold);
+                return new BinaryExecutionContextSerializer(new Jackson2ExecutionContextStringSerializer(), compressionThreshold);
+            default:
+                throw new IllegalArgumentException("지원하지 않는 batch.execution-context.serializer : " + serializer);
+        }
+    }
+
+    static class JobRepositoryModeBatchConfigurer extends JpaBatchConfigurer implements DisposableBean {
+
+        private final BatchProperties properties;
+        private final DataSource dataSource;
+        private final String mode;
+        private final int flushChunks;
+        private final long flushIntervalMillis;
+        private ExecutionContextSerializer serializer;
+        private EmbeddedDatabase metadataDatabase;     //in-memory 모드의 메타데이터 저장소
+
+        JobRepositoryModeBatchConfigurer(BatchProperties properties, DataSource dataSource, TransactionManagerCustomizers transactionManagerCustomizers,
+                                         EntityManagerFactory entityManagerFactory, String mode, int flushChunks, long flushIntervalMillis) {
+            super(properties, dataSource, transactionManagerCustomizers, entityManagerFactory);
+            this.properties = properties;
+            this.dataSource = dataSource;
+            this.mode = mode;
+            this.flushChunks = flushChunks;
+            this.flushIntervalMillis = flushIntervalMillis;
+        }
+
+        void setSerializer(ExecutionContextSerializer serializer) {
+            this.serializer = serializer;
+        }
+
+        @Override
+        protected JobRepository createJobRepository() throws Exception {
+            switch (mode) {
+                case "default":
+                    return createJdbcJobRepository();
+                case "coalescing":
+                    log.info("step 메타데이터를 {} chunk / {}ms마다 저장합니다", flushChunks, flushIntervalMillis);
+                    return new CoalescingJobRepository(createJdbcJobRepository(), flushChunks, flushIntervalMillis);
+                case "in-memory":
+                    log.info("job 메타데이터를 메모리에만 저장합니다. 재시작 정보는 프로세스가 끝나면 사라집니다");
+                    return createInMemoryJobRepository();
+                default:
+                    throw new IllegalArgumentException("지원하지 않는 batch.job-repository.mode : " + mode);
+            }
+        }
+
+        //BasicBatchConfigurer.createJobRepository와 같은 설정에 serializer만 추가
+        private JobRepository createJdbcJobRepository() throws Exception {
+            if (serializer == null) {
+                return super.createJobRepository();
+            }
+            JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+            factory.setDataSource(dataSource);
+            String isolationLevel = determineIsolationLevel();
+            if (isolationLevel != null) {
+                factory.setIsolationLevelForCreate(isolationLevel);
+            }
+            if (StringUtils.hasText(properties.getTablePrefix())) {
+                factory.setTablePrefix(properties.getTablePrefix());
+            }
+            factory.setTransactionManager(getTransactionManager());
+            factory.setSerializer(serializer);
+            factory.afterPropertiesSet();
+            return factory.getObject();
+        }
+
+        //임베디드 H2에 Spring Batch 스키마를 만들고 JDBC JobRepository로 저장
+        private JobRepository createInMemoryJobRepository() throws Exception {
+            metadataDatabase = new EmbeddedDatabaseBuilder()
+                    .setType(EmbeddedDatabaseType.H2)
+                    .generateUniqueName(true)
+                    .addScript("/org/springframework/batch/core/schema-h2.sql")
+                    .build();
+            JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+            factory.setDataSource(metadataDatabase);
+            factory.setTransactionManager(new DataSourceTransactionManager(metadataDatabase));   //메타데이터는 chunk(JPA) 트랜잭션과 별도로 커밋 (Map 기반과 같음)
+            if (serializer != null) {
+                factory.setSerializer(serializer);
+            }
+            factory.afterPropertiesSet();
+            return factory.getObject();
+        }
+
+        @Override
+        protected JobExplorer createJobExplorer() throws Exception {
+            if (metadataDatabase != null) {
+                return createJdbcJobExplorer(metadataDatabase, null);   //JobRepository와 같은 임베디드 DB를 조회
+            }
+            if (serializer == null) {
+                return super.createJobExplorer();
+            }
+            return createJdbcJobExplorer(dataSource, properties.getTablePrefix());
+        }
+
+        //JobRepository와 같은 형식으로 ExecutionContext를 읽음
+        private JobExplorer createJdbcJobExplorer(DataSource dataSource, String tablePrefix) throws Exception {
+            JobExplorerFactoryBean jobExplorerFactory = new JobExplorerFactoryBean();
+            jobExplorerFactory.setDataSource(dataSource);
+            if (StringUtils.hasText(tablePrefix)) {
+                jobExplorerFactory.setTablePrefix(tablePrefix);
+            }
+            if (serializer != null) {
+                jobExplorerFactory.setSerializer(serializer);
+            }
+            jobExplorerFactory.afterPropertiesSet();
+            return jobExplorerFactory.getObject();
+        }
+
+        @Override
+        public void destroy() {
+            if (metadataDatabase != null) {
+                metadataDatabase.shutdown();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,164 @@
+package fastcampus.spring.batch.step;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.metrics.BatchMetrics;
+import org.springframework.batch.core.step.item.Chunk;
+import org.springframework.batch.core.step.item.SimpleChunkProcessor;
+import org.springframework.batch.core.step.skip.SkipPolicy;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * write가 실패하면 chunk를 반으로 나눠서 다시 쓰는 ChunkProcessor.
+ * FaultTolerantChunkProcessor는 write가 실패하면 chunk 전체를 롤백하고 item 하나씩 트랜잭션을 따로 열어 다시 처리(scan)하지만,
+ * 이 processor는 chunk 트랜잭션 안에서 savepoint를 걸고 나눈 절반씩 다시 써서 실패한 item k개를 O(k log n)번의 write로 찾는다.
+ * HibernateJpaDialect는 NESTED 트랜잭션(savepoint)을 지원하지 않으므로 chunk 트랜잭션에 묶인 JDBC 커넥션(ConnectionHolder)에 직접 savepoint를 건다.
+ * JpaTransactionManager, DataSourceTransactionManager 모두 dataSource의 커넥션을 묶어 두므로 writer도 그 커넥션을 사용해야 한다.
+ *
+ * 한 item만 남았는데도 실패하면 SkipPolicy로 skip 여부를 정하고, skip하면 write skip count를 올린 뒤 chunk가 끝날 때 SkipListener.onSkipInWrite를 호출한다.
+ * skip할 수 없는 예외면 나누지 않고 그대로 던져서 chunk 전체를 롤백한다.
+ * 나눈 write마다 RetryTemplate으로 재시도하므로 일시적인 오류는 나누기 전에 재시도한다.
+ * ItemWriteListener는 나눈 write마다가 아니라 chunk 단위로 호출한다. beforeWrite는 한 번, afterWrite는 실제로 저장된 item으로 한 번,
+ * onWriteError는 skip한 item마다(그 item만 담아서) 또는 chunk 전체가 실패했을 때 한 번 호출되므로 나중에 성공한 절반에 대한 오류는 알리지 않는다.
+ * SimpleChunkProcessor처럼 spring.batch.chunk.write 타이머도 chunk 단위로 기록한다.
+ *
+ * 실패한 write를 savepoint까지 롤백해도 writer가 메모리에 남긴 상태는 되돌릴 수 없으므로, JpaItemWriter처럼 영속성 컨텍스트에 엔티티가 남는 writer에는 사용하면 안 된다.
+ */
+@Slf4j
+public class BisectingChunkProcessor<I, O> extends SimpleChunkProcessor<I, O> {
+
+    private final DataSource dataSource;
+    private final SkipPolicy skipPolicy;
+    private final RetryTemplate retryTemplate;
+    private final List<SkipListener<? super I, ? super O>> skipListeners = new ArrayList<>();
+
+    public BisectingChunkProcessor(ItemProcessor<? super I, ? extends O> itemProcessor, ItemWriter<? super O> itemWriter,
+                                   DataSource dataSource, SkipPolicy skipPolicy, RetryTemplate retryTemplate) {
+        super(itemProcessor, itemWriter);
+        this.dataSource = dataSource;
+        this.skipPolicy = skipPolicy;
+        this.retryTemplate = retryTemplate;
+    }
+
+    public void setSkipListeners(List<SkipListener<? super I, ? super O>> skipListeners) {
+        this.skipListeners.clear();
+        this.skipListeners.addAll(skipListeners);
+    }
+
+    @Override
+    protected void write(StepContribution contribution, Chunk<I> inputs, Chunk<O> outputs) throws Exception {
+        List<O> items = outputs.getItems();
+        if (items.isEmpty()) {
+            super.write(contribution, inputs, outputs);
+            return;
+        }
+        Timer.Sample sample = BatchMetrics.createTimerSample();
+        String status = BatchMetrics.STATUS_SUCCESS;
+        Bisection<O> bisection = new Bisection<>();
+        try {
+            getListener().beforeWrite(items);
+            writeOrBisect(contribution, items, bisection);
+        } catch (Exception e) {
+            inputs.clear();     //SimpleChunkProcessor와 같이 실패한 chunk는 다시 처리하지 않음
+            status = BatchMetrics.STATUS_FAILURE;
+            doOnWriteError(e, items);   //chunk 전체가 롤백되므로 저장된 item이 없음
+            throw e;
+        } finally {
+            stopTimer(sample, contribution.getStepExecution(), "chunk.write", status, "Chunk writing");
+        }
+
+        Set<O> skipped = Collections.newSetFromMap(new IdentityHashMap<>());     //중복 허용이면 equals가 같은 item이 여럿일 수 있음
+        skipped.addAll(bisection.skipped);
+        List<O> written = new ArrayList<>(items.size());
+        for (O item : items) {
+            if (!skipped.contains(item)) {
+                written.add(item);
+            }
+        }
+        if (!written.isEmpty()) {
+            doAfterWrite(written);
+        }
+        contribution.incrementWriteCount(written.size());
+        if (bisection.writes > 1) {
+            log.info("chunk {}건을 {}번 나눠 써서 {}건을 skip 했습니다", items.size(), bisection.writes, bisection.skipped.size());
+        }
+        for (int i = 0; i < bisection.skipped.size(); i++) {    //skip이 확정된 뒤(chunk write가 끝난 뒤)에 알림
+            O item = bisection.skipped.get(i);
+            Exception error = bisection.errors.get(i);
+            doOnWriteError(error, Collections.singletonList(item));
+            for (SkipListener<? super I, ? super O> skipListener : skipListeners) {
+                skipListener.onSkipInWrite(item, error);
+            }
+        }
+    }
+
+    private void writeOrBisect(StepContribution contribution, List<O> items, Bisection<O> bisection) throws Exception {
+        try {
+            bisection.writes++;
+            writeWithSavepoint(items);
+            return;
+        } catch (Exception e) {
+            if (items.size() == 1) {
+                if (!skipPolicy.shouldSkip(e, contribution.getStepSkipCount())) {  //skip limit을 넘으면 SkipLimitExceededException
+                    throw e;
+                }
+                contribution.incrementWriteSkipCount();
+                bisection.skipped.add(items.get(0));
+                bisection.errors.add(e);
+                return;
+            }
+            if (!skipPolicy.shouldSkip(e, -1)) {    //skip할 수 없는 예외(DB 장애 등)면 나눠 봐야 소용없음
+                throw e;
+            }
+        }
+
+        int half = items.size() / 2;
+        writeOrBisect(contribution, items.subList(0, half), bisection);
+        writeOrBisect(contribution, items.subList(half, items.size()), bisection);
+    }
+
+    private void writeWithSavepoint(List<O> items) throws Exception {
+        ConnectionHolder connectionHolder = (ConnectionHolder) TransactionSynchronizationManager.getResource(dataSource);
+        if (connectionHolder == null) {
+            throw new IllegalStateException("chunk 트랜잭션에 묶인 커넥션이 없습니다. 트랜잭션 매니저가 같은 DataSource를 사용하는지 확인하세요.");
+        }
+        Connection connection = connectionHolder.getConnection();
+
+        retryTemplate.execute(context -> {
+            Savepoint savepoint = connectionHolder.createSavepoint();
+            try {
+                writeItems(items);     //ItemWriteListener는 chunk 단위로 write()에서 호출
+            } catch (Exception e) {
+                connection.rollback(savepoint);
+                connection.releaseSavepoint(savepoint);
+                throw e;
+            }
+            connection.releaseSavepoint(savepoint);     //실제 커밋은 chunk 트랜잭션이 끝날 때
+            return null;
+        });
+    }
+
+    private static class Bisection<O> {
+
+        private final List<O> skipped = new ArrayList<>();
+        private final List<Exception> errors = new ArrayList<>();
+        private int writes;
+
+    }
+
+}
@@ -0,0 +1,93 @@
+package fastcampus.spring.batch.step;
+
+import org.springframework.batch.core.SkipListener;
+import org.springframework.batch.core.StepListener;
+import org.springframework.batch.core.step.builder.SimpleStepBuilder;
+import org.springframework.batch.core.step.item.ChunkOrientedTasklet;
+import org.springframework.batch.core.step.item.SimpleChunkProvider;
+import org.springframework.batch.core.step.skip.NeverSkipItemSkipPolicy;
+import org.springframework.batch.core.step.skip.SkipPolicy;
+import org.springframework.batch.core.step.tasklet.Tasklet;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.RetryPolicy;
+import org.springframework.retry.policy.NeverRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * write가 실패한 chunk를 BisectingChunkProcessor로 나눠 쓰는 step을 만드는 builder. faultTolerant()처럼 chunk step 설정을 그대로 이어받는다.
+ * <pre>
+ * new BisectingStepBuilder&lt;&gt;(stepBuilderFactory.get("step").&lt;Person, Person&gt;chunk(10).reader(reader).writer(writer))
+ *         .dataSource(dataSource)     //writer가 사용하는 DataSource. 이 커넥션에 savepoint를 건다
+ *         .skipPolicy(new LimitCheckingItemSkipPolicy(10, skippable))
+ *         .skipListener(skipListener)
+ *         .build();
+ * </pre>
+ * read/process 실패는 skip하지 않으므로 그대로 step이 실패한다.
+ */
+public class BisectingStepBuilder<I, O> extends SimpleStepBuilder<I, O> {
+
+    private DataSource dataSource;
+    private SkipPolicy skipPolicy = new NeverSkipItemSkipPolicy();
+    private RetryPolicy retryPolicy = new NeverRetryPolicy();
+    private final List<SkipListener<? super I, ? super O>> skipListeners = new ArrayList<>();
+    private final List<RetryListener> retryListeners = new ArrayList<>();
+
+    public BisectingStepBuilder(SimpleStepBuilder<I, O> parent) {
+        super(parent);
+    }
+
+    public BisectingStepBuilder<I, O> dataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+        return this;
+    }
+
+    public BisectingStepBuilder<I, O> skipPolicy(SkipPolicy skipPolicy) {
+        this.skipPolicy = skipPolicy;
+        return this;
+    }
+
+    public BisectingStepBuilder<I, O> skipListener(SkipListener<? super I, ? super O> skipListener) {
+        this.skipListeners.add(skipListener);
+        return this;
+    }
+
+    /**
+     * 나눈 write마다 적용할 재시도 정책. 지정하지 않으면 재시도하지 않음
+     */
+    public BisectingStepBuilder<I, O> retryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    public BisectingStepBuilder<I, O> retryListener(RetryListener retryListener) {
+        this.retryListeners.add(retryListener);
+        return this;
+    }
+
+    //SimpleStepBuilder.createTasklet과 같고 SimpleChunkProcessor만 바꿈
+    @Override
+    protected Tasklet createTasklet() {
+        Assert.state(dataSource != null, "savepoint를 걸 DataSource가 필요합니다");
+        RetryTemplate retryTemplate = new RetryTemplate();
+        retryTemplate.setRetryPolicy(retryPolicy);
+        retryTemplate.setListeners(retryListeners.toArray(new RetryListener[0]));
+
+        SimpleChunkProvider<I> chunkProvider = new SimpleChunkProvider<>(getReader(), createChunkOperations());
+        BisectingChunkProcessor<I, O> chunkProcessor = new BisectingChunkProcessor<>(getProcessor(), getWriter(),
+                dataSource, skipPolicy, retryTemplate);
+        List<StepListener> itemListeners = new ArrayList<>(getItemListeners());
+        chunkProvider.setListeners(itemListeners);
+        chunkProcessor.setListeners(itemListeners);
+        chunkProcessor.setSkipListeners(skipListeners);
+
+        ChunkOrientedTasklet<I> tasklet = new ChunkOrientedTasklet<>(chunkProvider, chunkProcessor);
+        tasklet.setBuffering(!isReaderTransactionalQueue());
+        return tasklet;
+    }
+
+}
@@ -0,0 +1,33 @@
+package fastcampus.spring.batch.step;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamSupport;
+
+/**
+ * 읽은 위치를 저장하지 않아서 재시작하면 처음부터 다시 저장하게 되는 step에 stream으로 등록해서 재시작을 막는다.
+ * open()에서 ExecutionContext에 표시를 남기고, 재시작으로 이전 실행의 ExecutionContext가 넘어오면 예외를 던져 step을 실패시킨다.
+ * job parameter에 따라 일부 step 구성만 재시작할 수 없을 때 job 전체를 preventRestart() 하는 대신 사용한다.
+ */
+public class RestartGuardItemStream extends ItemStreamSupport {
+
+    private final String reason;
+
+    /**
+     * reason은 재시작할 수 없는 이유 (예외 메시지에 포함)
+     */
+    public RestartGuardItemStream(String reason) {
+        this.reason = reason;
+        setName("restartGuard");
+    }
+
+    @Override
+    public void open(ExecutionContext executionContext) throws ItemStreamException {
+        String key = getExecutionContextKey("started");
+        if (executionContext.containsKey(key)) {
+            throw new ItemStreamException("재시작할 수 없는 step입니다 (" + executionContext.getString(key) + "). 새 job parameter로 다시 실행하세요");
+        }
+        executionContext.putString(key, reason);    //실패해도 step 종료 시 ExecutionContext가 저장됨
+    }
+
+}
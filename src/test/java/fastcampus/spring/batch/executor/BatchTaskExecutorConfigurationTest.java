@@ -0,0 +1,66 @@
+package fastcampus.spring.batch.executor;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+class BatchTaskExecutorConfigurationTest {
+
+    private final BatchTaskExecutorConfiguration configuration = new BatchTaskExecutorConfiguration();
+
+    @Test
+    void virtual_thread를_지원하지_않으면_platform_thread로_실행한다() {
+        //given
+        assumeFalse(VirtualThreadTaskExecutor.isSupported());
+
+        //when
+        TaskExecutor taskExecutor = configuration.batchTaskExecutor(dataSource(3), true);
+
+        //then
+        assertThat(taskExecutor).isInstanceOf(SimpleAsyncTaskExecutor.class);
+        assertThat(((SimpleAsyncTaskExecutor) taskExecutor).getConcurrencyLimit()).isEqualTo(3);
+    }
+
+    @Test
+    void 동시에_실행되는_worker는_커넥션_풀_크기를_넘지_않는다() throws Exception {
+        //given : Java 버전에 따라 virtual thread 또는 platform thread
+        TaskExecutor taskExecutor = configuration.batchTaskExecutor(dataSource(3), true);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(20);
+
+        //when
+        for (int i = 0; i < 20; i++) {
+            taskExecutor.execute(() -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                active.decrementAndGet();
+                finished.countDown();
+            });
+        }
+
+        //then
+        assertThat(finished.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxActive.get()).isBetween(1, 3);
+    }
+
+    //커넥션은 만들지 않고 풀 크기만 지정
+    private HikariDataSource dataSource(int maximumPoolSize) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        return dataSource;
+    }
+
+}
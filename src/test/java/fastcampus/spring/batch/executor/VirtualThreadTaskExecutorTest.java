@@ -0,0 +1,70 @@
+package fastcampus.spring.batch.executor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VirtualThreadTaskExecutorTest {
+
+    @Test
+    void 동시에_실행되는_작업은_concurrencyLimit을_넘지_않는다() throws Exception {
+        //given : 제한 로직만 확인하므로 platform thread로 실행
+        VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor(Thread::new, 3);
+        AtomicInteger maxActive = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(20);
+
+        //when
+        for (int i = 0; i < 20; i++) {
+            executor.execute(() -> {
+                maxActive.accumulateAndGet(executor.getActiveCount(), Math::max);
+                sleep(20);
+                finished.countDown();
+            });
+            assertThat(executor.getActiveCount()).isLessThanOrEqualTo(3);
+        }
+
+        //then
+        assertThat(finished.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxActive.get()).isEqualTo(3);
+    }
+
+    @Test
+    void Java_21_이상에서만_virtual_thread를_지원한다() {
+        assertThat(VirtualThreadTaskExecutor.isSupported()).isEqualTo(Runtime.version().feature() >= 21);
+    }
+
+    @Test
+    void virtual_thread로_실행한다() throws Exception {
+        //given
+        assumeTrue(VirtualThreadTaskExecutor.isSupported());
+        VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor("batch-vt-", 2);
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        CountDownLatch finished = new CountDownLatch(1);
+
+        //when
+        executor.execute(() -> {
+            thread.set(Thread.currentThread());
+            finished.countDown();
+        });
+
+        //then
+        assertThat(finished.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(thread.get().getName()).startsWith("batch-vt-");
+        assertThat(Thread.class.getMethod("isVirtual").invoke(thread.get())).isEqualTo(true);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
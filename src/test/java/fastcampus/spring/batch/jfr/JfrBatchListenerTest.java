@@ -0,0 +1,170 @@
+package fastcampus.spring.batch.jfr;
+
+import fastcampus.spring.batch.part3.DuplicateValidationProcessor;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JfrBatchListenerTest {
+
+    private final EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("/org/springframework/batch/core/schema-h2.sql")
+            .build();
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        JfrSampler.setInterval(1);     //모든 item 기록
+    }
+
+    @AfterEach
+    void tearDown() {
+        JfrSampler.setInterval(JfrSampler.DEFAULT_INTERVAL);
+        dataSource.shutdown();
+    }
+
+    @Test
+    void chunk와_구간_item_이벤트가_기록된다() throws Exception {
+        //given
+        DuplicateValidationProcessor<Integer> processor = new DuplicateValidationProcessor<>(String::valueOf, false);
+        processor.setSaveState(false);
+
+        //when
+        List<RecordedEvent> events = record(Arrays.asList(1, 2, 2, 3, 1), processor, items -> { });
+
+        //then
+        List<RecordedEvent> chunks = events(events, "fastcampus.batch.Chunk");
+        assertThat(chunks).hasSize(3);     //2, 2, 1건
+        assertThat(chunks).allMatch(event -> "committed".equals(event.getString("outcome")));
+        assertThat(chunks).allMatch(event -> "jfrStep".equals(event.getString("step")));
+        assertThat(chunks.stream().mapToInt(event -> event.getInt("readCount")).sum()).isEqualTo(5);
+        assertThat(chunks.stream().mapToInt(event -> event.getInt("filterCount")).sum()).isEqualTo(2);
+        assertThat(chunks.stream().mapToInt(event -> event.getInt("writeCount")).sum()).isEqualTo(3);
+
+        assertThat(chunks).allMatch(event -> event.getString("failedPhase") == null);
+        assertThat(phaseTime(chunks, "readTime")).isPositive();
+        assertThat(phaseTime(chunks, "processTime")).isPositive();
+        assertThat(phaseTime(chunks, "writeTime")).isPositive();
+        assertThat(phaseTime(chunks, "commitTime")).isPositive();
+
+        List<RecordedEvent> items = events(events, "fastcampus.batch.Item");
+        assertThat(items.stream().filter(event -> "read".equals(event.getString("phase")))).hasSize(5);
+        assertThat(items.stream().filter(event -> event.getBoolean("filtered"))).hasSize(2);
+
+        List<RecordedEvent> decisions = events(events, "fastcampus.batch.DedupDecision");
+        assertThat(decisions).hasSize(5);
+        assertThat(decisions.stream().filter(event -> event.getBoolean("filtered"))).hasSize(2);
+        assertThat(decisions.get(0).getString("keyStore")).isEqualTo("InMemoryKeyStore");
+    }
+
+    @Test
+    void write가_실패하면_롤백된_chunk로_기록된다() throws Exception {
+        //when
+        List<RecordedEvent> events = record(Arrays.asList(1, 2), item -> item, items -> {
+            throw new IllegalStateException("write 실패");
+        });
+
+        //then
+        List<RecordedEvent> chunks = events(events, "fastcampus.batch.Chunk");
+        assertThat(chunks).hasSize(1);
+        assertThat(chunks.get(0).getString("outcome")).isEqualTo("rolled_back");
+        assertThat(chunks.get(0).getString("failedPhase")).isEqualTo("write");
+        assertThat(chunks.get(0).getDuration("commitTime")).isZero();
+    }
+
+    @Test
+    void 샘플링_간격이_0이면_item_이벤트를_기록하지_않는다() throws Exception {
+        //given
+        JfrSampler.setInterval(0);
+
+        //when
+        List<RecordedEvent> events = record(Arrays.asList(1, 2, 3), item -> item, items -> { });
+
+        //then
+        assertThat(events(events, "fastcampus.batch.Chunk")).hasSize(2);
+        assertThat(events(events, "fastcampus.batch.Item")).isEmpty();
+    }
+
+    private List<RecordedEvent> record(List<Integer> input, ItemProcessor<Integer, Integer> processor,
+                                       ItemWriter<Integer> writer) throws Exception {
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        JobRepositoryFactoryBean jobRepositoryFactory = new JobRepositoryFactoryBean();
+        jobRepositoryFactory.setDataSource(dataSource);
+        jobRepositoryFactory.setTransactionManager(transactionManager);
+        jobRepositoryFactory.afterPropertiesSet();
+        JobRepository jobRepository = jobRepositoryFactory.getObject();
+        Job job = new JobBuilder("jfrJob")
+                .repository(jobRepository)
+                .start(new StepBuilder("jfrStep")
+                        .repository(jobRepository)
+                        .transactionManager(transactionManager)
+                        .listener((StepExecutionListener) new JfrBatchListener())
+                        .<Integer, Integer>chunk(2)
+                        .reader(new ListItemReader<>(input))
+                        .processor(processor)
+                        .writer(writer)
+                        .build())
+                .build();
+
+        SimpleJobLauncher jobLauncher = new SimpleJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+
+        Path file = tempDir.resolve("batch.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("fastcampus.batch.*");
+            recording.start();
+            JobExecution jobExecution = jobLauncher.run(job, new JobParameters());
+            recording.stop();
+            recording.dump(file);
+            assertThat(jobExecution.getStatus()).isIn(BatchStatus.COMPLETED, BatchStatus.FAILED);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+
+    private static List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(name))
+                .collect(Collectors.toList());
+    }
+
+    private static Duration phaseTime(List<RecordedEvent> chunks, String field) {
+        return chunks.stream()
+                .map(event -> event.getDuration(field))
+                .reduce(Duration.ZERO, Duration::plus);
+    }
+
+}
@@ -0,0 +1,133 @@
+package fastcampus.spring.batch.job;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DagJobTest {
+
+    private final EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("/org/springframework/batch/core/schema-h2.sql")
+            .build();
+    private final DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+    private final List<String> finished = new CopyOnWriteArrayList<>();
+    private JobRepository jobRepository;
+    private SimpleJobLauncher jobLauncher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JobRepositoryFactoryBean jobRepositoryFactory = new JobRepositoryFactoryBean();
+        jobRepositoryFactory.setDataSource(dataSource);
+        jobRepositoryFactory.setTransactionManager(transactionManager);
+        jobRepositoryFactory.afterPropertiesSet();
+        jobRepository = jobRepositoryFactory.getObject();
+        jobLauncher = new SimpleJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    void 관계없는_step은_동시에_실행하고_의존하는_step은_끝난_뒤에_실행한다() throws Exception {
+        //given : a, b는 서로를 기다려야 끝남 -> 동시에 실행되지 않으면 timeout
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Step a = step("a", 50, bothStarted);
+        Step b = step("b", 10, bothStarted);
+        Step c = step("c", 50, null);
+        Job job = new DagJobBuilder(new JobBuilder("dagJob").repository(jobRepository))
+                .step(a)
+                .step(b)
+                .step(c, a, b)
+                .build();
+
+        //when
+        JobExecution jobExecution = jobLauncher.run(job, new JobParameters());
+
+        //then
+        assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(finished).hasSize(3).endsWith("c");
+        assertThat(jobExecution.getExecutionContext().getString(DagJob.CRITICAL_PATH_KEY)).isEqualTo("a -> c");
+        assertThat(jobExecution.getExecutionContext().getLong(DagJob.CRITICAL_PATH_MILLIS_KEY)).isGreaterThanOrEqualTo(100);
+    }
+
+    @Test
+    void step이_실패하면_의존하는_step은_실행하지_않는다() throws Exception {
+        //given
+        Step a = step("a", 0, null);
+        Step failing = new StepBuilder("failing").repository(jobRepository).transactionManager(transactionManager)
+                .tasklet((contribution, chunkContext) -> {
+                    throw new IllegalStateException("실패");
+                })
+                .build();
+        Step c = step("c", 0, null);
+        Job job = new DagJobBuilder(new JobBuilder("dagJob").repository(jobRepository))
+                .step(a)
+                .step(failing)
+                .step(c, a, failing)
+                .build();
+
+        //when
+        JobExecution jobExecution = jobLauncher.run(job, new JobParameters());
+
+        //then
+        assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.FAILED);
+        assertThat(jobExecution.getStepExecutions().stream().map(StepExecution::getStepName).collect(Collectors.toList()))
+                .containsExactlyInAnyOrder("a", "failing");
+        assertThat(finished).containsExactly("a");
+    }
+
+    @Test
+    void 추가하지_않은_step에는_의존할_수_없다() {
+        Step a = step("a", 0, null);
+        Step b = step("b", 0, null);
+
+        assertThatThrownBy(() -> new DagJobBuilder(new JobBuilder("dagJob").repository(jobRepository)).step(b, a))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Step step(String name, long sleepMillis, CountDownLatch latch) {
+        return new StepBuilder(name).repository(jobRepository).transactionManager(transactionManager)
+                .tasklet((contribution, chunkContext) -> {
+                    if (latch != null) {
+                        latch.countDown();
+                        assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+                    }
+                    Thread.sleep(sleepMillis);
+                    finished.add(name);
+                    return RepeatStatus.FINISHED;
+                })
+                .build();
+    }
+
+}
@@ -0,0 +1,131 @@
+package fastcampus.spring.batch.job;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LazyJobBeanFactoryPostProcessorTest {
+
+    @Test
+    void 선택한_job과_그_step만_만든다() {
+        //when
+        AnnotationConfigApplicationContext context = context(new LazyJobBeanFactoryPostProcessor("save*"));
+
+        //then
+        assertThat(context.getBean(JobCollector.class).jobNames()).containsExactly("saveJob");
+        assertThat(context.getBeanFactory().containsSingleton("saveStep")).isTrue();
+        assertThat(context.getBeanFactory().containsSingleton("helloJob")).isFalse();
+        assertThat(context.getBeanFactory().containsSingleton("helloStep")).isFalse();
+
+        assertThat(context.getBean("helloJob", Job.class).getName()).isEqualTo("helloJob");  //이름으로 직접 찾으면 그때 만듦
+        context.close();
+    }
+
+    @Test
+    void job_이름이_없으면_lazy만_적용한다() {
+        //when
+        AnnotationConfigApplicationContext context = context(new LazyJobBeanFactoryPostProcessor());
+
+        //then
+        assertThat(context.getBean(JobCollector.class).jobNames()).containsExactlyInAnyOrder("helloJob", "saveJob");
+        context.close();
+    }
+
+    private static AnnotationConfigApplicationContext context(LazyJobBeanFactoryPostProcessor postProcessor) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.addBeanFactoryPostProcessor(postProcessor);
+        context.register(JobConfiguration.class, JobCollector.class);
+        context.refresh();
+        return context;
+    }
+
+    @Configuration
+    static class JobConfiguration {
+
+        @Bean(destroyMethod = "shutdown")
+        public EmbeddedDatabase dataSource() {
+            return new EmbeddedDatabaseBuilder()
+                    .setType(EmbeddedDatabaseType.H2)
+                    .generateUniqueName(true)
+                    .addScript("/org/springframework/batch/core/schema-h2.sql")
+                    .build();
+        }
+
+        @Bean
+        public DataSourceTransactionManager transactionManager() {
+            return new DataSourceTransactionManager(dataSource());
+        }
+
+        @Bean
+        public JobRepository jobRepository() throws Exception {
+            JobRepositoryFactoryBean jobRepositoryFactory = new JobRepositoryFactoryBean();
+            jobRepositoryFactory.setDataSource(dataSource());
+            jobRepositoryFactory.setTransactionManager(transactionManager());
+            jobRepositoryFactory.afterPropertiesSet();
+            return jobRepositoryFactory.getObject();
+        }
+
+        @Bean
+        public Job helloJob() throws Exception {
+            return new JobBuilder("helloJob").repository(jobRepository()).start(helloStep()).build();
+        }
+
+        @Bean
+        public Step helloStep() throws Exception {
+            return step("helloStep");
+        }
+
+        @Bean
+        public Job saveJob() throws Exception {
+            return new JobBuilder("saveJob").repository(jobRepository()).start(saveStep()).build();
+        }
+
+        @Bean
+        public Step saveStep() throws Exception {
+            return step("saveStep");
+        }
+
+        private Step step(String name) throws Exception {
+            return new StepBuilder(name).repository(jobRepository()).transactionManager(transactionManager())
+                    .tasklet((contribution, chunkContext) -> RepeatStatus.FINISHED)
+                    .build();
+        }
+
+    }
+
+    //JobLauncherApplicationRunner처럼 모든 Job을 주입받음
+    static class JobCollector {
+
+        private List<Job> jobs = Collections.emptyList();
+
+        @Autowired(required = false)
+        void setJobs(List<Job> jobs) {
+            this.jobs = jobs;
+        }
+
+        List<String> jobNames() {
+            return jobs.stream().map(Job::getName).collect(Collectors.toList());
+        }
+
+    }
+
+}
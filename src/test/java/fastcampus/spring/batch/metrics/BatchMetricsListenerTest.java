@@ -0,0 +1,85 @@
+package fastcampus.spring.batch.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemProcessor;
+import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchMetricsListenerTest {
+
+    @Test
+    void step_리스너로만_등록해도_chunk와_item_메트릭이_기록된다() throws Exception {
+        //given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BatchMetricsListener listener = new BatchMetricsListener(registry);
+        EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("/org/springframework/batch/core/schema-h2.sql")
+                .build();
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        JobRepositoryFactoryBean repositoryFactory = new JobRepositoryFactoryBean();
+        repositoryFactory.setDataSource(dataSource);
+        repositoryFactory.setTransactionManager(transactionManager);
+        repositoryFactory.afterPropertiesSet();
+        JobRepository jobRepository = repositoryFactory.getObject();
+
+        Job job = new JobBuilder("metricsJob")
+                .repository(jobRepository)
+                .listener(listener)
+                .start(new StepBuilder("metricsStep")
+                        .repository(jobRepository)
+                        .transactionManager(transactionManager)
+                        .listener((StepExecutionListener) listener)
+                        .<Integer, Integer>chunk(2)
+                        .reader(new ListItemReader<>(Arrays.asList(1, 2, 3, 4, 5)))
+                        .processor(filterEven())
+                        .writer(items -> { })
+                        .build())
+                .build();
+
+        SimpleJobLauncher jobLauncher = new SimpleJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+
+        //when
+        JobExecution jobExecution = jobLauncher.run(job, new JobParameters());
+        dataSource.shutdown();
+
+        //then
+        assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(registry.get("batch.items.read").tag("job", "metricsJob").tag("step", "metricsStep").counter().count()).isEqualTo(5);
+        assertThat(registry.get("batch.items.written").counter().count()).isEqualTo(3);
+        assertThat(registry.get("batch.items.filtered").counter().count()).isEqualTo(2);
+        assertThat(registry.get("batch.item.read").timer().count()).isEqualTo(5);
+        assertThat(registry.get("batch.item.process").timer().count()).isEqualTo(5);
+        assertThat(registry.get("batch.chunk.write").timer().count()).isEqualTo(3);
+        assertThat(registry.get("batch.chunk.commit").timer().count()).isEqualTo(3);
+        assertThat(registry.get("batch.chunk").tag("outcome", "committed").timer().count()).isEqualTo(3);
+        assertThat(registry.get("batch.step").tag("status", "COMPLETED").timer().count()).isEqualTo(1);
+        assertThat(registry.get("batch.job").tag("status", "COMPLETED").timer().count()).isEqualTo(1);
+    }
+
+    private ItemProcessor<Integer, Integer> filterEven() {
+        return item -> item % 2 == 0 ? null : item;     //짝수는 필터링
+    }
+
+}
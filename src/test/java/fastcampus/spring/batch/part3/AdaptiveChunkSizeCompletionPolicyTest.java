@@ -0,0 +1,186 @@
+package fastcampus.spring.batch.part3;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.repeat.RepeatContext;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveChunkSizeCompletionPolicyTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void 목표보다_빠르면_chunk_크기를_늘리되_한_번에_2배까지만_늘린다() {
+        //given : 목표 100ms, 아이템 하나에 2ms -> 이상적인 크기는 50
+        AdaptiveChunkSizeCompletionPolicy policy = policy(10, 1, 1000);
+
+        //when //then
+        chunk(policy, 10, 20);
+        assertThat(policy.getChunkSize()).isEqualTo(20);    //30으로 가야 하지만 2배 제한
+        chunk(policy, 20, 40);
+        assertThat(policy.getChunkSize()).isEqualTo(35);
+        chunk(policy, 35, 70);
+        assertThat(policy.getChunkSize()).isEqualTo(43);    //50에 가까워짐
+    }
+
+    @Test
+    void 목표보다_느리면_chunk_크기를_줄인다() {
+        //given : 목표 100ms, 아이템 하나에 4ms -> 이상적인 크기는 25
+        AdaptiveChunkSizeCompletionPolicy policy = policy(100, 1, 1000);
+
+        //when //then
+        chunk(policy, 100, 400);
+        assertThat(policy.getChunkSize()).isEqualTo(63);
+        chunk(policy, 63, 252);
+        assertThat(policy.getChunkSize()).isEqualTo(44);
+    }
+
+    @Test
+    void chunk_크기는_최소_최대_범위를_벗어나지_않는다() {
+        //given
+        AdaptiveChunkSizeCompletionPolicy policy = policy(30, 25, 40);
+
+        //when //then
+        chunk(policy, 30, 3);       //아주 빠름
+        assertThat(policy.getChunkSize()).isEqualTo(40);
+        chunk(policy, 40, 4000);    //아주 느림
+        assertThat(policy.getChunkSize()).isEqualTo(25);
+    }
+
+    @Test
+    void 덜_찬_마지막_chunk가_빠르면_크기를_바꾸지_않는다() {
+        //given
+        AdaptiveChunkSizeCompletionPolicy policy = policy(10, 1, 1000);
+
+        //when
+        chunk(policy, 3, 1);
+
+        //then
+        assertThat(policy.getChunkSize()).isEqualTo(10);
+    }
+
+    @Test
+    void 덜_찬_chunk라도_목표보다_느리면_크기를_줄인다() {
+        //given
+        AdaptiveChunkSizeCompletionPolicy policy = policy(10, 1, 1000);
+
+        //when : 아이템 하나에 100ms
+        chunk(policy, 3, 300);
+
+        //then
+        assertThat(policy.getChunkSize()).isEqualTo(6);
+    }
+
+    @Test
+    void 롤백되면_절반으로_줄인다() {
+        //given
+        AdaptiveChunkSizeCompletionPolicy policy = policy(10, 1, 1000);
+        policy.start(null);
+        policy.beforeChunk(null);
+
+        //when
+        policy.afterChunkError(null);
+
+        //then
+        assertThat(policy.getChunkSize()).isEqualTo(5);
+    }
+
+    @Test
+    void 바뀐_크기로_다음_chunk를_완료한다() {
+        //given
+        AdaptiveChunkSizeCompletionPolicy policy = policy(10, 1, 1000);
+        chunk(policy, 10, 20);
+
+        //when
+        RepeatContext context = policy.start(null);
+        for (int i = 0; i < 19; i++) {
+            policy.update(context);
+        }
+
+        //then
+        assertThat(policy.isComplete(context)).isFalse();
+        policy.update(context);
+        assertThat(policy.isComplete(context)).isTrue();
+    }
+
+    @Test
+    void 커밋처럼_chunk마다_고정으로_드는_시간은_빼고_아이템당_시간으로_크기를_정한다() {
+        //given : 목표 100ms, 아이템 하나에 읽기 1ms + 쓰기 1ms, 커밋 60ms -> (100 - 60) / 2 = 20
+        AdaptiveChunkSizeCompletionPolicy policy = policy(10, 1, 1000);
+
+        //when
+        phasedChunk(policy, 10, 1, 1, 60);
+
+        //then : 전체 시간(80ms / 10건)으로만 보면 12.5를 향해 11이 됨
+        assertThat(policy.getChunkSize()).isEqualTo(15);
+    }
+
+    @Test
+    void 고정_시간이_목표보다_길면_절반까지_줄인다() {
+        //given
+        AdaptiveChunkSizeCompletionPolicy policy = policy(10, 1, 1000);
+
+        //when
+        phasedChunk(policy, 10, 1, 1, 150);
+
+        //then
+        assertThat(policy.getChunkSize()).isEqualTo(5);
+    }
+
+    @Test
+    void 선택한_크기를_주입한_registry의_게이지로_내보낸다() {
+        //given
+        SimpleMeterRegistry other = new SimpleMeterRegistry();
+        AdaptiveChunkSizeCompletionPolicy first = policy(10, 1, 1000);
+        chunk(first, 10, 20);
+
+        //when : 같은 step으로 다시 만들면 게이지가 새 policy를 가리킴
+        AdaptiveChunkSizeCompletionPolicy second = policy(30, 1, 1000);
+        new AdaptiveChunkSizeCompletionPolicy("adaptiveChunkTest", 7, 100, 1, 1000, other, now::get);
+
+        //then
+        assertThat(second.getChunkSize()).isEqualTo(30);
+        assertThat(registry.get("batch.chunk.size").tag("step", "adaptiveChunkTest").gauges()).hasSize(1);
+        assertThat(registry.get("batch.chunk.size").tag("step", "adaptiveChunkTest").gauge().value()).isEqualTo(30);
+        assertThat(registry.get("batch.chunk.size.chosen").summary().count()).isEqualTo(1);
+        assertThat(other.get("batch.chunk.size").gauge().value()).isEqualTo(7);
+    }
+
+    private AdaptiveChunkSizeCompletionPolicy policy(int initialChunkSize, int minChunkSize, int maxChunkSize) {
+        return new AdaptiveChunkSizeCompletionPolicy("adaptiveChunkTest", initialChunkSize, 100, minChunkSize, maxChunkSize, registry, now::get);
+    }
+
+    //items개를 아이템당 readMillis, writeMillis 걸려서 읽고 쓴 뒤 커밋에 commitMillis 걸린 chunk로 실행
+    private void phasedChunk(AdaptiveChunkSizeCompletionPolicy policy, int items, long readMillis, long writeMillis, long commitMillis) {
+        RepeatContext context = policy.start(null);
+        policy.beforeChunk(null);
+        for (int i = 0; i < items; i++) {
+            policy.beforeRead();
+            now.addAndGet(readMillis * 1_000_000L);
+            policy.afterRead(i);
+            policy.update(context);
+        }
+        policy.beforeWrite(Collections.emptyList());
+        now.addAndGet(items * writeMillis * 1_000_000L);
+        policy.afterWrite(Collections.emptyList());
+        now.addAndGet(commitMillis * 1_000_000L);
+        policy.afterChunk(null);
+    }
+
+    //items개를 처리하는 chunk 하나가 elapsedMillis 걸린 것으로 실행
+    private void chunk(AdaptiveChunkSizeCompletionPolicy policy, int items, long elapsedMillis) {
+        RepeatContext context = policy.start(null);
+        policy.beforeChunk(null);
+        for (int i = 0; i < items; i++) {
+            policy.update(context);
+        }
+        now.addAndGet(elapsedMillis * 1_000_000L);
+        policy.afterChunk(null);
+    }
+
+}
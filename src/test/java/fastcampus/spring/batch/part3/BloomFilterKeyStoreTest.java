@@ -0,0 +1,56 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BloomFilterKeyStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void 디스크로_내려쓴_키도_중복으로_판단한다() throws Exception {
+        //given : 메모리에는 100개만 두고 나머지는 run 파일로 내려씀
+        BloomFilterKeyStore keyStore = new BloomFilterKeyStore(10_000, 0.01, 100, directory);
+
+        //when
+        int added = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (keyStore.add("name" + i)) {
+                added++;
+            }
+        }
+
+        //then
+        assertThat(added).isEqualTo(10_000);
+        assertThat(keyStore.size()).isEqualTo(10_000);
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(keyStore.add("name" + i)).isFalse();
+        }
+        assertThat(keyStore.add("name10000")).isTrue();
+
+        keyStore.close();
+        assertThat(Files.exists(directory)).isFalse();
+    }
+
+    @Test
+    void 중복이_아니면_필터링하지_않는다() throws Exception {
+        //given : 예상보다 훨씬 많은 키가 들어와서 블룸 필터 오탐이 많아지는 상황
+        BloomFilterKeyStore keyStore = new BloomFilterKeyStore(10, 0.01, 50, directory);
+        DuplicateValidationProcessor<String> processor = new DuplicateValidationProcessor<>(s -> s, false, keyStore);
+
+        //when & then
+        for (int i = 0; i < 1_000; i++) {
+            assertThat(processor.process("name" + i)).isNotNull();
+            assertThat(processor.process("name" + i)).isNull();
+        }
+
+        processor.close();
+    }
+
+}
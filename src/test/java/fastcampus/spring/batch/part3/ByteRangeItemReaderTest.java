@@ -0,0 +1,86 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.mapping.PassThroughLineMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteRangeItemReaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void 구간_안의_줄만_읽는다() throws Exception {
+        //given : "b,2\nc,3\n" 구간
+        Path file = write("a,1\nb,2\nc,3\nd,4");
+        ByteRangeItemReader<String> reader = reader(file, 4, 12);
+
+        //when
+        List<String> lines = readAll(reader, new ExecutionContext());
+
+        //then
+        assertThat(lines).containsExactly("b,2", "c,3");
+    }
+
+    @Test
+    void 마지막_줄에_개행이_없어도_읽는다() throws Exception {
+        //given
+        Path file = write("a,1\nb,2\nc,3\nd,4");
+        ByteRangeItemReader<String> reader = reader(file, 8, Files.size(file));
+
+        //when
+        List<String> lines = readAll(reader, new ExecutionContext());
+
+        //then
+        assertThat(lines).containsExactly("c,3", "d,4");
+    }
+
+    @Test
+    void 재시작하면_파티션에_저장된_위치부터_이어서_읽는다() throws Exception {
+        //given : 첫 실행에서 2개를 읽고 저장
+        Path file = write("a,1\nb,2\nc,3\nd,4\ne,5\n");
+        ByteRangeItemReader<String> first = reader(file, 4, Files.size(file));
+        ExecutionContext executionContext = new ExecutionContext();
+        first.open(executionContext);
+        first.read();
+        first.read();
+        first.update(executionContext);
+        first.close();
+
+        //when
+        List<String> lines = readAll(reader(file, 4, Files.size(file)), executionContext);
+
+        //then
+        assertThat(lines).containsExactly("d,4", "e,5");
+    }
+
+    private ByteRangeItemReader<String> reader(Path file, long startByte, long endByte) {
+        return new ByteRangeItemReader<>(file, startByte, endByte, new PassThroughLineMapper(), StandardCharsets.UTF_8);
+    }
+
+    private Path write(String content) throws Exception {
+        Path file = tempDir.resolve("person.csv");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private List<String> readAll(ByteRangeItemReader<String> reader, ExecutionContext executionContext) throws Exception {
+        List<String> lines = new ArrayList<>();
+        reader.open(executionContext);
+        for (String line = reader.read(); line != null; line = reader.read()) {
+            lines.add(line);
+        }
+        reader.close();
+        return lines;
+    }
+
+}
@@ -0,0 +1,117 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.mapping.PassThroughLineMapper;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ByteRangePartitionerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void 경계가_줄_중간에_걸리면_다음_줄의_시작으로_맞춘다() throws Exception {
+        //given : 줄 길이가 제각각이라 바이트로 나눈 위치가 대부분 줄 중간
+        StringBuilder content = new StringBuilder("name,age\n");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String line = "person" + i + "," + "x".repeat(i % 7);
+            lines.add(line);
+            content.append(line).append('\n');
+        }
+        Path file = write(content.toString());
+
+        //when
+        Map<String, ExecutionContext> partitions = new ByteRangePartitioner(new FileSystemResource(file), 1).partition(7);
+
+        //then
+        byte[] bytes = Files.readAllBytes(file);
+        assertThat(partitions).hasSize(7);
+        for (ExecutionContext partition : partitions.values()) {
+            long start = partition.getLong(ByteRangePartitioner.START_BYTE);
+            assertThat(bytes[(int) start - 1]).isEqualTo((byte) '\n');    //헤더를 포함해 항상 개행 다음에서 시작
+        }
+        assertThat(readAll(partitions)).containsExactlyElementsOf(lines);
+    }
+
+    @Test
+    void 마지막_줄에_개행이_없어도_빠짐없이_읽는다() throws Exception {
+        //given
+        Path file = write("name,age\na,1\nb,2\nc,3\nd,4");
+
+        //when
+        Map<String, ExecutionContext> partitions = new ByteRangePartitioner(new FileSystemResource(file), 1).partition(2);
+
+        //then
+        assertThat(partitions).hasSize(2);
+        assertThat(readAll(partitions)).containsExactly("a,1", "b,2", "c,3", "d,4");
+    }
+
+    @Test
+    void 파티션_수가_줄_수보다_많으면_빈_파티션은_만들지_않는다() throws Exception {
+        //given
+        Path file = write("name,age\na,1\nb,2\nc,3\n");
+
+        //when
+        Map<String, ExecutionContext> partitions = new ByteRangePartitioner(new FileSystemResource(file), 1).partition(10);
+
+        //then
+        assertThat(partitions).hasSizeLessThanOrEqualTo(3);
+        assertThat(partitions.values()).allSatisfy(partition ->
+                assertThat(partition.getLong(ByteRangePartitioner.START_BYTE)).isLessThan(partition.getLong(ByteRangePartitioner.END_BYTE)));
+        assertThat(readAll(partitions)).containsExactly("a,1", "b,2", "c,3");
+    }
+
+    @Test
+    void 파일이_아닌_리소스는_사용할_수_없다() {
+        //given : jar 안의 classpath 리소스처럼 파일로 접근할 수 없는 리소스
+        ByteArrayResource resource = new ByteArrayResource("name,age\na,1\n".getBytes(StandardCharsets.UTF_8));
+
+        //when //then
+        assertThatThrownBy(() -> new ByteRangePartitioner(resource, 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("input_file");
+    }
+
+    private Path write(String content) throws Exception {
+        Path file = tempDir.resolve("person.csv");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    //파티션을 시작 위치 순서로 모두 읽은 결과
+    private List<String> readAll(Map<String, ExecutionContext> partitions) throws Exception {
+        List<ExecutionContext> ordered = partitions.values().stream()
+                .sorted(Comparator.comparingLong(partition -> partition.getLong(ByteRangePartitioner.START_BYTE)))
+                .collect(Collectors.toList());
+
+        List<String> lines = new ArrayList<>();
+        for (ExecutionContext partition : ordered) {
+            ByteRangeItemReader<String> reader = new ByteRangeItemReader<>(Path.of(partition.getString(ByteRangePartitioner.FILE)),
+                    partition.getLong(ByteRangePartitioner.START_BYTE), partition.getLong(ByteRangePartitioner.END_BYTE),
+                    new PassThroughLineMapper(), StandardCharsets.UTF_8);
+            reader.open(new ExecutionContext());
+            for (String line = reader.read(); line != null; line = reader.read()) {
+                lines.add(line);
+            }
+            reader.close();
+        }
+        return lines;
+    }
+
+}
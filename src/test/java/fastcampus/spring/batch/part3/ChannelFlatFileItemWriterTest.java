@@ -0,0 +1,127 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChannelFlatFileItemWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(new ResourcelessTransactionManager());
+
+    @Test
+    void 롤백된_chunk는_파일에서_잘라낸다() throws Exception {
+        //given
+        Path file = tempDir.resolve("out.csv");
+        ChannelFlatFileItemWriter<String> writer = writer(file, false);
+        ExecutionContext executionContext = new ExecutionContext();
+        writer.open(executionContext);
+
+        //when
+        chunk(writer, executionContext, Arrays.asList("a", "b"));
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status -> {
+            write(writer, Arrays.asList("c", "d"));
+            writer.update(executionContext);    //update 이후에 커밋이 실패해도 잘라내야 함
+            throw new IllegalStateException("chunk 실패");
+        })).isInstanceOf(IllegalStateException.class);
+        chunk(writer, executionContext, Arrays.asList("e"));
+        writer.close();
+
+        //then
+        assertThat(Files.readAllLines(file)).containsExactly("header", "a", "b", "e", "footer");
+        assertThat(executionContext.getLong("ChannelFlatFileItemWriter.written")).isEqualTo(3);
+    }
+
+    @Test
+    void 재시작하면_마지막_커밋_위치부터_이어서_쓴다() throws Exception {
+        //given
+        Path file = tempDir.resolve("out.csv");
+        ChannelFlatFileItemWriter<String> writer = writer(file, false);
+        ExecutionContext executionContext = new ExecutionContext();
+        writer.open(executionContext);
+        chunk(writer, executionContext, Arrays.asList("a", "b"));
+        write(writer, Arrays.asList("c"));  //커밋되지 않은 채로 실패
+        writer.close();                     //footer까지 써진 상태
+
+        //when
+        ChannelFlatFileItemWriter<String> restarted = writer(file, false);
+        restarted.open(executionContext);
+        chunk(restarted, executionContext, Arrays.asList("c", "d"));
+        restarted.close();
+
+        //then
+        assertThat(Files.readAllLines(file)).containsExactly("header", "a", "b", "c", "d", "footer");
+    }
+
+    @Test
+    void gzip은_커밋마다_gzip_member를_이어붙인다() throws Exception {
+        //given
+        Path file = tempDir.resolve("out.csv.gz");
+        ChannelFlatFileItemWriter<String> writer = writer(file, true);
+        ExecutionContext executionContext = new ExecutionContext();
+        writer.open(executionContext);
+
+        //when
+        chunk(writer, executionContext, Arrays.asList("가", "나"));
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status -> {
+            write(writer, Arrays.asList("x"));
+            writer.update(executionContext);
+            throw new IllegalStateException("chunk 실패");
+        })).isInstanceOf(IllegalStateException.class);
+        chunk(writer, executionContext, Arrays.asList("다"));
+        writer.close();
+
+        //then
+        assertThat(gunzip(file)).isEqualTo("header\n가\n나\n다\nfooter\n");
+    }
+
+    private ChannelFlatFileItemWriter<String> writer(Path file, boolean gzip) {
+        ChannelFlatFileItemWriter<String> writer = new ChannelFlatFileItemWriter<>(file, item -> item);
+        writer.setLineSeparator("\n");
+        writer.setBufferSize(16);   //버퍼보다 긴 chunk도 처리되는지 확인
+        writer.setGzip(gzip);
+        writer.setHeaderCallback(w -> w.write("header"));
+        writer.setFooterCallback(w -> w.write("footer\n"));
+        return writer;
+    }
+
+    private void chunk(ChannelFlatFileItemWriter<String> writer, ExecutionContext executionContext, List<String> items) {
+        transactionTemplate.executeWithoutResult(status -> {
+            write(writer, items);
+            writer.update(executionContext);
+        });
+    }
+
+    private void write(ChannelFlatFileItemWriter<String> writer, List<String> items) {
+        try {
+            writer.write(items);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String gunzip(Path file) throws Exception {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+}
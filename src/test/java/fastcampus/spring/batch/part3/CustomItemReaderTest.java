@@ -0,0 +1,75 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomItemReaderTest {
+
+    @Test
+    void 재시작하면_저장된_위치부터_읽는다() {
+        //given
+        List<Integer> items = IntStream.range(0, 5).boxed().collect(Collectors.toList());
+        ExecutionContext executionContext = new ExecutionContext();
+
+        CustomItemReader<Integer> reader = new CustomItemReader<>(items);
+        reader.open(executionContext);
+        reader.read();
+        reader.read();
+        reader.update(executionContext);
+        reader.read();  //커밋되지 않은 읽기
+
+        //when
+        CustomItemReader<Integer> restarted = new CustomItemReader<>(items);
+        restarted.open(executionContext);
+
+        //then
+        assertThat(restarted.read()).isEqualTo(2);
+        assertThat(restarted.read()).isEqualTo(3);
+        assertThat(restarted.read()).isEqualTo(4);
+        assertThat(restarted.read()).isNull();
+        assertThat(restarted.read()).isNull();
+    }
+
+    @Test
+    void 여러_스레드가_읽어도_아이템을_한번씩만_반환한다() throws Exception {
+        //given
+        List<Integer> items = IntStream.range(0, 100_000).boxed().collect(Collectors.toList());
+        CustomItemReader<Integer> reader = new CustomItemReader<>(items);
+        Set<Integer> read = ConcurrentHashMap.newKeySet();
+        List<Integer> duplicated = new ArrayList<>();
+
+        //when
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.execute(() -> {
+                Integer item;
+                while ((item = reader.read()) != null) {
+                    if (!read.add(item)) {
+                        synchronized (duplicated) {
+                            duplicated.add(item);
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        //then
+        assertThat(duplicated).isEmpty();
+        assertThat(read).hasSize(items.size());
+    }
+
+}
@@ -0,0 +1,206 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DuplicateValidationProcessorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void 재시작하면_커밋된_키까지만_복원한다() throws Exception {
+        //given : 첫 실행에서 2개 키 커밋 후, 커밋되지 않은 키 1개를 처리하다 실패
+        ExecutionContext executionContext = new ExecutionContext();
+        DuplicateValidationProcessor<String> first = processor();
+        first.open(executionContext);
+        first.process("변구훈");
+        first.process("홍길동");
+        first.update(executionContext);
+        first.process("아무개");
+        first.close();
+
+        //when
+        DuplicateValidationProcessor<String> restarted = processor();
+        restarted.open(executionContext);
+
+        //then
+        assertThat(restarted.process("변구훈")).isNull();
+        assertThat(restarted.process("홍길동")).isNull();
+        assertThat(restarted.process("아무개")).isEqualTo("아무개");
+
+        restarted.update(executionContext);
+        restarted.close();
+
+        DuplicateValidationProcessor<String> restartedAgain = processor();
+        restartedAgain.open(executionContext);
+        assertThat(restartedAgain.process("아무개")).isNull();
+        restartedAgain.close();
+    }
+
+    @Test
+    void 길이가_64KB를_넘는_키도_체크포인트에서_복원한다() throws Exception {
+        //given
+        String longKey = "가".repeat(30_000);     //UTF-8로 90,000 바이트
+        ExecutionContext executionContext = new ExecutionContext();
+        DuplicateValidationProcessor<String> first = processor();
+        first.open(executionContext);
+        first.process(longKey);
+        first.process("변구훈");
+        first.update(executionContext);
+        first.close();
+
+        //when
+        DuplicateValidationProcessor<String> restarted = processor();
+        restarted.open(executionContext);
+
+        //then
+        assertThat(restarted.process(longKey)).isNull();
+        assertThat(restarted.process("변구훈")).isNull();
+        restarted.close();
+    }
+
+    @Test
+    void 롤백된_chunk의_키는_다시_처리하면_필터링하지_않는다() throws Exception {
+        //given
+        DuplicateValidationProcessor<String> processor = processor();
+        processor.open(new ExecutionContext());
+        processor.beforeChunk(null);
+        assertThat(processor.process("변구훈")).isEqualTo("변구훈");
+        assertThat(processor.process("변구훈")).isNull();     //같은 chunk 안의 중복
+
+        //when
+        processor.afterChunkError(null);
+        processor.beforeChunk(null);
+
+        //then
+        assertThat(processor.process("변구훈")).isEqualTo("변구훈");
+        processor.afterChunk(null);
+        processor.beforeChunk(null);
+        assertThat(processor.process("변구훈")).isNull();
+        processor.afterChunk(null);
+        processor.close();
+    }
+
+    @Test
+    void 롤백된_chunk의_키는_체크포인트에서도_지운다() throws Exception {
+        //given : 체크포인트를 쓴 뒤 커밋이 실패한 chunk
+        ExecutionContext executionContext = new ExecutionContext();
+        DuplicateValidationProcessor<String> first = processor();
+        first.open(executionContext);
+        first.beforeChunk(null);
+        first.process("변구훈");
+        first.update(new ExecutionContext());   //커밋되지 않는 ExecutionContext
+        first.afterChunkError(null);
+        first.beforeChunk(null);
+        first.process("홍길동");
+        first.update(executionContext);
+        first.afterChunk(null);
+        first.close();
+
+        //when
+        DuplicateValidationProcessor<String> restarted = processor();
+        restarted.open(executionContext);
+
+        //then
+        assertThat(restarted.process("변구훈")).isEqualTo("변구훈");
+        assertThat(restarted.process("홍길동")).isNull();
+        restarted.close();
+    }
+
+    @Test
+    void 체크포인트_디렉토리가_없으면_체크포인트를_남기지_않는다() throws Exception {
+        //given
+        ExecutionContext executionContext = new ExecutionContext();
+        DuplicateValidationProcessor<String> processor = new DuplicateValidationProcessor<>(name -> name, false);
+
+        //when
+        processor.open(executionContext);
+        processor.beforeChunk(null);
+        processor.process("변구훈");
+        processor.update(executionContext);
+        processor.afterChunk(null);
+        processor.close();
+
+        //then
+        assertThat(executionContext.isEmpty()).isTrue();
+    }
+
+    @Test
+    void 쓰기를_재시도하면_같은_아이템을_중복으로_필터링하지_않는다() throws Exception {
+        //given : 두 번째 chunk의 첫 쓰기가 실패해서 chunk를 롤백하고 다시 처리
+        EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("/org/springframework/batch/core/schema-h2.sql")
+                .build();
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        JobRepositoryFactoryBean jobRepositoryFactory = new JobRepositoryFactoryBean();
+        jobRepositoryFactory.setDataSource(dataSource);
+        jobRepositoryFactory.setTransactionManager(transactionManager);
+        jobRepositoryFactory.afterPropertiesSet();
+        JobRepository jobRepository = jobRepositoryFactory.getObject();
+        SimpleJobLauncher jobLauncher = new SimpleJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+
+        List<String> written = new ArrayList<>();
+        AtomicBoolean failOnce = new AtomicBoolean(true);
+        DuplicateValidationProcessor<String> processor = new DuplicateValidationProcessor<>(name -> name, false);
+
+        //when
+        JobExecution jobExecution = jobLauncher.run(new JobBuilder("dedupRetryJob")
+                .repository(jobRepository)
+                .start(new StepBuilder("dedupRetryStep")
+                        .repository(jobRepository)
+                        .transactionManager(transactionManager)
+                        .<String, String>chunk(2)
+                        .reader(new ListItemReader<>(Arrays.asList("변구훈", "홍길동", "아무개", "변구훈", "김철수")))
+                        .processor(processor)
+                        .writer(items -> {
+                            if (items.contains("아무개") && failOnce.getAndSet(false)) {
+                                throw new IllegalStateException("쓰기 실패");
+                            }
+                            written.addAll(items);
+                        })
+                        .faultTolerant()
+                        .retry(IllegalStateException.class)
+                        .retryLimit(2)
+                        .build())
+                .build(), new JobParameters());
+        dataSource.shutdown();
+
+        //then
+        assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(written).containsExactly("변구훈", "홍길동", "아무개", "김철수");
+    }
+
+    private DuplicateValidationProcessor<String> processor() {
+        DuplicateValidationProcessor<String> processor = new DuplicateValidationProcessor<>(name -> name, false);
+        processor.setCheckpointDirectory(directory);
+        return processor;
+    }
+
+}
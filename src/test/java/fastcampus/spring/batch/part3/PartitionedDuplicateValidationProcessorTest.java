@@ -0,0 +1,248 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.Step;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.explore.support.JobExplorerFactoryBean;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.listener.StepExecutionListenerSupport;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionedDuplicateValidationProcessorTest {
+
+    //재시작 테스트용 JDBC JobRepository (파티션의 ExecutionContext를 JobExplorer로 다시 읽음)
+    private final EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("/org/springframework/batch/core/schema-h2.sql")
+            .build();
+    private final DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+    private JobRepository jobRepository;
+    private JobExplorer jobExplorer;
+    private SimpleJobLauncher jobLauncher;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JobRepositoryFactoryBean jobRepositoryFactory = new JobRepositoryFactoryBean();
+        jobRepositoryFactory.setDataSource(dataSource);
+        jobRepositoryFactory.setTransactionManager(transactionManager);
+        jobRepositoryFactory.afterPropertiesSet();
+        jobRepository = jobRepositoryFactory.getObject();
+        JobExplorerFactoryBean jobExplorerFactory = new JobExplorerFactoryBean();
+        jobExplorerFactory.setDataSource(dataSource);
+        jobExplorerFactory.afterPropertiesSet();
+        jobExplorer = jobExplorerFactory.getObject();
+        jobLauncher = new SimpleJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    void 실패한_파티션만_재시작해도_다른_파티션이_저장한_키는_다시_저장하지_않는다() throws Exception {
+        //given : partition0은 A0~A9, partition1은 B0~B9 다음 chunk에 XX, A0~A4(중복), B10~B13
+        //        partition1의 두 번째 chunk는 처음 한 번 쓰기에 실패
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            lines.add("A" + i + ",1");
+        }
+        lines.add("A9," + "x".repeat(80));     //바이트 기준으로 나눈 경계가 B0 앞에 오도록 partition0을 늘림
+        for (int i = 0; i < 10; i++) {
+            lines.add("B" + i + ",1");
+        }
+        lines.add("XX,1");
+        for (int i = 0; i < 5; i++) {
+            lines.add("A" + i + ",1");
+        }
+        for (int i = 10; i < 14; i++) {
+            lines.add("B" + i + ",1");
+        }
+        Path file = tempDir.resolve("person.csv");
+        Files.write(file, ("name,age\n" + String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+        Path checkpointDirectory = Files.createDirectory(tempDir.resolve("checkpoint"));
+
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean failOnce = new AtomicBoolean(true);
+        ItemWriter<String> writer = items -> {
+            if (items.contains("XX") && failOnce.getAndSet(false)) {
+                throw new IllegalStateException("쓰기 실패");
+            }
+            written.addAll(items);
+        };
+
+        JobExecution failed = jobLauncher.run(job(file, checkpointDirectory, writer), new JobParameters());
+        assertThat(failed.getStatus()).isEqualTo(BatchStatus.FAILED);
+
+        //when : 재시작은 새 프로세스처럼 빈 키 저장소로 시작
+        JobExecution restarted = jobLauncher.run(job(file, checkpointDirectory, writer), new JobParameters());
+
+        //then
+        assertThat(restarted.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(jobExplorer.getJobExecution(restarted.getId()).getStepExecutions()).extracting(StepExecution::getStepName)
+                .containsExactlyInAnyOrder("managerStep", "workerStep:partition1");     //완료된 partition0은 다시 실행하지 않음
+        assertThat(written).doesNotHaveDuplicates();
+        assertThat(written).containsExactlyInAnyOrderElementsOf(
+                lines.stream().map(line -> line.split(",")[0]).distinct().collect(Collectors.toList()));
+        try (var files = Files.list(checkpointDirectory)) {
+            assertThat(files).isEmpty();    //완료되면 모든 파티션의 체크포인트 삭제
+        }
+    }
+
+    @Test
+    void 다른_파티션에서_커밋하지_않은_키도_중복으로_거른다() throws Exception {
+        //given : 두 파티션의 chunk가 동시에 진행 중
+        PartitionedDuplicateValidationProcessor<String> processor =
+                new PartitionedDuplicateValidationProcessor<>(name -> name, new InMemoryKeyStore(), jobExplorer, "workerStep");
+        JobExecution jobExecution = new JobExecution(1L);
+        StepSynchronizationManager.register(new StepExecution("workerStep:partition0", jobExecution, 1L));
+        processor.open(new ExecutionContext());
+        processor.beforeChunk(null);
+        assertThat(processor.process("변구훈")).isEqualTo("변구훈");
+
+        //when
+        StepSynchronizationManager.register(new StepExecution("workerStep:partition1", jobExecution, 2L));
+        processor.open(new ExecutionContext());
+        processor.beforeChunk(null);
+        String duplicated = processor.process("변구훈");
+
+        //then
+        assertThat(duplicated).isNull();
+        processor.afterChunk(null);
+        processor.close();
+        StepSynchronizationManager.release();
+        processor.afterChunk(null);
+        processor.close();
+        StepSynchronizationManager.release();
+    }
+
+    private Job job(Path file, Path checkpointDirectory, ItemWriter<String> writer) {
+        KeyStore keyStore = new InMemoryKeyStore();
+        PartitionedDuplicateValidationProcessor<String> processor =
+                new PartitionedDuplicateValidationProcessor<>(name -> name, keyStore, jobExplorer, "workerStep");
+        processor.setCheckpointDirectory(checkpointDirectory);
+
+        Step workerStep = new StepBuilder("workerStep")
+                .repository(jobRepository)
+                .transactionManager(transactionManager)
+                .<String, String>chunk(10)
+                .reader(new PartitionReader())
+                .processor(processor)
+                .writer(writer)
+                .build();
+
+        //partition0 -> partition1 순서로 실행해서, partition1이 재시작할 때 partition0이 커밋한 키가 필요하게 만듦
+        TaskExecutorPartitionHandler partitionHandler = new TaskExecutorPartitionHandler() {
+            @Override
+            protected Set<StepExecution> doHandle(StepExecution managerStepExecution, Set<StepExecution> partitionStepExecutions) throws Exception {
+                Set<StepExecution> ordered = new TreeSet<>(Comparator.comparing(StepExecution::getStepName));
+                ordered.addAll(partitionStepExecutions);
+                return super.doHandle(managerStepExecution, ordered);
+            }
+        };
+        partitionHandler.setStep(workerStep);
+        partitionHandler.setTaskExecutor(new SyncTaskExecutor());
+        partitionHandler.setGridSize(2);
+
+        Step managerStep = new StepBuilder("managerStep")
+                .repository(jobRepository)
+                .partitioner("workerStep", new ByteRangePartitioner(new FileSystemResource(file), 1))
+                .partitionHandler(partitionHandler)
+                .listener(new StepExecutionListenerSupport() {
+                    @Override
+                    public void beforeStep(StepExecution stepExecution) {
+                        processor.restore(stepExecution);
+                    }
+
+                    @Override
+                    public ExitStatus afterStep(StepExecution stepExecution) {
+                        if (stepExecution.getStatus() == BatchStatus.COMPLETED) {
+                            processor.deleteCheckpoints(stepExecution);
+                        }
+                        return null;
+                    }
+                })
+                .build();
+
+        return new JobBuilder("partitionJob")
+                .repository(jobRepository)
+                .start(managerStep)
+                .build();
+    }
+
+    //파티션 ExecutionContext의 구간으로 ByteRangeItemReader를 만들어 이름만 읽는 reader (설정 클래스의 @StepScope reader 대신)
+    private static class PartitionReader extends ItemStreamSupport implements ItemStreamReader<String> {
+
+        private ByteRangeItemReader<String> delegate;
+
+        @Override
+        public void open(ExecutionContext executionContext) {
+            delegate = new ByteRangeItemReader<>(Paths.get(executionContext.getString(ByteRangePartitioner.FILE)),
+                    executionContext.getLong(ByteRangePartitioner.START_BYTE), executionContext.getLong(ByteRangePartitioner.END_BYTE),
+                    (line, lineNumber) -> line.split(",")[0], StandardCharsets.UTF_8);
+            delegate.open(executionContext);
+        }
+
+        @Override
+        public String read() throws Exception {
+            return delegate.read();
+        }
+
+        @Override
+        public void update(ExecutionContext executionContext) {
+            delegate.update(executionContext);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+
+    }
+
+}
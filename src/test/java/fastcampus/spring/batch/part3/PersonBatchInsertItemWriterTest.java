@@ -0,0 +1,117 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersonBatchInsertItemWriterTest {
+
+    private EmbeddedDatabase dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private final List<String> statements = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table person(id int primary key auto_increment, name varchar(255), age varchar(255), address varchar(255))");
+        jdbcTemplate.update("insert into person(name, age, address) values ('기존', '40', '대구')");   //생성되는 id가 1부터 시작하지 않도록
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    void chunk_하나를_한_문장으로_저장하고_생성된_id를_순서대로_넣어준다() {
+        //given
+        List<Person> chunk = persons("변구훈", "홍길동", "아무개", "김철수", "이영희");
+        PersonBatchInsertItemWriter writer = new PersonBatchInsertItemWriter(countingDataSource());
+
+        //when
+        writer.write(chunk);
+
+        //then
+        assertThat(statements).hasSize(1);
+        assertThat(statements.get(0)).contains("(?, ?, ?), (?, ?, ?), (?, ?, ?), (?, ?, ?), (?, ?, ?)");
+        assertThat(chunk).extracting(Person::getId).isEqualTo(savedIds(chunk));
+        assertThat(chunk).extracting(Person::getId).containsExactly(2, 3, 4, 5, 6);
+    }
+
+    @Test
+    void rowsPerStatement보다_큰_chunk는_나눠서_저장한다() {
+        //given
+        List<Person> chunk = persons("변구훈", "홍길동", "아무개", "김철수", "이영희");
+        PersonBatchInsertItemWriter writer = new PersonBatchInsertItemWriter(countingDataSource());
+        writer.setRowsPerStatement(2);
+
+        //when
+        writer.write(chunk);
+
+        //then : 2, 2, 1건
+        assertThat(statements).hasSize(3);
+        assertThat(chunk).extracting(Person::getId).isEqualTo(savedIds(chunk));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from person", Integer.class)).isEqualTo(6);
+    }
+
+    private static List<Person> persons(String... names) {
+        return Arrays.stream(names)
+                .map(name -> new Person(name, "30", "서울"))
+                .collect(Collectors.toList());
+    }
+
+    //DB에 저장된 이름별 id를 chunk 순서대로
+    private List<Integer> savedIds(List<Person> chunk) {
+        Map<String, Integer> ids = jdbcTemplate.query("select id, name from person", rs -> {
+            Map<String, Integer> result = new HashMap<>();
+            while (rs.next()) {
+                result.put(rs.getString("name"), rs.getInt("id"));
+            }
+            return result;
+        });
+        return chunk.stream().map(person -> ids.get(person.getName())).collect(Collectors.toList());
+    }
+
+    //writer가 준비한 insert 문장을 기록하는 DataSource
+    private DelegatingDataSource countingDataSource() {
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection connection = super.getConnection();
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().startsWith("prepare")) {
+                        statements.add((String) args[0]);
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+            }
+        };
+    }
+
+}
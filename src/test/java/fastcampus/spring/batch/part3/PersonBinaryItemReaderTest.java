@@ -0,0 +1,207 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PersonBinaryItemReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writer가_쓴_레코드를_그대로_읽는다() throws Exception {
+        //given : map 구간보다 긴 파일, null 필드
+        Path file = directory.resolve("person.bin");
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            people.add(new Person(i + 1, "이름" + i, i % 10 == 0 ? null : String.valueOf(i), "서울시 강남구 " + i));
+        }
+        write(file, people);
+
+        PersonBinaryItemReader reader = new PersonBinaryItemReader(file);
+        reader.setMapSize(100);     //레코드가 구간 끝에 걸치는 경우도 확인
+
+        //when
+        reader.open(new ExecutionContext());
+        List<Person> read = readAll(reader);
+        reader.close();
+
+        //then
+        assertThat(read).hasSize(100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(read.get(i).getId()).isEqualTo(people.get(i).getId());
+            assertThat(read.get(i).getName()).isEqualTo(people.get(i).getName());
+            assertThat(read.get(i).getAge()).isEqualTo(people.get(i).getAge());
+            assertThat(read.get(i).getAddress()).isEqualTo(people.get(i).getAddress());
+        }
+    }
+
+    @Test
+    void 재시작하면_저장된_바이트_위치부터_읽는다() throws Exception {
+        //given
+        Path file = directory.resolve("person.bin");
+        List<Person> people = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            people.add(new Person(i + 1, "이름" + i, "20", "서울"));
+        }
+        write(file, people);
+
+        ExecutionContext executionContext = new ExecutionContext();
+        PersonBinaryItemReader reader = new PersonBinaryItemReader(file);
+        reader.open(executionContext);
+        for (int i = 0; i < 12; i++) {
+            reader.read();
+        }
+        reader.update(executionContext);
+        reader.close();
+
+        //when
+        PersonBinaryItemReader restarted = new PersonBinaryItemReader(file);
+        restarted.open(executionContext);
+        List<Person> rest = readAll(restarted);
+        restarted.close();
+
+        //then
+        assertThat(rest).hasSize(18);
+        assertThat(rest.get(0).getId()).isEqualTo(13);
+    }
+
+    @Test
+    void 스테이징_파일이_아니면_열지_않는다() throws Exception {
+        Path file = Files.write(directory.resolve("person.csv"), "이름,나이,거주지\n".getBytes());
+
+        PersonBinaryItemReader reader = new PersonBinaryItemReader(file);
+
+        assertThatThrownBy(() -> reader.open(new ExecutionContext())).isInstanceOf(ItemStreamException.class);
+    }
+
+    @Test
+    void step이_완료되면_reader를_닫은_뒤에_파일을_지운다() throws Exception {
+        //given
+        Path file = directory.resolve("person.bin");
+        write(file, List.of(new Person(1, "변구훈", "30", "서울")));
+        PersonBinaryItemReader reader = new PersonBinaryItemReader(file);
+        reader.setDeleteOnComplete(true);
+        reader.open(new ExecutionContext());
+        readAll(reader);
+
+        //when
+        reader.afterStep(stepExecution(BatchStatus.COMPLETED));
+
+        //then : afterStep은 close보다 먼저 호출되므로 아직 map된 파일을 지우지 않음
+        assertThat(file).exists();
+        reader.close();
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    void step이_실패하면_재시작할_수_있게_파일을_남긴다() throws Exception {
+        //given
+        Path file = directory.resolve("person.bin");
+        write(file, List.of(new Person(1, "변구훈", "30", "서울")));
+        PersonBinaryItemReader reader = new PersonBinaryItemReader(file);
+        reader.setDeleteOnComplete(true);
+        reader.open(new ExecutionContext());
+
+        //when
+        reader.afterStep(stepExecution(BatchStatus.FAILED));
+        reader.close();
+
+        //then
+        assertThat(file).exists();
+    }
+
+    @Test
+    void step에_reader로만_등록해도_완료되면_파일을_지운다() throws Exception {
+        //given
+        Path file = directory.resolve("person.bin");
+        write(file, List.of(new Person(1, "변구훈", "30", "서울"), new Person(2, "홍길동", "40", "부산")));
+        PersonBinaryItemReader reader = new PersonBinaryItemReader(file);
+        reader.setDeleteOnComplete(true);
+
+        EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("/org/springframework/batch/core/schema-h2.sql")
+                .build();
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        JobRepositoryFactoryBean jobRepositoryFactory = new JobRepositoryFactoryBean();
+        jobRepositoryFactory.setDataSource(dataSource);
+        jobRepositoryFactory.setTransactionManager(transactionManager);
+        jobRepositoryFactory.afterPropertiesSet();
+        JobRepository jobRepository = jobRepositoryFactory.getObject();
+        SimpleJobLauncher jobLauncher = new SimpleJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+        List<Person> written = new ArrayList<>();
+
+        //when
+        JobExecution jobExecution = jobLauncher.run(new JobBuilder("stagedFileJob")
+                .repository(jobRepository)
+                .start(new StepBuilder("stagedFileStep")
+                        .repository(jobRepository)
+                        .transactionManager(transactionManager)
+                        .<Person, Person>chunk(10)
+                        .reader(reader)
+                        .writer(written::addAll)
+                        .build())
+                .build(), new JobParameters());
+        dataSource.shutdown();
+
+        //then
+        assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(written).hasSize(2);
+        assertThat(file).doesNotExist();
+    }
+
+    private static StepExecution stepExecution(BatchStatus status) {
+        StepExecution stepExecution = new StepExecution("stagedFileStep", new JobExecution(1L));
+        stepExecution.setStatus(status);
+        return stepExecution;
+    }
+
+    private void write(Path file, List<Person> people) throws Exception {
+        PersonBinaryItemWriter writer = new PersonBinaryItemWriter(file);
+        writer.setBufferSize(256);
+        ExecutionContext executionContext = new ExecutionContext();
+        writer.open(executionContext);
+        for (int i = 0; i < people.size(); i += 10) {
+            writer.write(people.subList(i, Math.min(i + 10, people.size())));
+            writer.update(executionContext);
+        }
+        writer.close();
+    }
+
+    private List<Person> readAll(PersonBinaryItemReader reader) throws Exception {
+        List<Person> read = new ArrayList<>();
+        Person person;
+        while ((person = reader.read()) != null) {
+            read.add(person);
+        }
+        return read;
+    }
+
+}
@@ -0,0 +1,174 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.FlatFileParseException;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PersonCsvItemReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void 헤더를_건너뛰고_Person으로_매핑한다() throws Exception {
+        //given
+        PersonCsvItemReader reader = new PersonCsvItemReader(new ClassPathResource("test.csv"), true);
+        reader.setLinesToSkip(1);
+
+        //when
+        reader.open(new ExecutionContext());
+        Person first = reader.read();
+        Person second = reader.read();
+        Person third = reader.read();   //마지막 줄은 개행 없음
+        Person end = reader.read();
+        reader.close();
+
+        //then
+        assertThat(first.getId()).isEqualTo(1);
+        assertThat(first.getName()).isEqualTo("변구훈");
+        assertThat(first.getAge()).isEqualTo("30");
+        assertThat(first.getAddress()).isEqualTo("서울");
+        assertThat(second.getName()).isEqualTo("홍길동");
+        assertThat(third.getAddress()).isEqualTo("강원");
+        assertThat(end).isNull();
+    }
+
+    @Test
+    void 같은_나이와_거주지는_같은_String을_쓰고_숫자가_아닌_나이도_그대로_읽는다() throws Exception {
+        //given
+        Path file = directory.resolve("person.csv");
+        Files.write(file, "이름,나이,거주지\n가,30,서울\n나,30,서울\n다,030,서울\n라,,부산\n마,서른,부산\n".getBytes(StandardCharsets.UTF_8));
+        PersonCsvItemReader reader = reader(file);
+
+        //when
+        reader.open(new ExecutionContext());
+        Person first = reader.read();
+        Person second = reader.read();
+        Person third = reader.read();
+        Person fourth = reader.read();
+        Person fifth = reader.read();
+        reader.close();
+
+        //then
+        assertThat(second.getAddress()).isSameAs(first.getAddress());
+        assertThat(fifth.getAddress()).isSameAs(fourth.getAddress()).isEqualTo("부산");
+        assertThat(second.getAge()).isSameAs(first.getAge()).isEqualTo("30");
+        assertThat(third.getAge()).isEqualTo("030");
+        assertThat(fourth.getAge()).isEmpty();
+        assertThat(fifth.getAge()).isEqualTo("서른");
+    }
+
+    @Test
+    void 재시작하면_저장된_바이트_위치부터_읽는다() throws Exception {
+        //given : 버퍼보다 긴 파일, 따옴표가 들어간 줄, \r\n 줄바꿈
+        Path file = directory.resolve("person.csv");
+        StringBuilder csv = new StringBuilder("이름,나이,거주지\r\n");
+        for (int i = 0; i < 100; i++) {
+            csv.append("이름").append(i).append(",").append(i).append(",\"서울, 강남\"\r\n");
+        }
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        ExecutionContext executionContext = new ExecutionContext();
+        PersonCsvItemReader reader = reader(file);
+        reader.open(executionContext);
+        for (int i = 0; i < 40; i++) {
+            reader.read();
+        }
+        reader.update(executionContext);
+        reader.close();
+
+        //when
+        PersonCsvItemReader restarted = reader(file);
+        restarted.open(executionContext);
+        Person person = restarted.read();
+        int count = 1;
+        while (restarted.read() != null) {
+            count++;
+        }
+        restarted.close();
+
+        //then
+        assertThat(person.getName()).isEqualTo("이름40");
+        assertThat(person.getAge()).isEqualTo("40");
+        assertThat(person.getAddress()).isEqualTo("서울, 강남");
+        assertThat(count).isEqualTo(60);
+    }
+
+    @Test
+    void 따옴표_여부와_상관없이_필드_앞뒤_공백을_잘라낸다() throws Exception {
+        //given
+        Path file = directory.resolve("person.csv");
+        Files.write(file, "id,이름,나이,거주지\n 7 , 변구훈 ,30 , 서울\n8, 홍길동 ,30,\" 서울 \"\n".getBytes(StandardCharsets.UTF_8));
+        PersonCsvItemReader reader = new PersonCsvItemReader(new FileSystemResource(file), true);
+        reader.setLinesToSkip(1);
+
+        //when
+        reader.open(new ExecutionContext());
+        Person unquoted = reader.read();
+        Person quoted = reader.read();
+        reader.close();
+
+        //then
+        assertThat(unquoted.getId()).isEqualTo(7);
+        assertThat(unquoted.getName()).isEqualTo("변구훈");
+        assertThat(quoted.getName()).isEqualTo("홍길동");
+        assertThat(unquoted.getAge()).isEqualTo("30").isEqualTo(quoted.getAge());
+        assertThat(unquoted.getAddress()).isEqualTo("서울").isEqualTo(quoted.getAddress());
+    }
+
+    @Test
+    void 주석_줄은_건너뛰고_빈_줄은_FlatFileParseException을_던진다() throws Exception {
+        //given
+        Path file = directory.resolve("person.csv");
+        Files.write(file, "이름,나이,거주지\n#주석,1,2\n변구훈,30,서울\n\n홍길동,30,서울\n".getBytes(StandardCharsets.UTF_8));
+        PersonCsvItemReader reader = reader(file);
+
+        //when
+        reader.open(new ExecutionContext());
+        Person first = reader.read();
+
+        //then
+        assertThat(first.getName()).isEqualTo("변구훈");
+        assertThatThrownBy(reader::read)
+                .isInstanceOf(FlatFileParseException.class)
+                .satisfies(e -> assertThat(((FlatFileParseException) e).getLineNumber()).isEqualTo(4));
+        reader.close();
+    }
+
+    @Test
+    void int_범위를_넘는_id는_FlatFileParseException을_던진다() throws Exception {
+        //given
+        Path file = directory.resolve("person.csv");
+        Files.write(file, "-2147483648,변구훈,30,서울\n2147483648,홍길동,30,서울\n".getBytes(StandardCharsets.UTF_8));
+        PersonCsvItemReader reader = new PersonCsvItemReader(new FileSystemResource(file), true);
+
+        //when
+        reader.open(new ExecutionContext());
+        Person min = reader.read();
+
+        //then
+        assertThat(min.getId()).isEqualTo(Integer.MIN_VALUE);
+        assertThatThrownBy(reader::read)
+                .isInstanceOf(FlatFileParseException.class)
+                .hasMessageContaining("int 범위");
+        reader.close();
+    }
+
+    private PersonCsvItemReader reader(Path file) {
+        PersonCsvItemReader reader = new PersonCsvItemReader(new FileSystemResource(file), false);
+        reader.setLinesToSkip(1);
+        reader.setBufferSize(64);
+        return reader;
+    }
+
+}
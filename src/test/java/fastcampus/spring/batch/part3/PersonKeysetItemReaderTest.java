@@ -0,0 +1,99 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersonKeysetItemReaderTest {
+
+    private EmbeddedDatabase dataSource;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .build();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table person(id int primary key auto_increment, name varchar(255), age varchar(255), address varchar(255))");
+        for (int i = 1; i <= 250; i++) {
+            if (i % 7 != 0) {   //id 중간에 빈 곳이 있어도 됨
+                jdbcTemplate.update("insert into person(id, name, age, address) values (?, ?, ?, ?)", i, "이름" + i, "20", "서울");
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    void 재시작하면_마지막으로_읽은_id_다음부터_읽는다() throws Exception {
+        //given
+        ExecutionContext executionContext = new ExecutionContext();
+        PersonKeysetItemReader reader = reader(1, 250);
+        reader.open(executionContext);
+        for (int i = 0; i < 45; i++) {
+            reader.read();
+        }
+        reader.update(executionContext);
+        reader.read();  //커밋되지 않은 읽기
+        reader.close();
+
+        //when
+        PersonKeysetItemReader restarted = reader(1, 250);
+        restarted.open(executionContext);
+        List<Integer> ids = readIds(restarted);
+
+        //then
+        assertThat(ids.get(0)).isEqualTo(53);  //45번째 아이템은 id 52
+        assertThat(ids).hasSize(215 - 45);
+        assertThat(ids).isSorted();
+    }
+
+    @Test
+    void id_구간으로_나눈_파티션을_모두_읽으면_전체를_한번씩_읽는다() throws Exception {
+        //given
+        Map<String, ExecutionContext> partitions = new IdRangePartitioner(dataSource, "person", "id").partition(4);
+
+        //when
+        List<Integer> ids = new ArrayList<>();
+        for (ExecutionContext context : partitions.values()) {
+            ids.addAll(readIds(reader(context.getLong(IdRangePartitioner.MIN_ID), context.getLong(IdRangePartitioner.MAX_ID))));
+        }
+
+        //then
+        assertThat(partitions).hasSize(4);
+        assertThat(ids).hasSize(215).doesNotHaveDuplicates();
+    }
+
+    private PersonKeysetItemReader reader(long minId, long maxId) {
+        PersonKeysetItemReader reader = new PersonKeysetItemReader(dataSource, minId, maxId);
+        reader.setPageSize(20);
+        return reader;
+    }
+
+    private List<Integer> readIds(PersonKeysetItemReader reader) throws Exception {
+        reader.open(new ExecutionContext());
+        List<Integer> ids = new ArrayList<>();
+        Person person;
+        while ((person = reader.read()) != null) {
+            ids.add(person.getId());
+        }
+        reader.close();
+        return ids;
+    }
+
+}
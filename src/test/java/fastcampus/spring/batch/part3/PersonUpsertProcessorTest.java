@@ -0,0 +1,97 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class PersonUpsertProcessorTest {
+
+    @Test
+    void chunk마다_한번만_조회하고_이미_있는_이름은_필터링한다() throws Exception {
+        //given : DB에는 변구훈만 있음
+        PersonRepository personRepository = repository(key(7, "변구훈"));
+        PersonUpsertProcessor processor = new PersonUpsertProcessor(personRepository, false, 100);
+        List<Person> chunk = Arrays.asList(person("변구훈"), person("홍길동"), person("변구훈"), person("아무개"));
+
+        //when
+        chunk.forEach(processor::afterRead);
+        long written = 0;
+        for (Person person : chunk) {
+            if (processor.process(person) != null) {
+                written++;
+            }
+        }
+
+        //then
+        assertThat(written).isEqualTo(2);
+        assertThat(processor.getLookupQueries()).isEqualTo(1);
+        verify(personRepository, times(1)).findByNameIn(anyCollection());
+    }
+
+    @Test
+    void update_모드는_기존_id를_넣고_저장한_이름은_다시_조회하지_않는다() throws Exception {
+        //given
+        PersonRepository personRepository = repository(key(7, "변구훈"));
+        PersonUpsertProcessor processor = new PersonUpsertProcessor(personRepository, true, 100);
+        Person existing = person("변구훈");
+        Person created = person("홍길동");
+
+        //when : 첫 chunk에서 홍길동을 insert(id 10) 한 뒤 다음 chunk에서 둘 다 다시 읽음
+        processor.afterRead(existing);
+        processor.afterRead(created);
+        processor.process(existing);
+        processor.process(created);
+        created.setId(10);
+        processor.afterWrite(Collections.singletonList(created));
+
+        Person again = person("홍길동");
+        processor.afterRead(again);
+        Person updated = processor.process(again);
+
+        //then
+        assertThat(existing.getId()).isEqualTo(7);
+        assertThat(updated.getId()).isEqualTo(10);
+        assertThat(processor.getLookupQueries()).isEqualTo(1);
+        assertThat(processor.getCacheHits()).isEqualTo(2);
+    }
+
+    private static PersonRepository repository(PersonRepository.PersonKey... keys) {
+        PersonRepository personRepository = Mockito.mock(PersonRepository.class);
+        Mockito.when(personRepository.findByNameIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> names = invocation.getArgument(0);
+            return Arrays.stream(keys)
+                    .filter(key -> names.contains(key.getName()))
+                    .collect(Collectors.toList());
+        });
+        return personRepository;
+    }
+
+    private static PersonRepository.PersonKey key(int id, String name) {
+        return new PersonRepository.PersonKey() {
+            @Override
+            public int getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+        };
+    }
+
+    private static Person person(String name) {
+        return new Person(name, "30", "서울");
+    }
+
+}
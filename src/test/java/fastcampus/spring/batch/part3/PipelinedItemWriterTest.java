@@ -0,0 +1,114 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.scope.context.ChunkContext;
+import org.springframework.batch.core.scope.context.StepSynchronizationManager;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.support.transaction.ResourcelessTransactionManager;
+import org.springframework.batch.test.MetaDataInstanceFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PipelinedItemWriterTest {
+
+    @Test
+    void write_behind는_chunk_순서대로_저장하고_필터링된_개수를_반영한다() throws Exception {
+        //given
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+        PipelinedItemWriter<Integer> writer = new PipelinedItemWriter<>(written::addAll, new ResourcelessTransactionManager(), 1, 2);
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        StepSynchronizationManager.register(stepExecution);
+        writer.open(new ExecutionContext());
+
+        //when
+        try {
+            for (int chunk = 0; chunk < 50; chunk++) {
+                writer.write(Arrays.asList(done(chunk * 2), done(null), done(chunk * 2 + 1)));
+                stepExecution.setWriteCount(stepExecution.getWriteCount() + 3);    //chunk processor처럼 Future 개수만큼 증가
+
+                //then : chunk가 커밋될 때 저장되는 개수가 바로 맞음
+                assertThat(stepExecution.getWriteCount()).isEqualTo((chunk + 1) * 2);
+                assertThat(stepExecution.getFilterCount()).isEqualTo(chunk + 1);
+            }
+        } finally {
+            StepSynchronizationManager.close();
+        }
+        ExitStatus exitStatus = writer.afterStep(stepExecution);
+        writer.close();
+
+        //then
+        assertThat(exitStatus).isNull();
+        assertThat(written).hasSize(100);
+        for (int i = 0; i < written.size(); i++) {
+            assertThat(written.get(i)).isEqualTo(i);
+        }
+        assertThat(stepExecution.getWriteCount()).isEqualTo(100);
+        assertThat(stepExecution.getFilterCount()).isEqualTo(50);
+    }
+
+    @Test
+    void chunk가_롤백되면_옮긴_필터링_개수를_되돌린다() throws Exception {
+        //given
+        PipelinedItemWriter<Integer> writer = new PipelinedItemWriter<>(items -> {
+            throw new IllegalStateException("DB 오류");
+        });
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        stepExecution.setWriteCount(10);
+        stepExecution.setFilterCount(2);
+        ChunkContext chunkContext = new ChunkContext(StepSynchronizationManager.register(stepExecution));
+
+        //when
+        try {
+            assertThatThrownBy(() -> writer.write(Arrays.asList(done(1), done(null))))
+                    .isInstanceOf(IllegalStateException.class);
+            writer.afterChunkError(chunkContext);
+        } finally {
+            StepSynchronizationManager.close();
+        }
+
+        //then
+        assertThat(stepExecution.getWriteCount()).isEqualTo(10);
+        assertThat(stepExecution.getFilterCount()).isEqualTo(2);
+    }
+
+    @Test
+    void write_behind_저장이_실패하면_step을_실패로_바꾼다() throws Exception {
+        //given : write가 돌아온 뒤에 저장이 실패하도록 latch로 순서를 맞춤 (먼저 실패하면 write에서 예외가 남)
+        CountDownLatch written = new CountDownLatch(1);
+        PipelinedItemWriter<Integer> writer = new PipelinedItemWriter<>(items -> {
+            written.await();
+            throw new IllegalStateException("DB 오류");
+        }, new ResourcelessTransactionManager(), 1, 2);
+        StepExecution stepExecution = MetaDataInstanceFactory.createStepExecution();
+        stepExecution.setStatus(BatchStatus.COMPLETED);
+        writer.open(new ExecutionContext());
+
+        //when
+        writer.write(Collections.singletonList(done(1)));
+        written.countDown();
+        ExitStatus exitStatus = writer.afterStep(stepExecution);
+        writer.close();
+
+        //then
+        assertThat(exitStatus.getExitCode()).isEqualTo(ExitStatus.FAILED.getExitCode());
+        assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.FAILED);
+        assertThat(stepExecution.getFailureExceptions()).hasSize(1);
+    }
+
+    private static Future<Integer> done(Integer item) {
+        return CompletableFuture.completedFuture(item);
+    }
+
+}
@@ -5,6 +5,7 @@ import org.assertj.core.api.Assertions;
 import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobParameters;
 import org.springframework.batch.core.JobParametersBuilder;
@@ -12,9 +13,12 @@ import org.springframework.batch.core.StepExecution;
 import org.springframework.batch.test.JobLauncherTestUtils;
 import org.springframework.batch.test.context.SpringBatchTest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.Collection;
+
 @SpringBatchTest    //@JobScope 동작하려면 이거 해줘야함.
 @RunWith(SpringRunner.class)
 @ContextConfiguration(classes = {SavePersonConfiguration.class, TestConfiguration.class})
@@ -31,6 +35,9 @@ public class SavePersonConfigurationTest {
     @Autowired
     private PersonRepository personRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Test
     public void test_allow_duplicate() throws Exception {
         //given
@@ -67,6 +74,159 @@ public class SavePersonConfigurationTest {
                 .isEqualTo(100);
     }
 
+    @Test
+    public void test_stateless_writer() throws Exception {
+        //given
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("allow_duplicate", "true")
+                .addString("writer_mode", "stateless")
+                .toJobParameters();
+
+        //when
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+
+        //then
+        Assertions.assertThat(jobExecution.getStepExecutions().stream()
+                .mapToInt(StepExecution::getWriteCount)
+                .sum())
+                .isEqualTo(personRepository.count())
+                .isEqualTo(100);
+    }
+
+    @Test
+    public void test_multi_row_writer() throws Exception {
+        //given
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("allow_duplicate", "true")
+                .addString("writer_mode", "multi_row")
+                .toJobParameters();
+
+        //when
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+
+        //then
+        Assertions.assertThat(jobExecution.getStepExecutions().stream()
+                .mapToInt(StepExecution::getWriteCount)
+                .sum())
+                .isEqualTo(personRepository.count())
+                .isEqualTo(100);
+        Assertions.assertThat(personRepository.findAll()).extracting(Person::getId).doesNotHaveDuplicates();
+    }
+
+    @Test
+    public void test_upsert_filter() throws Exception {
+        //given : 이전 실행에서 변구훈이 이미 저장됨
+        personRepository.save(new Person("변구훈", "30", "서울"));
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("upsert_mode", "filter")
+                .toJobParameters();
+
+        //when
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+
+        //then
+        StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(2);
+        Assertions.assertThat(stepExecution.getFilterCount()).isEqualTo(98);
+        Assertions.assertThat(personRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    public void test_upsert_update() throws Exception {
+        //given
+        Person existing = personRepository.save(new Person("변구훈", "99", "부산"));
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("upsert_mode", "update")
+                .addString("writer_mode", "multi_row")
+                .toJobParameters();
+
+        //when
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+
+        //then : 기존 row는 갱신하고 나머지 두 이름만 insert
+        Assertions.assertThat(jobExecution.getStepExecutions().iterator().next().getWriteCount()).isEqualTo(3);
+        Assertions.assertThat(personRepository.count()).isEqualTo(3);
+        Person updated = personRepository.findById(existing.getId()).orElseThrow(IllegalStateException::new);
+        Assertions.assertThat(updated.getAge()).isEqualTo("30");
+        Assertions.assertThat(updated.getAddress()).isEqualTo("서울");
+    }
+
+    @Test
+    public void test_bisect_fault_tolerance() throws Exception {
+        //when
+        StepExecution stepExecution = launchBisectWithAddressCheck("multi_row").iterator().next();
+
+        //then : 아무개 33건만 skip
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(67);
+        Assertions.assertThat(stepExecution.getWriteSkipCount()).isEqualTo(33);
+        Assertions.assertThat(stepExecution.getRollbackCount()).isZero();
+        Assertions.assertThat(personRepository.count()).isEqualTo(67);
+    }
+
+    @Test
+    public void test_bisect_fault_tolerance_stateless() throws Exception {
+        //when : StatelessSession이 던지는 Hibernate 예외도 skip 대상으로 분류되어야 함
+        StepExecution stepExecution = launchBisectWithAddressCheck("stateless").iterator().next();
+
+        //then
+        Assertions.assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(67);
+        Assertions.assertThat(stepExecution.getWriteSkipCount()).isEqualTo(33);
+        Assertions.assertThat(personRepository.count()).isEqualTo(67);
+    }
+
+    @Test
+    public void test_write_behind_restart_rejected() throws Exception {
+        assertRestartRejected(new JobParametersBuilder()
+                .addString("allow_duplicate", "true")
+                .addString("pipeline_mode", "write_behind")
+                .toJobParameters());
+    }
+
+    @Test
+    public void test_multi_threaded_restart_rejected() throws Exception {
+        assertRestartRejected(new JobParametersBuilder()
+                .addString("allow_duplicate", "true")
+                .addString("step_threads", "2")
+                .toJobParameters());
+    }
+
+    //읽은 위치를 저장하지 않는 step은 실패한 뒤 재시작하면 처음부터 다시 저장하지 않고 실패해야 함
+    private void assertRestartRejected(JobParameters jobParameters) throws Exception {
+        //given : 강원에 사는 사람을 저장하다가 실패
+        Assertions.assertThat(launchWithAddressCheck(jobParameters)).extracting(StepExecution::getStatus).containsOnly(BatchStatus.FAILED);
+        long saved = personRepository.count();
+
+        //when
+        JobExecution restarted = jobLauncherTestUtils.launchJob(jobParameters);
+
+        //then : 처음부터 다시 저장하지 않음
+        Assertions.assertThat(restarted.getStatus()).isEqualTo(BatchStatus.FAILED);
+        Assertions.assertThat(restarted.getAllFailureExceptions()).anyMatch(e -> e.getMessage().contains("재시작할 수 없는 step"));
+        Assertions.assertThat(personRepository.count()).isEqualTo(saved);
+    }
+
+    //강원에 사는 사람은 저장할 수 없도록 제약 조건을 추가하고 실행
+    private Collection<StepExecution> launchWithAddressCheck(JobParameters jobParameters) throws Exception {
+        jdbcTemplate.execute("alter table person add constraint person_address_check check (address <> '강원')");
+        try {
+            return jobLauncherTestUtils.launchJob(jobParameters).getStepExecutions();
+        } finally {
+            jdbcTemplate.execute("alter table person drop constraint person_address_check");
+        }
+    }
+
+    //StepExecution, JobExecution을 반환하면 @SpringBatchTest가 step/job scope용 팩토리 메서드로 인식하므로 컬렉션으로 반환
+    private Collection<StepExecution> launchBisectWithAddressCheck(String writerMode) throws Exception {
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("allow_duplicate", "true")
+                .addString("writer_mode", writerMode)
+                .addString("fault_tolerance", "bisect")
+                .addString("skip_limit", "40")
+                .toJobParameters();
+        return launchWithAddressCheck(jobParameters);
+    }
+
     @Test
     public void test_step(){
         //when
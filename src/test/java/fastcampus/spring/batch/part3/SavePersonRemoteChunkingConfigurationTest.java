@@ -0,0 +1,103 @@
+package fastcampus.spring.batch.part3;
+
+import fastcampus.spring.batch.TestConfiguration;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRestartException;
+import org.springframework.batch.test.JobLauncherTestUtils;
+import org.springframework.batch.test.context.SpringBatchTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@SpringBatchTest
+@RunWith(SpringRunner.class)
+@ContextConfiguration(classes = {SavePersonRemoteChunkingConfiguration.class, TestConfiguration.class})
+public class SavePersonRemoteChunkingConfigurationTest {
+
+    @After
+    public void testDown() throws Exception {
+        personRepository.deleteAll();
+    }
+
+    @Autowired
+    private JobLauncherTestUtils jobLauncherTestUtils;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @Test
+    public void test_in_jvm_dedup() throws Exception {
+        //given
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("remote_workers", "3")
+                .addString("allow_duplicate", "false")
+                .toJobParameters();
+
+        //when
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+
+        //then : worker가 여러 개여도 이름별로 한 건씩만 저장
+        StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+        Assertions.assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(personRepository.count()).isEqualTo(3);
+        Assertions.assertThat(stepExecution.getFilterCount()).isEqualTo(97);
+    }
+
+    @Test
+    public void test_tcp_dedup() throws Exception {
+        //given
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("remote_workers", "2")
+                .addString("remote_transport", "tcp")
+                .addString("allow_duplicate", "false")
+                .toJobParameters();
+
+        //when
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+
+        //then
+        StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+        Assertions.assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(personRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    public void test_tcp_allow_duplicate() throws Exception {
+        //given
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("remote_transport", "tcp")
+                .addString("allow_duplicate", "true")
+                .toJobParameters();
+
+        //when
+        JobExecution jobExecution = jobLauncherTestUtils.launchJob(jobParameters);
+
+        //then
+        StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+        Assertions.assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        Assertions.assertThat(stepExecution.getWriteCount()).isEqualTo(personRepository.count()).isEqualTo(100);
+    }
+
+    @Test
+    public void test_restart_rejected() throws Exception {
+        //given : 실패한 실행
+        JobParameters jobParameters = new JobParametersBuilder()
+                .addString("remote_transport", "unknown")
+                .toJobParameters();
+        JobExecution failed = jobLauncherTestUtils.launchJob(jobParameters);
+        Assertions.assertThat(failed.getStatus()).isEqualTo(BatchStatus.FAILED);
+
+        //when //then : worker가 커밋한 chunk를 다시 보내지 않도록 재시작은 막음
+        Assertions.assertThatThrownBy(() -> jobLauncherTestUtils.launchJob(jobParameters))
+                .isInstanceOf(JobRestartException.class);
+    }
+
+}
@@ -0,0 +1,189 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepContribution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.repeat.RepeatStatus;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlicedTaskletTest {
+
+    private final ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+
+    //재시작 테스트용 JDBC JobRepository. 커밋이 실패하면 step 메타데이터도 같이 롤백됨
+    private final EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("/org/springframework/batch/core/schema-h2.sql")
+            .build();
+    private final AtomicBoolean failNextCommit = new AtomicBoolean();
+    private final DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource) {
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            if (failNextCommit.getAndSet(false)) {
+                throw new TransactionSystemException("커밋 실패");
+            }
+            super.doCommit(status);
+        }
+    };
+    private JobRepository jobRepository;
+    private SimpleJobLauncher jobLauncher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        transactionManager.setRollbackOnCommitFailure(true);   //상태를 UNKNOWN이 아니라 롤백으로 남겨서 재시작할 수 있게 함
+        JobRepositoryFactoryBean jobRepositoryFactory = new JobRepositoryFactoryBean();
+        jobRepositoryFactory.setDataSource(dataSource);
+        jobRepositoryFactory.setTransactionManager(transactionManager);
+        jobRepositoryFactory.afterPropertiesSet();
+        jobRepository = jobRepositoryFactory.getObject();
+        jobLauncher = new SimpleJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    void 나누어떨어지지_않아도_모든_slice를_한_번씩_처리한다() throws Exception {
+        //given : 95개를 10개씩 -> 마지막 slice는 5개
+        List<Integer> items = IntStream.range(0, 95).boxed().collect(Collectors.toList());
+        Map<Integer, List<Integer>> processed = new ConcurrentHashMap<>();
+        SlicedTasklet<Integer> tasklet = new SlicedTasklet<>(items, 10, processed::put);
+        tasklet.setForkJoinPool(forkJoinPool);
+        StepExecution stepExecution = stepExecution(new ExecutionContext());
+
+        //when
+        int executions = executeAll(tasklet, stepExecution);
+
+        //then
+        assertThat(executions).isEqualTo(3);    //병렬도 4 -> 4, 4, 2개 slice
+        assertThat(processed).hasSize(10);
+        assertThat(processed.get(9)).containsExactly(90, 91, 92, 93, 94);
+        assertThat(processed.values().stream().mapToInt(List::size).sum()).isEqualTo(95);
+        assertThat(stepExecution.getReadCount()).isEqualTo(95);
+        assertThat(stepExecution.getExecutionContext().getString("SlicedTasklet.completed")).isEqualTo("0-9");
+    }
+
+    @Test
+    void 재시작하면_처리하지_못한_slice만_처리한다() throws Exception {
+        //given : 병렬도 4, slice 6개. 첫 번째 묶음(0~3) 중 slice 2가 한 번 실패
+        List<Integer> items = IntStream.range(0, 60).boxed().collect(Collectors.toList());
+        Map<Integer, Integer> attempts = new ConcurrentHashMap<>();
+        SlicedTasklet.SliceProcessor<Integer> processor = (slice, sliceItems) -> {
+            if (attempts.merge(slice, 1, Integer::sum) == 1 && slice == 2) {
+                throw new IllegalStateException("slice 2 실패");
+            }
+        };
+
+        JobExecution failed = jobLauncher.run(job(items, processor), new JobParameters());
+        assertThat(failed.getStatus()).isEqualTo(BatchStatus.FAILED);
+        ExecutionContext saved = jobRepository.getLastStepExecution(failed.getJobInstance(), "slicedStep").getExecutionContext();
+        assertThat(saved.getString("SlicedTasklet.completed")).isEqualTo("0-1,3");
+
+        //when
+        JobExecution restarted = jobLauncher.run(job(items, processor), new JobParameters());
+
+        //then : 실패한 묶음에서 성공한 slice는 다시 처리하지 않음
+        assertThat(restarted.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(attempts).containsEntry(0, 1).containsEntry(1, 1).containsEntry(2, 2).containsEntry(3, 1).containsEntry(4, 1).containsEntry(5, 1);
+        assertThat(restarted.getStepExecutions().iterator().next().getExecutionContext().getString("SlicedTasklet.completed")).isEqualTo("0-5");
+    }
+
+    @Test
+    void chunk_커밋이_실패해도_처리한_slice는_재시작할_때_건너뛴다() throws Exception {
+        //given : slice 6개, 첫 chunk(slice 0~3) 커밋이 실패. slice는 step 트랜잭션 밖에서 이미 처리됨
+        List<Integer> items = IntStream.range(0, 60).boxed().collect(Collectors.toList());
+        Map<Integer, Integer> attempts = new ConcurrentHashMap<>();
+        SlicedTasklet.SliceProcessor<Integer> processor = (slice, sliceItems) -> {
+            if (attempts.merge(slice, 1, Integer::sum) == 1 && slice == 0) {
+                failNextCommit.set(true);   //slice를 처리한 chunk의 커밋을 실패시킴
+            }
+        };
+
+        //커밋이 실패하면 TaskletStep이 ExecutionContext를 chunk 시작 전 상태로 되돌림
+        JobExecution failed = jobLauncher.run(job(items, processor), new JobParameters());
+        assertThat(failed.getStatus()).isEqualTo(BatchStatus.FAILED);
+        ExecutionContext saved = jobRepository.getLastStepExecution(failed.getJobInstance(), "slicedStep").getExecutionContext();
+        assertThat(saved.getString("SlicedTasklet.completed")).isEqualTo("0-3");
+
+        //when
+        JobExecution restarted = jobLauncher.run(job(items, processor), new JobParameters());
+
+        //then : slice마다 한 번씩만 처리
+        assertThat(restarted.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(attempts).hasSize(6).allSatisfy((slice, count) -> assertThat(count).isEqualTo(1));
+    }
+
+    private Job job(List<Integer> items, SlicedTasklet.SliceProcessor<Integer> processor) {
+        SlicedTasklet<Integer> tasklet = new SlicedTasklet<>(items, 10, processor);
+        tasklet.setForkJoinPool(forkJoinPool);
+        return new JobBuilder("slicedJob")
+                .repository(jobRepository)
+                .start(new StepBuilder("slicedStep")
+                        .repository(jobRepository)
+                        .transactionManager(transactionManager)
+                        .tasklet(tasklet)     //StepExecutionListener로도 등록됨
+                        .build())
+                .build();
+    }
+
+    @Test
+    void 처리한_slice_번호를_범위_문자열로_바꾼다() {
+        BitSet slices = new BitSet();
+        slices.set(0, 5);
+        slices.set(7);
+        slices.set(9, 13);
+
+        assertThat(SlicedTasklet.toRanges(slices)).isEqualTo("0-4,7,9-12");
+        assertThat(SlicedTasklet.fromRanges("0-4,7,9-12")).isEqualTo(slices);
+        assertThat(SlicedTasklet.fromRanges("").isEmpty()).isTrue();
+    }
+
+    private StepExecution stepExecution(ExecutionContext executionContext) {
+        StepExecution stepExecution = new StepExecution("taskBaseStep", new JobExecution(1L));
+        stepExecution.setExecutionContext(executionContext);
+        return stepExecution;
+    }
+
+    private int executeAll(SlicedTasklet<Integer> tasklet, StepExecution stepExecution) throws Exception {
+        StepContribution contribution = stepExecution.createStepContribution();
+        int executions = 1;
+        while (tasklet.execute(contribution, null) == RepeatStatus.CONTINUABLE) {
+            executions++;
+        }
+        return executions;
+    }
+
+}
@@ -0,0 +1,70 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SortedRunKeySetTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void 같은_크기의_run이_mergeFactor개가_되면_병합해서_다음_단계로_올린다() throws Exception {
+        //given : 10개마다 run 하나, 2개씩 병합 -> run 개수는 내려쓴 횟수의 2진수 1의 개수
+        SortedRunKeySet keys = new SortedRunKeySet(directory, 10, 2);
+
+        //when //then
+        add(keys, 0, 70);       //7번 = 111
+        assertThat(keys.runCount()).isEqualTo(3);
+        assertThat(runFiles()).isEqualTo(3);
+        add(keys, 70, 80);      //8번 = 1000
+        assertThat(keys.runCount()).isEqualTo(1);
+        assertThat(runFiles()).isEqualTo(1);
+
+        for (int i = 0; i < 80; i++) {
+            assertThat(keys.contains("key" + i)).isTrue();
+        }
+        assertThat(keys.contains("key80")).isFalse();
+        keys.close();
+        assertThat(runFiles()).isZero();
+    }
+
+    @Test
+    void 길이가_64KB를_넘는_키도_내려쓰고_찾는다() throws Exception {
+        //given
+        SortedRunKeySet keys = new SortedRunKeySet(directory, 2, 2);
+        String longKey = "가".repeat(30_000);     //UTF-8로 90,000 바이트
+
+        //when
+        keys.add(longKey);
+        keys.add("짧은키");
+        keys.add("다른키");
+        keys.add("마지막");
+
+        //then
+        assertThat(keys.runCount()).isEqualTo(1);
+        assertThat(keys.contains(longKey)).isTrue();
+        assertThat(keys.contains(longKey + "나")).isFalse();
+        assertThat(keys.contains("짧은키")).isTrue();
+        keys.close();
+    }
+
+    private static void add(SortedRunKeySet keys, int from, int to) {
+        for (int i = from; i < to; i++) {
+            keys.add("key" + i);
+        }
+    }
+
+    private long runFiles() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+}
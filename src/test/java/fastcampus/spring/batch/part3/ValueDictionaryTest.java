@@ -0,0 +1,49 @@
+package fastcampus.spring.batch.part3;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ValueDictionaryTest {
+
+    @Test
+    void 같은_바이트면_같은_String을_돌려준다() {
+        //given
+        ValueDictionary dictionary = new ValueDictionary(100);
+        byte[] line = "서울,서울,부산".getBytes(StandardCharsets.UTF_8);
+        int comma = 6;  //"서울"은 6바이트
+
+        //when
+        String first = dictionary.get(line, 0, comma);
+        String second = dictionary.get(line, comma + 1, comma * 2 + 1);
+        String third = dictionary.get(line, comma * 2 + 2, line.length);
+
+        //then
+        assertThat(first).isEqualTo("서울").isSameAs(second);
+        assertThat(third).isEqualTo("부산");
+        assertThat(dictionary.size()).isEqualTo(2);
+        assertThat(dictionary.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void 최대_개수를_넘으면_저장하지_않고_값만_돌려준다() {
+        //given
+        ValueDictionary dictionary = new ValueDictionary(10);
+
+        //when
+        for (int i = 0; i < 1000; i++) {
+            byte[] value = ("주소" + i).getBytes(StandardCharsets.UTF_8);
+            assertThat(dictionary.get(value, 0, value.length)).isEqualTo("주소" + i);
+        }
+        byte[] stored = "주소3".getBytes(StandardCharsets.UTF_8);
+        byte[] notStored = "주소500".getBytes(StandardCharsets.UTF_8);
+
+        //then
+        assertThat(dictionary.size()).isEqualTo(10);
+        assertThat(dictionary.get(stored, 0, stored.length)).isSameAs(dictionary.get(stored, 0, stored.length));
+        assertThat(dictionary.get(notStored, 0, notStored.length)).isNotSameAs(dictionary.get(notStored, 0, notStored.length));
+    }
+
+}
@@ -0,0 +1,67 @@
+package fastcampus.spring.batch.remote;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RemoteChunkItemWriterTest {
+
+    @Test
+    void 같은_키는_항상_같은_worker로_보낸다() throws Exception {
+        //given
+        Map<String, Set<Integer>> workersByKey = new ConcurrentHashMap<>();
+        List<ChunkHandler<String>> handlers = Arrays.asList(recordingHandler(0, workersByKey), recordingHandler(1, workersByKey), recordingHandler(2, workersByKey));
+        RemoteChunkItemWriter<String> writer = new RemoteChunkItemWriter<>(SocketChunkTransport.loopback(handlers), item -> item);
+        StepExecution stepExecution = new StepExecution("managerStep", new JobExecution(1L));
+        stepExecution.setStatus(BatchStatus.COMPLETED);
+        writer.beforeStep(stepExecution);
+
+        //when
+        for (int i = 0; i < 20; i++) {
+            writer.write(Arrays.asList("a", "b", "c", "d", "e" + i));
+        }
+        ExitStatus exitStatus = writer.afterStep(stepExecution);
+        writer.close();
+
+        //then
+        assertThat(exitStatus).isNull();
+        assertThat(stepExecution.getWriteCount()).isEqualTo(100);
+        assertThat(workersByKey).hasSize(24);
+        assertThat(workersByKey.values()).allSatisfy(workers -> assertThat(workers).hasSize(1));
+    }
+
+    @Test
+    void worker가_실패하면_step을_실패시킨다() throws Exception {
+        //given
+        ChunkHandler<String> failing = request -> {
+            throw new IllegalStateException("저장 실패");
+        };
+        RemoteChunkItemWriter<String> writer = new RemoteChunkItemWriter<>(new InJvmChunkTransport<>(Arrays.asList(failing)), item -> item);
+        writer.setThrottleLimit(0);     //보낼 때마다 응답을 기다림
+
+        //when, then
+        assertThatThrownBy(() -> writer.write(Arrays.asList("a", "b")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("저장 실패");
+        writer.close();
+    }
+
+    private ChunkHandler<String> recordingHandler(int worker, Map<String, Set<Integer>> workersByKey) {
+        return request -> {
+            request.getItems().forEach(item -> workersByKey.computeIfAbsent(item, key -> ConcurrentHashMap.newKeySet()).add(worker));
+            return ChunkResponse.success(request.getSequence(), 0, request.getItems().size());
+        };
+    }
+
+}
@@ -0,0 +1,87 @@
+package fastcampus.spring.batch.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.repository.dao.Jackson2ExecutionContextStringSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BinaryExecutionContextSerializerTest {
+
+    private final Jackson2ExecutionContextStringSerializer jsonSerializer = new Jackson2ExecutionContextStringSerializer();
+
+    @Test
+    void 타입을_유지한_채로_다시_읽는다() throws Exception {
+        //given
+        Map<String, Object> context = new HashMap<>();
+        context.put("read.count", 1200);
+        context.put("byte.offset", 123456789012L);
+        context.put("ratio", 0.25d);
+        context.put("weight", 1.5f);
+        context.put("done", true);
+        context.put("name", "홍길동");
+        context.put("at", new Date(1_600_000_000_000L));
+        context.put("amount", new BigDecimal("10.50"));     //JSON으로 저장되는 타입
+        context.put("empty", null);
+
+        //when
+        Map<String, Object> read = roundTrip(new BinaryExecutionContextSerializer(), context);
+
+        //then
+        assertThat(read).isEqualTo(context);
+        assertThat(read.get("read.count")).isInstanceOf(Integer.class);
+        assertThat(read.get("byte.offset")).isInstanceOf(Long.class);
+    }
+
+    @Test
+    void 기존_JSON_컨텍스트도_읽는다() throws Exception {
+        //given
+        Map<String, Object> context = new HashMap<>();
+        context.put("read.count", 30);
+        context.put("name", "홍길동");
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        jsonSerializer.serialize(context, json);
+
+        //when
+        Map<String, Object> read = new BinaryExecutionContextSerializer().deserialize(new ByteArrayInputStream(json.toByteArray()));
+
+        //then
+        assertThat(read).isEqualTo(context);
+    }
+
+    @Test
+    void 기준보다_크면_압축해서_JSON보다_작게_저장한다() throws Exception {
+        //given : dedup checkpoint처럼 반복이 많은 긴 문자열
+        Map<String, Object> context = new HashMap<>();
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            names.append("이름").append(i % 20).append(',');
+        }
+        context.put("names", names.toString());
+        context.put("read.count", 500);
+        BinaryExecutionContextSerializer serializer = new BinaryExecutionContextSerializer(jsonSerializer, 512);
+
+        //when
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        serializer.serialize(context, binary);
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        jsonSerializer.serialize(context, json);
+
+        //then
+        assertThat(binary.size()).isLessThan(json.size() / 5);
+        assertThat(serializer.deserialize(new ByteArrayInputStream(binary.toByteArray()))).isEqualTo(context);
+    }
+
+    private Map<String, Object> roundTrip(BinaryExecutionContextSerializer serializer, Map<String, Object> context) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(context, out);
+        return serializer.deserialize(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+}
@@ -0,0 +1,136 @@
+package fastcampus.spring.batch.repository;
+
+import fastcampus.spring.batch.part3.CustomItemReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.Job;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.JobParametersBuilder;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CoalescingJobRepositoryTest {
+
+    private static final List<Integer> ITEMS = IntStream.rangeClosed(1, 20).boxed().collect(Collectors.toList());
+
+    private final EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("/org/springframework/batch/core/schema-h2.sql")
+            .build();
+    private final DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+    private JobRepository jdbcJobRepository;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JobRepositoryFactoryBean jobRepositoryFactory = new JobRepositoryFactoryBean();
+        jobRepositoryFactory.setDataSource(dataSource);
+        jobRepositoryFactory.setTransactionManager(transactionManager);
+        jobRepositoryFactory.afterPropertiesSet();
+        jdbcJobRepository = jobRepositoryFactory.getObject();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    void chunk마다_저장하지_않고_flushChunks마다_저장한다() throws Exception {
+        //given
+        JobRepository delegate = delegatingMock(jdbcJobRepository);
+        JobRepository jobRepository = new CoalescingJobRepository(delegate, 4, 60_000);
+
+        //when : chunk 2개씩 20건 -> 10 chunk + 마지막 빈 chunk
+        JobExecution jobExecution = launcher(jobRepository).run(job(jobRepository, items -> { }), new JobParameters());
+
+        //then : update는 시작 1번 + 4 chunk마다(4, 8번째) 2번 + 종료 1번, ExecutionContext는 시작할 때 빼고 같은 시점에 저장
+        StepExecution stepExecution = jobExecution.getStepExecutions().iterator().next();
+        assertThat(jobExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(stepExecution.getCommitCount()).isEqualTo(11);
+        verify(delegate, times(4)).update(any(StepExecution.class));
+        verify(delegate, times(3)).updateExecutionContext(any(StepExecution.class));
+
+        StepExecution saved = delegate.getLastStepExecution(jobExecution.getJobInstance(), "coalescingStep");
+        assertThat(saved.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(saved.getWriteCount()).isEqualTo(20);
+    }
+
+    @Test
+    void 실패한_step은_마지막_커밋_위치부터_재시작한다() throws Exception {
+        //given : 15번째 아이템에서 한 번 실패하는 writer
+        JobRepository jobRepository = new CoalescingJobRepository(jdbcJobRepository, 4, 60_000);
+        List<Integer> written = new ArrayList<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        ItemWriter<Integer> writer = items -> {
+            if (items.contains(15) && failed.compareAndSet(false, true)) {
+                throw new IllegalStateException("쓰기 실패");
+            }
+            written.addAll(items);
+        };
+        JobParameters jobParameters = new JobParametersBuilder().addLong("run", 1L).toJobParameters();
+
+        //when
+        JobExecution first = launcher(jobRepository).run(job(jobRepository, writer), jobParameters);
+        StepExecution failedStep = jobRepository.getLastStepExecution(first.getJobInstance(), "coalescingStep");
+        int savedReadCount = failedStep.getExecutionContext().getInt("CustomItemReader.read.count");    //재시작하면 같은 ExecutionContext가 이어서 쓰이므로 미리 꺼내둠
+        JobExecution restarted = launcher(jobRepository).run(job(jobRepository, writer), jobParameters);
+
+        //then : flush 주기와 상관없이 실패 시점의 커밋 위치(14건)가 저장되어 있어서 중복 없이 이어서 처리
+        assertThat(first.getStatus()).isEqualTo(BatchStatus.FAILED);
+        assertThat(savedReadCount).isEqualTo(14);
+        assertThat(failedStep.getWriteCount()).isEqualTo(14);
+        assertThat(restarted.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(written).containsExactlyElementsOf(ITEMS);
+    }
+
+    private Job job(JobRepository jobRepository, ItemWriter<Integer> writer) {
+        return new JobBuilder("coalescingJob")
+                .repository(jobRepository)
+                .start(new StepBuilder("coalescingStep")
+                        .repository(jobRepository)
+                        .transactionManager(transactionManager)
+                        .<Integer, Integer>chunk(2)
+                        .reader(new CustomItemReader<>(ITEMS))
+                        .writer(writer)
+                        .build())
+                .build();
+    }
+
+    private SimpleJobLauncher launcher(JobRepository jobRepository) throws Exception {
+        SimpleJobLauncher jobLauncher = new SimpleJobLauncher();
+        jobLauncher.setJobRepository(jobRepository);
+        jobLauncher.afterPropertiesSet();
+        return jobLauncher;
+    }
+
+    private JobRepository delegatingMock(JobRepository jobRepository) {
+        return Mockito.mock(JobRepository.class, AdditionalAnswers.delegatesTo(jobRepository));
+    }
+
+}
@@ -0,0 +1,169 @@
+package fastcampus.spring.batch.step;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.ItemWriteListener;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.job.builder.JobBuilder;
+import org.springframework.batch.core.launch.support.SimpleJobLauncher;
+import org.springframework.batch.core.listener.SkipListenerSupport;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+import org.springframework.batch.core.step.builder.StepBuilder;
+import org.springframework.batch.core.step.skip.LimitCheckingItemSkipPolicy;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.ListItemReader;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BisectingStepBuilderTest {
+
+    //item 테이블과 job 메타데이터를 같은 DB에 둠
+    private final EmbeddedDatabase dataSource = new EmbeddedDatabaseBuilder()
+            .setType(EmbeddedDatabaseType.H2)
+            .generateUniqueName(true)
+            .addScript("/org/springframework/batch/core/schema-h2.sql")
+            .build();
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+    private final DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+    @AfterEach
+    void tearDown() {
+        dataSource.shutdown();
+    }
+
+    @Test
+    void 실패한_row만_skip하고_나머지는_chunk_트랜잭션으로_저장한다() throws Exception {
+        //given : 100건 한 chunk에 음수 2건
+        jdbcTemplate.execute("create table item (value int check (value >= 0))");
+        List<Integer> items = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        items.set(17, -17);
+        items.set(80, -80);
+
+        AtomicInteger writes = new AtomicInteger();
+        List<Integer> skipped = new ArrayList<>();
+        WriteEvents writeEvents = new WriteEvents();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        Metrics.addRegistry(meterRegistry);
+
+        //when
+        StepExecution stepExecution;
+        try {
+            stepExecution = run(items, 100, chunk -> {
+                writes.incrementAndGet();
+                jdbcTemplate.batchUpdate("insert into item(value) values (?)", new ArrayList<>(chunk), chunk.size(),
+                        (ps, value) -> ps.setInt(1, value));
+            }, skipped, writeEvents, 10);
+        } finally {
+            Metrics.removeRegistry(meterRegistry);
+        }
+
+        //then : 한 건씩 다시 쓰면 101번이지만 나눠 쓰면 2 * log2(100) 근처
+        assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.COMPLETED);
+        assertThat(stepExecution.getWriteCount()).isEqualTo(98);
+        assertThat(stepExecution.getWriteSkipCount()).isEqualTo(2);
+        assertThat(stepExecution.getRollbackCount()).isZero();
+        assertThat(skipped).containsExactly(-17, -80);
+        assertThat(writes.get()).isLessThan(30);
+        assertThat(writeEvents.before).isEqualTo(1);     //나눈 write마다가 아니라 chunk 단위로 호출
+        assertThat(writeEvents.written).containsExactly(98);
+        assertThat(writeEvents.failed).containsExactly(-17, -80);     //나중에 성공한 절반은 오류로 알리지 않고 skip한 item만 알림
+        assertThat(meterRegistry.get("spring.batch.chunk.write").tag("status", "SUCCESS").timer().count()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from item", Integer.class)).isEqualTo(98);
+    }
+
+    @Test
+    void skip_limit을_넘으면_chunk_전체를_롤백하고_실패한다() throws Exception {
+        //given
+        jdbcTemplate.execute("create table item (value int check (value >= 0))");
+        List<Integer> items = IntStream.range(0, 10).map(i -> i % 3 == 0 ? -i - 1 : i).boxed().collect(Collectors.toList());
+
+        //when
+        WriteEvents writeEvents = new WriteEvents();
+        StepExecution stepExecution = run(items, 10, chunk -> jdbcTemplate.batchUpdate("insert into item(value) values (?)",
+                new ArrayList<>(chunk), chunk.size(), (ps, value) -> ps.setInt(1, value)), new ArrayList<>(), writeEvents, 2);
+
+        //then
+        assertThat(stepExecution.getStatus()).isEqualTo(BatchStatus.FAILED);
+        assertThat(stepExecution.getWriteCount()).isZero();
+        assertThat(writeEvents.written).isEmpty();
+        assertThat(writeEvents.failed).hasSize(10);   //chunk 전체가 롤백되므로 chunk 전체로 한 번 알림
+        assertThat(jdbcTemplate.queryForObject("select count(*) from item", Integer.class)).isZero();
+    }
+
+    private StepExecution run(List<Integer> items, int chunkSize, ItemWriter<Integer> writer,
+                              List<Integer> skipped, WriteEvents writeEvents, int skipLimit) throws Exception {
+        JobRepositoryFactoryBean jobRepositoryFactory = new JobRepositoryFactoryBean();
+        jobRepositoryFactory.setDataSource(dataSource);
+        jobRepositoryFactory.setTransactionManager(transactionManager);
+        jobRepositoryFactory.afterPropertiesSet();
+        JobRepository jobRepository = jobRepositoryFactory.getObject();
+        StepBuilder stepBuilder = new StepBuilder("bisectingStep")
+                .repository(jobRepository)
+                .transactionManager(transactionManager);
+
+        SimpleJobLauncher launcher = new SimpleJobLauncher();
+        launcher.setJobRepository(jobRepository);
+        launcher.afterPropertiesSet();
+
+        JobExecution jobExecution = launcher.run(new JobBuilder("bisectingJob")
+                .repository(jobRepository)
+                .start(new BisectingStepBuilder<>(stepBuilder.<Integer, Integer>chunk(chunkSize)
+                        .reader(new ListItemReader<>(items))
+                        .writer(writer)
+                        .listener(writeEvents))
+                        .dataSource(dataSource)
+                        .skipPolicy(new LimitCheckingItemSkipPolicy(skipLimit, Collections.singletonMap(DataIntegrityViolationException.class, true)))
+                        .skipListener(new SkipListenerSupport<Integer, Integer>() {
+                            @Override
+                            public void onSkipInWrite(Integer item, Throwable t) {
+                                skipped.add(item);
+                            }
+                        })
+                        .build())
+                .build(), new JobParameters());
+        return jobExecution.getStepExecutions().iterator().next();
+    }
+
+    private static class WriteEvents implements ItemWriteListener<Integer> {
+
+        private int before;
+        private final List<Integer> written = new ArrayList<>();    //afterWrite로 받은 item 수
+        private final List<Integer> failed = new ArrayList<>();     //onWriteError로 받은 item
+
+        @Override
+        public void beforeWrite(List<? extends Integer> items) {
+            before++;
+        }
+
+        @Override
+        public void afterWrite(List<? extends Integer> items) {
+            written.add(items.size());
+        }
+
+        @Override
+        public void onWriteError(Exception exception, List<? extends Integer> items) {
+            failed.addAll(items);
+        }
+
+    }
+
+}